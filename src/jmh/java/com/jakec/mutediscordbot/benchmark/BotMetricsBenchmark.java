@@ -0,0 +1,47 @@
+package com.jakec.mutediscordbot.benchmark;
+
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Metrics snapshotting (as done by {@code !stats}/{@code !metrics}), gauge reads (as done on every scrape)
+ * and the recording path under contention.
+ */
+@State(Scope.Benchmark)
+public class BotMetricsBenchmark {
+	
+	private BotMetrics metrics;
+	
+	@Setup
+	public void setUp() {
+		metrics = new BotMetrics(new SimpleMeterRegistry());
+		for (VoiceAction action : VoiceAction.values()) {
+			metrics.incrementVoiceStateChanges(action);
+		}
+		metrics.incrementSuccessfulAnnouncements();
+		metrics.incrementFailedAnnouncements();
+	}
+	
+	@Benchmark
+	public BotMetrics.MetricsSnapshot getSnapshot() {
+		return metrics.getSnapshot();
+	}
+	
+	@Benchmark
+	public double successRateGauge() {
+		return metrics.getSuccessRate();
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public void recordVoiceStateChange() {
+		metrics.incrementVoiceStateChanges(VoiceAction.MUTED);
+		metrics.incrementSuccessfulAnnouncements();
+	}
+}
@@ -0,0 +1,53 @@
+package com.jakec.mutediscordbot.benchmark;
+
+import com.jakec.mutediscordbot.benchmark.support.BotFixture;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Optional;
+
+/**
+ * Announcement channel resolution for guilds of increasing size, with and without the configured channel:
+ * cached lookups versus a full resolution after the guild's entry was invalidated.
+ */
+@State(Scope.Thread)
+public class ChannelServiceBenchmark {
+	
+	@Param({"10", "100", "500"})
+	public int channels;
+	
+	@Param({"true", "false"})
+	public boolean configuredChannelPresent;
+	
+	private BotFixture fixture;
+	private FakeGuild guild;
+	
+	@Setup
+	public void setUp() {
+		fixture = BotFixture.create(false);
+		guild = BotFixture.guild(1L, channels, configuredChannelPresent);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+	
+	@Benchmark
+	public Optional<TextChannel> findAnnouncementChannel() {
+		return fixture.channelService.findAnnouncementChannel(guild.guild());
+	}
+	
+	@Benchmark
+	public Optional<TextChannel> findAfterInvalidation() {
+		fixture.channelService.invalidate(guild.id());
+		return fixture.channelService.findAnnouncementChannel(guild.guild());
+	}
+}
@@ -0,0 +1,66 @@
+package com.jakec.mutediscordbot.benchmark;
+
+import com.jakec.mutediscordbot.benchmark.support.BotFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cooldown and hierarchical rate-limit checks, both spread across many users and contended on one hot user.
+ */
+@State(Scope.Benchmark)
+public class CooldownBenchmark {
+	
+	private static final long GUILD_ID = 1L;
+	
+	@Param({"100000"})
+	public int users;
+	
+	private BotFixture fixture;
+	
+	@Setup
+	public void setUp() {
+		fixture = BotFixture.create(true);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+	
+	@Benchmark
+	public boolean spreadUsers() {
+		long userId = ThreadLocalRandom.current().nextInt(users);
+		return fixture.cooldownService.checkAndUpdate(GUILD_ID, userId);
+	}
+	
+	@Benchmark
+	@Group("hotUser")
+	@GroupThreads(4)
+	public boolean hotUserContention() {
+		return fixture.cooldownService.checkAndUpdate(GUILD_ID, 42L);
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public boolean mixedSpread() {
+		long userId = ThreadLocalRandom.current().nextInt(users);
+		return fixture.cooldownService.checkAndUpdate(GUILD_ID, userId);
+	}
+	
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public boolean mixedHot() {
+		return fixture.cooldownService.checkAndUpdate(GUILD_ID, 42L);
+	}
+}
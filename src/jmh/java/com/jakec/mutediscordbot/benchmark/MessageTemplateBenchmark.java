@@ -0,0 +1,59 @@
+package com.jakec.mutediscordbot.benchmark;
+
+import com.jakec.mutediscordbot.benchmark.support.BotFixture;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import com.jakec.mutediscordbot.fixture.FakeMember;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.model.VoiceStateChange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Template selection and placeholder rendering for a single announcement.
+ */
+@State(Scope.Thread)
+public class MessageTemplateBenchmark {
+	
+	private BotFixture fixture;
+	private VoiceStateChange stateChange;
+	private Function<VoiceStateChange, String> userOnlyFormatter;
+	private Function<VoiceStateChange, String> allPlaceholdersFormatter;
+	
+	@Setup
+	public void setUp() {
+		fixture = BotFixture.create(false);
+		FakeGuild guild = BotFixture.guild(1L, 0, true);
+		FakeMember member = BotFixture.members(guild, 1).get(0);
+		stateChange = VoiceStateChange.of(member.member(), VoiceAction.MUTED);
+		userOnlyFormatter = fixture.messageTemplateService.createCustomFormatter("🤫 **{user}** has gone silent!");
+		allPlaceholdersFormatter = fixture.messageTemplateService.createCustomFormatter(
+				"{emoji} **{user}** {action} in {channel} at {time} ({guild})");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+	
+	@Benchmark
+	public Optional<String> generateMessage() {
+		return fixture.messageTemplateService.generateMessage(stateChange);
+	}
+	
+	@Benchmark
+	public String formatUserOnlyTemplate() {
+		return userOnlyFormatter.apply(stateChange);
+	}
+	
+	@Benchmark
+	public String formatAllPlaceholders() {
+		return allPlaceholdersFormatter.apply(stateChange);
+	}
+}
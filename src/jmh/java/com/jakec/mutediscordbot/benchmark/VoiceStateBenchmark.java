@@ -0,0 +1,58 @@
+package com.jakec.mutediscordbot.benchmark;
+
+import com.jakec.mutediscordbot.benchmark.support.BotFixture;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import com.jakec.mutediscordbot.fixture.FakeMember;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+
+/**
+ * Full voice-event path: state diff, cooldown, template rendering, channel lookup and a no-op send.
+ */
+@State(Scope.Thread)
+public class VoiceStateBenchmark {
+	
+	@Param({"1024"})
+	public int members;
+	
+	@Param({"false", "true"})
+	public boolean rateLimitEnabled;
+	
+	private BotFixture fixture;
+	private FakeGuild guild;
+	private FakeMember[] pool;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		fixture = BotFixture.create(rateLimitEnabled);
+		guild = BotFixture.guild(1L, 50, true);
+		List<FakeMember> generated = BotFixture.members(guild, members);
+		pool = generated.toArray(FakeMember[]::new);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+	
+	@Benchmark
+	public void toggleMute() {
+		FakeMember member = pool[next++ & (pool.length - 1)];
+		member.selfMuted(!member.isSelfMuted());
+		fixture.voiceStateService.handleVoiceStateUpdate(member.member(), member.voiceState(), guild.guild());
+	}
+	
+	@Benchmark
+	public void unchangedState() {
+		FakeMember member = pool[next++ & (pool.length - 1)];
+		fixture.voiceStateService.handleVoiceStateUpdate(member.member(), member.voiceState(), guild.guild());
+	}
+}
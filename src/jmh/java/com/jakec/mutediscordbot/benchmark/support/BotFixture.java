@@ -0,0 +1,139 @@
+package com.jakec.mutediscordbot.benchmark.support;
+
+import com.jakec.mutediscordbot.analytics.VoiceTimeAggregator;
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import com.jakec.mutediscordbot.fixture.FakeMember;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.history.VoiceHistoryIndex;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.service.AnnouncementBatcher;
+import com.jakec.mutediscordbot.service.AnnouncementPipeline;
+import com.jakec.mutediscordbot.service.AnnouncementService;
+import com.jakec.mutediscordbot.service.ChannelService;
+import com.jakec.mutediscordbot.service.CooldownService;
+import com.jakec.mutediscordbot.service.MessageTemplateService;
+import com.jakec.mutediscordbot.service.OutboundMessageScheduler;
+import com.jakec.mutediscordbot.service.RestRetryScheduler;
+import com.jakec.mutediscordbot.service.VoiceFlapDebouncer;
+import com.jakec.mutediscordbot.service.VoiceStateService;
+import com.jakec.mutediscordbot.service.VoiceUpdateAssembler;
+import com.jakec.mutediscordbot.state.VoiceStateTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wires the announcement services by hand, the same way Spring would, around an in-memory guild.
+ * Close it in the benchmark's trial teardown so its worker threads and timers don't outlive the trial.
+ */
+public final class BotFixture implements AutoCloseable {
+	
+	public static final String ANNOUNCEMENT_CHANNEL = "bot-deafen-updates";
+	
+	public final BotProperties properties;
+	public final BotMetrics metrics;
+	public final BotExecutors executors;
+	public final GuildSettingsStore guildSettingsStore;
+	public final EventLogWriter eventLogWriter;
+	public final CooldownService cooldownService;
+	public final MessageTemplateService messageTemplateService;
+	public final ChannelService channelService;
+	public final RestRetryScheduler retryScheduler;
+	public final OutboundMessageScheduler outboundScheduler;
+	public final AnnouncementBatcher announcementBatcher;
+	public final AnnouncementService announcementService;
+	public final AnnouncementPipeline announcementPipeline;
+	public final VoiceStateTable voiceStateTable;
+	public final VoiceTimeAggregator voiceTimeAggregator;
+	public final VoiceHistoryIndex voiceHistoryIndex;
+	public final VoiceFlapDebouncer voiceFlapDebouncer;
+	public final VoiceUpdateAssembler voiceUpdateAssembler;
+	public final VoiceStateService voiceStateService;
+	
+	private BotFixture(BotProperties properties) {
+		this.properties = properties;
+		this.metrics = new BotMetrics(new SimpleMeterRegistry());
+		this.executors = new BotExecutors(properties, metrics);
+		this.guildSettingsStore = new GuildSettingsStore(properties);
+		// Never started, so appends are no-ops and benchmarks stay off the disk.
+		this.eventLogWriter = new EventLogWriter(properties, metrics);
+		this.cooldownService = new CooldownService(properties, guildSettingsStore, metrics);
+		this.messageTemplateService = new MessageTemplateService(properties, guildSettingsStore);
+		this.channelService = new ChannelService(guildSettingsStore, metrics);
+		this.retryScheduler = new RestRetryScheduler(properties, metrics, executors);
+		this.outboundScheduler = new OutboundMessageScheduler(properties, metrics, retryScheduler, executors);
+		this.announcementBatcher = new AnnouncementBatcher(properties, metrics, channelService, outboundScheduler,
+				executors);
+		this.announcementService = new AnnouncementService(messageTemplateService, channelService, announcementBatcher,
+				outboundScheduler, guildSettingsStore, metrics, eventLogWriter);
+		this.announcementPipeline = new AnnouncementPipeline(announcementService, properties, metrics, eventLogWriter,
+				executors);
+		this.announcementPipeline.start();
+		this.voiceStateTable = new VoiceStateTable();
+		this.voiceTimeAggregator = new VoiceTimeAggregator(properties, metrics, executors);
+		this.voiceHistoryIndex = new VoiceHistoryIndex(properties, metrics, executors);
+		this.voiceFlapDebouncer = new VoiceFlapDebouncer(properties, metrics);
+		this.voiceUpdateAssembler = new VoiceUpdateAssembler(metrics);
+		this.voiceStateService = new VoiceStateService(announcementPipeline, cooldownService, guildSettingsStore, metrics,
+				voiceStateTable, voiceTimeAggregator, eventLogWriter, voiceHistoryIndex, voiceFlapDebouncer,
+				voiceUpdateAssembler);
+	}
+	
+	/**
+	 * Stops everything that owns a thread or timer, producers before the services they feed, as Spring would.
+	 */
+	@Override
+	public void close() {
+		voiceUpdateAssembler.close();
+		voiceFlapDebouncer.close();
+		announcementPipeline.shutdown();
+		announcementBatcher.shutdown();
+		outboundScheduler.shutdown();
+		retryScheduler.shutdown();
+		cooldownService.shutdown();
+		voiceTimeAggregator.shutdown();
+		eventLogWriter.shutdown();
+		executors.shutdown();
+	}
+	
+	public static BotFixture create(boolean rateLimitEnabled) {
+		BotProperties properties = new BotProperties();
+		properties.setToken("benchmark");
+		properties.setAnnouncementChannel(ANNOUNCEMENT_CHANNEL);
+		properties.getSpamPrevention().setEnableRateLimit(rateLimitEnabled);
+		// Measure the per-event work itself rather than the hand-off to pipeline workers.
+		properties.getPipeline().setEnabled(false);
+		// The fake channels never rate limit, so per-channel send throttling would only queue without bound.
+		properties.getOutbound().setEnabled(false);
+		// Announce on the calling thread instead of after the quiet period on the debounce wheel.
+		properties.getVoiceDebounce().setEnabled(false);
+		return new BotFixture(properties);
+	}
+	
+	/**
+	 * Builds a guild with {@code filler} unrelated text channels followed by the announcement channel.
+	 */
+	public static FakeGuild guild(long guildId, int filler, boolean withAnnouncementChannel) {
+		FakeGuild guild = new FakeGuild(guildId, "guild-" + guildId);
+		for (int i = 0; i < filler; i++) {
+			guild.addTextChannel(guildId * 10_000 + i, "channel-" + i);
+		}
+		if (withAnnouncementChannel) {
+			guild.addTextChannel(guildId * 10_000 + filler, ANNOUNCEMENT_CHANNEL);
+		}
+		return guild;
+	}
+	
+	public static List<FakeMember> members(FakeGuild guild, int count) {
+		List<FakeMember> members = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			long userId = 100_000_000_000_000_000L + guild.id() * 1_000_000 + i;
+			members.add(new FakeMember(guild, userId, "user" + i, "Voice " + (i % 4)));
+		}
+		return members;
+	}
+}
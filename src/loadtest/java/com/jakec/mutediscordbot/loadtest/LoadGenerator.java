@@ -0,0 +1,272 @@
+package com.jakec.mutediscordbot.loadtest;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import com.jakec.mutediscordbot.fixture.FakeJda;
+import com.jakec.mutediscordbot.fixture.FakeMember;
+import com.jakec.mutediscordbot.fixture.FakeTextChannel;
+import com.jakec.mutediscordbot.handler.DiscordEventHandler;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
+import com.jakec.mutediscordbot.service.OutboundMessageScheduler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires synthetic self-mute and self-deafen events into {@link DiscordEventHandler} from several threads,
+ * against in-memory guilds whose channels count sends instead of calling Discord, and reports sustained
+ * throughput, cooldown and drop ratios and heap usage.
+ * <p>
+ * Guilds are picked from a power-law distribution, a few members per guild receive a configurable share
+ * of all events, and periodic storms point a multiple of the normal rate at a single guild.
+ */
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+@Slf4j
+public class LoadGenerator implements ApplicationRunner {
+	
+	private static final long FIRST_USER_ID = 100_000_000_000_000_000L;
+	private static final long MAX_PACING_LAG_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long BYTES_PER_MB = 1024 * 1024;
+	
+	private final DiscordEventHandler eventHandler;
+	private final BotMetrics botMetrics;
+	private final OutboundMessageScheduler outboundScheduler;
+	private final BotProperties botProperties;
+	private final LoadTestProperties settings;
+	
+	private final FakeJda jda = new FakeJda();
+	private final List<FakeTextChannel> channels = new ArrayList<>();
+	private final LongAdder eventsFired = new LongAdder();
+	private FakeMember[][] members;
+	private long peakHeapUsed;
+	
+	/**
+	 * Counters at one instant; intervals are reported as the difference between two samples.
+	 */
+	private record Sample(long nanos, long events, long accepted, long announcements, long failures,
+						  long cooldownBlocks, long rateLimits, long pipelineDrops, long superseded, long sent,
+						  long heapUsed, long heapMax, long gcCount, long gcMillis) {}
+	
+	@Override
+	public void run(ApplicationArguments args) throws InterruptedException {
+		populate();
+		log.info("Load test: {} guilds x {} members, {} threads, {} events/s{}, warmup {}, duration {}",
+				settings.getGuilds(), settings.getMembersPerGuild(), settings.getThreads(),
+				settings.getEventsPerSecond() > 0 ? settings.getEventsPerSecond() : "unthrottled",
+				settings.getStorm().isEnabled()
+						? " (x" + settings.getStorm().getMultiplier() + " storms every " + settings.getStorm().getInterval() + ")"
+						: "",
+				settings.getWarmup(), settings.getDuration());
+		
+		long start = System.nanoTime();
+		long measureFrom = start + settings.getWarmup().toNanos();
+		long end = measureFrom + settings.getDuration().toNanos();
+		long reportNanos = settings.getReportInterval().toNanos();
+		
+		ExecutorService producers = Executors.newFixedThreadPool(settings.getThreads(),
+				Thread.ofPlatform().name("load-producer-", 0).daemon(true).factory());
+		for (int i = 0; i < settings.getThreads(); i++) {
+			producers.execute(() -> produce(start, end));
+		}
+		
+		sleepUntil(measureFrom);
+		botMetrics.reset();
+		Sample baseline = sample();
+		Sample previous = baseline;
+		
+		while (previous.nanos() < end) {
+			sleepUntil(Math.min(previous.nanos() + reportNanos, end));
+			Sample current = sample();
+			log.info("[load] {}", describe(previous, current));
+			previous = current;
+		}
+		
+		producers.shutdown();
+		if (!producers.awaitTermination(10, TimeUnit.SECONDS)) {
+			producers.shutdownNow();
+		}
+		
+		report(baseline, sample());
+	}
+	
+	private void populate() {
+		members = new FakeMember[settings.getGuilds()][];
+		for (int g = 0; g < settings.getGuilds(); g++) {
+			long guildId = g + 1;
+			FakeGuild guild = jda.addGuild(new FakeGuild(guildId, "guild-" + guildId));
+			for (int c = 0; c < settings.getFillerChannels(); c++) {
+				channels.add(guild.addTextChannel(guildId * 10_000 + c, "channel-" + c));
+			}
+			channels.add(guild.addTextChannel(guildId * 10_000 + settings.getFillerChannels(),
+					botProperties.getAnnouncementChannel()));
+			
+			members[g] = new FakeMember[settings.getMembersPerGuild()];
+			for (int m = 0; m < settings.getMembersPerGuild(); m++) {
+				long userId = FIRST_USER_ID + guildId * 1_000_000 + m;
+				members[g][m] = new FakeMember(guild, userId, "user" + m, "Voice " + (m % 4));
+			}
+		}
+	}
+	
+	private void produce(long start, long end) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int multiplier = settings.getStorm().getMultiplier();
+		long gapNanos = settings.getEventsPerSecond() > 0
+								? TimeUnit.SECONDS.toNanos(settings.getThreads()) / settings.getEventsPerSecond()
+								: 0;
+		long next = System.nanoTime();
+		long now;
+		
+		while ((now = System.nanoTime()) < end) {
+			int stormGuild = stormGuild(now - start);
+			
+			if (gapNanos > 0) {
+				next += stormGuild >= 0 ? gapNanos / multiplier : gapNanos;
+				if (next > now) {
+					LockSupport.parkNanos(next - now);
+				} else if (now - next > MAX_PACING_LAG_NANOS) {
+					// Fell behind (GC pause, slow handler): carry on at the target rate instead of bursting to catch up.
+					next = now;
+				}
+			}
+			
+			fire(random, stormGuild >= 0 ? stormGuild : pickGuild(random));
+		}
+	}
+	
+	private void fire(ThreadLocalRandom random, int guildIndex) {
+		FakeMember[] guildMembers = members[guildIndex];
+		int hotUsers = Math.min(settings.getHotUsersPerGuild(), guildMembers.length);
+		FakeMember member = hotUsers > 0 && random.nextDouble() < settings.getHotUserShare()
+									? guildMembers[random.nextInt(hotUsers)]
+									: guildMembers[random.nextInt(guildMembers.length)];
+		
+		boolean deafenUpdate = random.nextDouble() < settings.getDeafenShare();
+		
+		// JDA dispatches a member's updates in order, so producers never interleave updates for the same member.
+		synchronized (member) {
+			int fired;
+			if (deafenUpdate) {
+				// Like the Discord client: deafening also mutes and undeafening unmutes, all in one gateway update.
+				boolean deafen = !member.isSelfDeafened();
+				fired = jda.updateVoiceState(member, deafen, deafen, eventHandler::onEvent);
+			} else {
+				fired = jda.updateVoiceState(member, !member.isSelfMuted(), member.isSelfDeafened(), eventHandler::onEvent);
+			}
+			eventsFired.add(fired);
+		}
+	}
+	
+	private int pickGuild(ThreadLocalRandom random) {
+		return (int) (members.length * Math.pow(random.nextDouble(), settings.getGuildSkew()));
+	}
+	
+	/**
+	 * The guild under a storm at {@code elapsedNanos} into the run, or -1 outside storms.
+	 */
+	private int stormGuild(long elapsedNanos) {
+		LoadTestProperties.Storm storm = settings.getStorm();
+		if (!storm.isEnabled()) {
+			return -1;
+		}
+		
+		long interval = storm.getInterval().toNanos();
+		if (elapsedNanos % interval < interval - storm.getLength().toNanos()) {
+			return -1;
+		}
+		return (int) ((elapsedNanos / interval) * 7919 % members.length);
+	}
+	
+	private Sample sample() {
+		BotMetrics.MetricsSnapshot snapshot = botMetrics.getSnapshot();
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		peakHeapUsed = Math.max(peakHeapUsed, heap.getUsed());
+		
+		long gcCount = 0;
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, collector.getCollectionCount());
+			gcMillis += Math.max(0, collector.getCollectionTime());
+		}
+		
+		long sent = 0;
+		for (FakeTextChannel channel : channels) {
+			sent += channel.sentMessages();
+		}
+		
+		return new Sample(System.nanoTime(), eventsFired.sum(), snapshot.totalVoiceStateChanges(),
+				snapshot.successfulAnnouncements(), snapshot.failedAnnouncements(), snapshot.cooldownBlocks(),
+				snapshot.rateLimits(), snapshot.pipelineDrops(), snapshot.outboundSuperseded(), sent,
+				heap.getUsed(), heap.getMax(), gcCount, gcMillis);
+	}
+	
+	private String describe(Sample from, Sample to) {
+		double seconds = (to.nanos() - from.nanos()) / 1e9;
+		long accepted = to.accepted() - from.accepted();
+		long filtered = (to.cooldownBlocks() - from.cooldownBlocks()) + (to.rateLimits() - from.rateLimits());
+		
+		return String.format("%.1fs: %.0f events/s, %.0f announcements/s (%.0f sent/s), cooldown/rate limited %.1f%%, "
+									 + "dropped %.1f%%, superseded %d, outbound queued %d, heap %d/%d MB, GC %d (%d ms)",
+				seconds,
+				(to.events() - from.events()) / seconds,
+				(to.announcements() - from.announcements()) / seconds,
+				(to.sent() - from.sent()) / seconds,
+				ratio(filtered, accepted + filtered),
+				ratio(to.pipelineDrops() - from.pipelineDrops(), accepted),
+				to.superseded() - from.superseded(),
+				outboundScheduler.getQueuedCount(),
+				to.heapUsed() / BYTES_PER_MB,
+				to.heapMax() / BYTES_PER_MB,
+				to.gcCount() - from.gcCount(),
+				to.gcMillis() - from.gcMillis());
+	}
+	
+	private void report(Sample baseline, Sample last) {
+		BotMetrics.LatencyPercentiles total = botMetrics.getLatencyPercentiles().get(LatencyStage.TOTAL);
+		
+		StringBuilder report = new StringBuilder("Load test finished\n");
+		report.append("  ").append(describe(baseline, last)).append('\n');
+		report.append(String.format("  events %d, state changes accepted %d, announcements %d (%d failed), sent %d%n",
+				last.events() - baseline.events(), last.accepted() - baseline.accepted(),
+				last.announcements() - baseline.announcements(), last.failures() - baseline.failures(),
+				last.sent() - baseline.sent()));
+		report.append(String.format("  cooldown blocks %d, rate limits %d, pipeline drops %d, peak heap %d MB%n",
+				last.cooldownBlocks() - baseline.cooldownBlocks(), last.rateLimits() - baseline.rateLimits(),
+				last.pipelineDrops() - baseline.pipelineDrops(), peakHeapUsed / BYTES_PER_MB));
+		if (total != null) {
+			report.append(String.format("  end-to-end latency p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%n",
+					total.p50Millis(), total.p95Millis(), total.p99Millis()));
+		}
+		
+		log.info(report.toString().stripTrailing());
+	}
+	
+	private static double ratio(long part, long whole) {
+		return whole > 0 ? 100.0 * part / whole : 0.0;
+	}
+	
+	private static void sleepUntil(long deadlineNanos) throws InterruptedException {
+		long remaining;
+		while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.jakec.mutediscordbot.loadtest;
+
+import com.jakec.mutediscordbot.MuteDeafenBotApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the bot's full Spring context under the {@code loadtest} profile, lets {@link LoadGenerator}
+ * run to completion and exits. No Discord connection or token is involved.
+ */
+@Slf4j
+public class LoadTestApplication {
+	
+	public static void main(String[] args) {
+		log.info("Starting Mute/Deafen Discord Bot load test...");
+		
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(MuteDeafenBotApplication.class)
+														 .profiles("loadtest")
+														 .run(args);
+		
+		System.exit(SpringApplication.exit(context));
+	}
+}
@@ -0,0 +1,79 @@
+package com.jakec.mutediscordbot.loadtest;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Data
+@Validated
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+	
+	@Min(1)
+	private int guilds = 200;
+	
+	@Min(1)
+	private int membersPerGuild = 50;
+	
+	/** Unrelated text channels listed before the announcement channel in each guild. */
+	@Min(0)
+	private int fillerChannels = 20;
+	
+	@Min(1)
+	private int threads = 8;
+	
+	/** Target rate across all threads outside storms; 0 fires as fast as the bot accepts events. */
+	@Min(0)
+	private int eventsPerSecond = 2000;
+	
+	/** Runs before measuring starts, so JIT compilation and cache warm-up are not reported. */
+	@NotNull
+	private Duration warmup = Duration.ofSeconds(5);
+	
+	@NotNull
+	private Duration duration = Duration.ofSeconds(60);
+	
+	@NotNull
+	private Duration reportInterval = Duration.ofSeconds(5);
+	
+	/** Share of events that toggle self-deafen rather than self-mute. */
+	@DecimalMin("0.0") @DecimalMax("1.0")
+	private double deafenShare = 0.3;
+	
+	/** Power-law exponent for picking a guild: 1 is uniform, larger values concentrate events on a few busy guilds. */
+	@DecimalMin("1.0")
+	private double guildSkew = 2.0;
+	
+	/** Members per guild who toggle far more often than everyone else. */
+	@Min(0)
+	private int hotUsersPerGuild = 3;
+	
+	/** Share of events that go to a guild's hot users. */
+	@DecimalMin("0.0") @DecimalMax("1.0")
+	private double hotUserShare = 0.25;
+	
+	@NotNull @Valid
+	private Storm storm = new Storm();
+	
+	/** Periodic bursts where a single guild receives a multiple of the normal rate, e.g. a whole channel muting at once. */
+	@Data
+	public static class Storm {
+		private boolean enabled = true;
+		
+		@NotNull
+		private Duration interval = Duration.ofSeconds(20);
+		
+		@NotNull
+		private Duration length = Duration.ofSeconds(3);
+		
+		@Min(1)
+		private int multiplier = 5;
+	}
+}
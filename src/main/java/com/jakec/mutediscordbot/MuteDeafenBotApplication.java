@@ -21,9 +21,6 @@ public class MuteDeafenBotApplication {
 			System.setProperty("DISCORD_TOKEN", Objects.requireNonNull(dotenv.get("DISCORD_TOKEN")));
 		}
 		
-		System.setProperty("jda.voice.pool.size", "2");
-		System.setProperty("jda.ws.pool.size", "4");
-		
 		SpringApplication app = new SpringApplication(MuteDeafenBotApplication.class);
 		app.setLogStartupInfo(true);
 		app.run(args);
@@ -0,0 +1,183 @@
+package com.jakec.mutediscordbot.analytics;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.state.VoiceStateTable;
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incrementally aggregates how long members stay self-muted and self-deafened, per guild and per member.
+ * <p>
+ * Only the start of each open interval is kept, as a primitive entry keyed {@code (guildId, userId)}. When the
+ * interval ends, on the opposite toggle or on leaving voice, its duration is spread over the
+ * {@link VoiceTimeRings} of the guild and the member, and nothing about it is retained. Reads sum the rings
+ * plus the part of any still-open interval inside each window.
+ * <p>
+ * Memory is capped: beyond {@code max-tracked-members} (and {@code max-tracked-guilds}) new intervals are
+ * not attributed individually, and aggregates untouched for a full week are swept away.
+ */
+@Component
+@Slf4j
+public class VoiceTimeAggregator {
+	
+	private static final long SWEEP_INTERVAL_MINUTES = 10;
+	
+	private final BotProperties.VoiceTime settings;
+	private final BotMetrics botMetrics;
+	private final ConcurrentLongPairMap mutedSince = new ConcurrentLongPairMap(1024, 64);
+	private final ConcurrentLongPairMap deafenedSince = new ConcurrentLongPairMap(1024, 64);
+	private final Map<Long, VoiceTimeRings> guilds = new ConcurrentHashMap<>();
+	private final Map<MemberKey, VoiceTimeRings> members = new ConcurrentHashMap<>();
+	private final ScheduledFuture<?> sweeper;
+	
+	private record MemberKey(long guildId, long userId) {}
+	
+	public VoiceTimeAggregator(BotProperties botProperties, BotMetrics botMetrics, BotExecutors botExecutors) {
+		this.settings = botProperties.getVoiceTime();
+		this.botMetrics = botMetrics;
+		
+		this.sweeper = botExecutors.getScheduler().scheduleWithFixedDelay(this::sweep,
+				SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+		botMetrics.registerVoiceTime(this);
+	}
+	
+	/**
+	 * Opens or closes the member's muted and deafened intervals to match {@code flags}; call it only when they changed.
+	 * Leaving voice is {@code flags == 0}.
+	 */
+	public void record(long guildId, long userId, int flags) {
+		if (!settings.isEnabled()) {
+			return;
+		}
+		
+		long now = System.currentTimeMillis();
+		track(mutedSince, VoiceTimeRings.MUTED, guildId, userId, VoiceStateTable.isSet(flags, VoiceStateTable.SELF_MUTED), now);
+		track(deafenedSince, VoiceTimeRings.DEAFENED, guildId, userId, VoiceStateTable.isSet(flags, VoiceStateTable.SELF_DEAFENED), now);
+	}
+	
+	private void track(ConcurrentLongPairMap open, int kind, long guildId, long userId, boolean active, long now) {
+		if (active) {
+			if (open.size() < settings.getMaxTrackedMembers()) {
+				open.putIfAbsent(guildId, userId, now);
+			}
+			return;
+		}
+		
+		long start = open.get(guildId, userId);
+		if (start == ConcurrentLongPairMap.NO_VALUE || !open.remove(guildId, userId, start) || now <= start) {
+			return;
+		}
+		
+		VoiceTimeRings guild = guilds.size() < settings.getMaxTrackedGuilds()
+									   ? guilds.computeIfAbsent(guildId, id -> new VoiceTimeRings())
+									   : guilds.get(guildId);
+		if (guild != null) {
+			guild.add(kind, start, now);
+		}
+		
+		MemberKey key = new MemberKey(guildId, userId);
+		VoiceTimeRings member = members.size() < settings.getMaxTrackedMembers()
+										? members.computeIfAbsent(key, k -> new VoiceTimeRings())
+										: members.get(key);
+		if (member != null) {
+			member.add(kind, start, now);
+		} else {
+			botMetrics.incrementVoiceTimeUntracked();
+		}
+	}
+	
+	public VoiceTimeTotals getGuildTotals(long guildId) {
+		long now = System.currentTimeMillis();
+		long[] muted = new long[VoiceTimeWindow.values().length];
+		long[] deafened = new long[muted.length];
+		
+		VoiceTimeRings rings = guilds.get(guildId);
+		if (rings != null) {
+			rings.addTo(muted, deafened, now);
+		}
+		
+		// Open intervals are bounded by the members currently in voice, not by history.
+		mutedSince.forEach((guild, user, start) -> {
+			if (guild == guildId) addOpen(muted, start, now);
+		});
+		deafenedSince.forEach((guild, user, start) -> {
+			if (guild == guildId) addOpen(deafened, start, now);
+		});
+		return new VoiceTimeTotals(muted, deafened);
+	}
+	
+	public VoiceTimeTotals getMemberTotals(long guildId, long userId) {
+		long now = System.currentTimeMillis();
+		long[] muted = new long[VoiceTimeWindow.values().length];
+		long[] deafened = new long[muted.length];
+		
+		VoiceTimeRings rings = members.get(new MemberKey(guildId, userId));
+		if (rings != null) {
+			rings.addTo(muted, deafened, now);
+		}
+		
+		long mutedStart = mutedSince.get(guildId, userId);
+		if (mutedStart != ConcurrentLongPairMap.NO_VALUE) {
+			addOpen(muted, mutedStart, now);
+		}
+		long deafenedStart = deafenedSince.get(guildId, userId);
+		if (deafenedStart != ConcurrentLongPairMap.NO_VALUE) {
+			addOpen(deafened, deafenedStart, now);
+		}
+		return new VoiceTimeTotals(muted, deafened);
+	}
+	
+	private static void addOpen(long[] totals, long start, long now) {
+		for (VoiceTimeWindow window : VoiceTimeWindow.values()) {
+			totals[window.ordinal()] += Math.max(0, now - Math.max(start, now - window.lengthMillis()));
+		}
+	}
+	
+	private void sweep() {
+		long expiredBefore = System.currentTimeMillis() - VoiceTimeWindow.WEEK.lengthMillis();
+		int before = members.size() + guilds.size();
+		
+		members.values().removeIf(rings -> rings.lastUpdatedMillis() < expiredBefore);
+		guilds.values().removeIf(rings -> rings.lastUpdatedMillis() < expiredBefore);
+		
+		int removed = before - members.size() - guilds.size();
+		if (removed > 0) {
+			log.debug("Swept {} voice time aggregates idle for over a week", removed);
+		}
+	}
+	
+	public boolean isEnabled() {
+		return settings.isEnabled();
+	}
+	
+	public int getTrackedMembers() {
+		return members.size();
+	}
+	
+	public int getTrackedGuilds() {
+		return guilds.size();
+	}
+	
+	public int getOpenIntervals() {
+		return mutedSince.size() + deafenedSince.size();
+	}
+	
+	public long estimatedBytes() {
+		return (members.size() + guilds.size()) * VoiceTimeRings.ESTIMATED_BYTES
+					   + mutedSince.estimatedBytes() + deafenedSince.estimatedBytes();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		sweeper.cancel(false);
+	}
+}
@@ -0,0 +1,89 @@
+package com.jakec.mutediscordbot.analytics;
+
+/**
+ * Muted and deafened time for one guild or member, one fixed-size ring per {@link VoiceTimeWindow}.
+ * <p>
+ * Each ring is a flat {@code long[]} of {@code (bucket number, muted millis, deafened millis)} slots; a slot is
+ * reused once its bucket falls out of the window, so the footprint never grows. Recording an interval adds its
+ * overlap with every bucket still inside each window, which costs at most one pass over the ring.
+ */
+final class VoiceTimeRings {
+	
+	static final int MUTED = 1;
+	static final int DEAFENED = 2;
+	
+	private static final VoiceTimeWindow[] WINDOWS = VoiceTimeWindow.values();
+	private static final int SLOT_WIDTH = 3;
+	
+	/** Rough heap cost of one instance including its map entry, for the memory estimate. */
+	static final long ESTIMATED_BYTES;
+	
+	static {
+		long slots = 0;
+		for (VoiceTimeWindow window : WINDOWS) {
+			slots += window.getBuckets();
+		}
+		ESTIMATED_BYTES = 160 + WINDOWS.length * 16L + slots * SLOT_WIDTH * Long.BYTES;
+	}
+	
+	private final long[][] rings = new long[WINDOWS.length][];
+	private volatile long lastUpdatedMillis = System.currentTimeMillis();
+	
+	VoiceTimeRings() {
+		for (VoiceTimeWindow window : WINDOWS) {
+			rings[window.ordinal()] = new long[window.getBuckets() * SLOT_WIDTH];
+		}
+	}
+	
+	/**
+	 * @param kind {@link #MUTED} or {@link #DEAFENED}
+	 */
+	synchronized void add(int kind, long startMillis, long endMillis) {
+		for (VoiceTimeWindow window : WINDOWS) {
+			long[] ring = rings[window.ordinal()];
+			long width = window.getBucketMillis();
+			long last = endMillis / width;
+			long first = Math.max(startMillis / width, last - window.getBuckets() + 1);
+			
+			for (long bucket = first; bucket <= last; bucket++) {
+				long overlap = Math.min(endMillis, (bucket + 1) * width) - Math.max(startMillis, bucket * width);
+				if (overlap <= 0) {
+					continue;
+				}
+				
+				int offset = (int) (bucket % window.getBuckets()) * SLOT_WIDTH;
+				if (ring[offset] < bucket) {
+					ring[offset] = bucket;
+					ring[offset + MUTED] = 0;
+					ring[offset + DEAFENED] = 0;
+				} else if (ring[offset] > bucket) {
+					continue; // a later interval already recycled this slot
+				}
+				ring[offset + kind] += overlap;
+			}
+		}
+		lastUpdatedMillis = endMillis;
+	}
+	
+	/**
+	 * Adds the totals of every window that are still current at {@code nowMillis} to {@code muted} and {@code deafened},
+	 * both indexed by {@link VoiceTimeWindow#ordinal()}.
+	 */
+	synchronized void addTo(long[] muted, long[] deafened, long nowMillis) {
+		for (VoiceTimeWindow window : WINDOWS) {
+			long[] ring = rings[window.ordinal()];
+			long oldest = nowMillis / window.getBucketMillis() - window.getBuckets() + 1;
+			
+			for (int offset = 0; offset < ring.length; offset += SLOT_WIDTH) {
+				if (ring[offset] >= oldest) {
+					muted[window.ordinal()] += ring[offset + MUTED];
+					deafened[window.ordinal()] += ring[offset + DEAFENED];
+				}
+			}
+		}
+	}
+	
+	long lastUpdatedMillis() {
+		return lastUpdatedMillis;
+	}
+}
@@ -0,0 +1,19 @@
+package com.jakec.mutediscordbot.analytics;
+
+/**
+ * Time spent muted and deafened per {@link VoiceTimeWindow}, including intervals still open when it was read.
+ */
+public record VoiceTimeTotals(long[] mutedMillis, long[] deafenedMillis) {
+	
+	public long muted(VoiceTimeWindow window) {
+		return mutedMillis[window.ordinal()];
+	}
+	
+	public long deafened(VoiceTimeWindow window) {
+		return deafenedMillis[window.ordinal()];
+	}
+	
+	public boolean isEmpty() {
+		return muted(VoiceTimeWindow.WEEK) == 0 && deafened(VoiceTimeWindow.WEEK) == 0;
+	}
+}
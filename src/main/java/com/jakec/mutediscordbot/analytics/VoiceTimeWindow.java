@@ -0,0 +1,26 @@
+package com.jakec.mutediscordbot.analytics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling windows reported by {@code voice time}, each kept as a ring of {@code buckets} buckets of {@code bucketMillis}.
+ * A window covers its last {@code buckets} whole or partial buckets, so it is exact to one bucket width.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum VoiceTimeWindow {
+	HOUR("Last hour", TimeUnit.MINUTES.toMillis(5), 12),
+	DAY("Last day", TimeUnit.HOURS.toMillis(1), 24),
+	WEEK("Last week", TimeUnit.DAYS.toMillis(1), 7);
+	
+	private final String label;
+	private final long bucketMillis;
+	private final int buckets;
+	
+	public long lengthMillis() {
+		return bucketMillis * buckets;
+	}
+}
@@ -1,11 +1,17 @@
 package com.jakec.mutediscordbot.config;
 
+import com.jakec.mutediscordbot.execution.BotExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableConfigurationProperties(BotProperties.class)
@@ -13,9 +19,22 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableAsync
 @EnableScheduling
 @Slf4j
-public class BotConfiguration {
+public class BotConfiguration implements AsyncConfigurer, SchedulingConfigurer {
+	
+	private final BotExecutors botExecutors;
 	
-	public BotConfiguration() {
+	public BotConfiguration(BotExecutors botExecutors) {
+		this.botExecutors = botExecutors;
 		log.info("Bot configuration initialised.");
 	}
+	
+	@Override
+	public Executor getAsyncExecutor() {
+		return botExecutors.getAsyncPool();
+	}
+	
+	@Override
+	public void configureTasks(ScheduledTaskRegistrar registrar) {
+		registrar.setScheduler(botExecutors.getScheduler());
+	}
 }
@@ -1,7 +1,9 @@
 package com.jakec.mutediscordbot.config;
 
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
 import jakarta.annotation.PostConstruct;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
@@ -9,11 +11,14 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
 import java.time.Duration;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Data
 @Validated
@@ -36,6 +41,45 @@ public class BotProperties {
 	@NotNull @Valid
 	private Messages messages = new Messages();
 	
+	@NotNull @Valid
+	private Pipeline pipeline = new Pipeline();
+	
+	@NotNull @Valid
+	private Coalescing coalescing = new Coalescing();
+	
+	@NotNull @Valid
+	private Sharding sharding = new Sharding();
+	
+	@NotNull @Valid
+	private Outbound outbound = new Outbound();
+	
+	@NotNull @Valid
+	private SendRetry sendRetry = new SendRetry();
+	
+	@NotNull @Valid
+	private Snapshot snapshot = new Snapshot();
+	
+	@NotNull @Valid
+	private Commands commands = new Commands();
+	
+	@NotNull @Valid
+	private GuildConfig guildConfig = new GuildConfig();
+	
+	@NotNull @Valid
+	private VoiceTime voiceTime = new VoiceTime();
+	
+	@NotNull @Valid
+	private VoiceDebounce voiceDebounce = new VoiceDebounce();
+	
+	@NotNull @Valid
+	private History history = new History();
+	
+	@NotNull @Valid
+	private EventLog eventLog = new EventLog();
+	
+	@NotNull @Valid
+	private Execution execution = new Execution();
+	
 	@Data
 	public static class Announcements {
 		private boolean mute = true;
@@ -48,9 +92,28 @@ public class BotProperties {
 	public static class SpamPrevention {
 		private Duration cooldown = Duration.ofSeconds(3);
 		
+		/** Sustained rate for one user in one guild. */
 		@Min(1)
 		private int maxAnnouncementsPerMinute = 20;
 		
+		/** Announcements a user may send back to back before the per-minute rate applies. */
+		@Min(1) @Max(250)
+		private int userBurst = 5;
+		
+		/** Sustained rate for a whole guild; 0 disables the guild limit. */
+		@Min(0)
+		private int guildAnnouncementsPerMinute = 60;
+		
+		@Min(1)
+		private int guildBurst = 10;
+		
+		/** Sustained rate across every guild; 0 disables the global limit. */
+		@Min(0)
+		private int globalAnnouncementsPerMinute = 600;
+		
+		@Min(1)
+		private int globalBurst = 50;
+		
 		private boolean enableRateLimit = true;
 		
 		@PostConstruct
@@ -62,6 +125,268 @@ public class BotProperties {
 		}
 	}
 	
+	@Data
+	public static class Pipeline {
+		private boolean enabled = true;
+		
+		@Min(1)
+		private int queueCapacity = 10_000;
+		
+		@Min(1)
+		private int workers = 8;
+		
+		@NotNull
+		private BackpressurePolicy backpressure = BackpressurePolicy.DROP_OLDEST;
+	}
+	
+	@Data
+	public static class Coalescing {
+		private boolean enabled = false;
+		
+		@NotNull
+		private Duration window = Duration.ofMillis(1500);
+		
+		@Min(1)
+		private int maxMessages = 10;
+		
+		@Min(100) @Max(2000)
+		private int maxCharacters = 2000;
+	}
+	
+	@Data
+	public static class Sharding {
+		private boolean enabled = false;
+		
+		/** Total shards across all processes; -1 uses Discord's recommended count. */
+		private int totalShards = -1;
+		
+		/** First and last shard id run by this process; -1 runs every shard. */
+		private int minShardId = -1;
+		private int maxShardId = -1;
+		
+		public boolean hasShardRange() {
+			return minShardId >= 0 && maxShardId >= minShardId;
+		}
+	}
+	
+	@Data
+	public static class Outbound {
+		private boolean enabled = true;
+		
+		/** Messages Discord accepts per channel within one window before it starts returning 429s. */
+		@Min(1)
+		private int channelBurst = 5;
+		
+		@NotNull
+		private Duration channelWindow = Duration.ofSeconds(5);
+		
+		/** Announcements held per channel before new ones are dropped; command responses are never dropped. */
+		@Min(1)
+		private int maxQueuedPerChannel = 100;
+	}
+	
+	@Data
+	public static class SendRetry {
+		/** Attempts per message including the first; 1 turns retries off. */
+		@Min(1)
+		private int maxAttempts = 4;
+		
+		/** Backoff before the first retry, doubled for each further one up to {@code max-backoff}. */
+		@NotNull
+		private Duration initialBackoff = Duration.ofMillis(500);
+		
+		@NotNull
+		private Duration maxBackoff = Duration.ofSeconds(8);
+		
+		/** No retry starts later than this after the voice event, or after submission for other messages. */
+		@NotNull
+		private Duration deadline = Duration.ofSeconds(30);
+	}
+	
+	@Data
+	public static class Commands {
+		/** {@code !command} messages; turning this off also drops the MESSAGE_CONTENT and message intents. */
+		private boolean prefixEnabled = true;
+		
+		/** {@code /command} interactions, registered globally when the first shard is ready. */
+		private boolean slashEnabled = true;
+		
+		/** How long rendered stats/metrics/status responses are reused; 0 renders every time. */
+		@NotNull
+		private Duration responseCacheTtl = Duration.ofSeconds(5);
+		
+		/** Minimum time between two uses of the same command in one channel; 0 disables the cooldown. */
+		@NotNull
+		private Duration channelCooldown = Duration.ofSeconds(3);
+	}
+	
+	@Data
+	public static class Snapshot {
+		private boolean enabled = true;
+		
+		/** Memory-mapped file holding the last checkpoint of voice states and cooldown buckets. */
+		@NotBlank
+		private String path = "data/state.snapshot";
+		
+		@NotNull
+		private Duration checkpointInterval = Duration.ofSeconds(5);
+		
+		/** Snapshots older than this are ignored at startup; voice states may have changed unseen while the bot was down. */
+		@NotNull
+		private Duration maxAge = Duration.ofMinutes(10);
+	}
+	
+	@Data
+	public static class GuildConfig {
+		/** JSON file holding the settings each guild changed with {@code config}; everything else uses the values above. */
+		@NotBlank
+		private String path = "data/guild-config.json";
+	}
+	
+	@Data
+	public static class VoiceDebounce {
+		/** Announce a member's settled state once they stop toggling, instead of each toggle. */
+		private boolean enabled = true;
+		
+		/** How long a member's voice state must stay unchanged before it is announced. */
+		@NotNull
+		private Duration quietPeriod = Duration.ofSeconds(1);
+		
+		/** Longest a burst is held, so a member who keeps toggling is still announced. */
+		@NotNull
+		private Duration maxDelay = Duration.ofSeconds(5);
+	}
+	
+	@Data
+	public static class VoiceTime {
+		/** Aggregate how long members stay muted and deafened, reported by {@code voice time}. */
+		private boolean enabled = true;
+		
+		/** Members with their own hour/day/week totals, about 1 KB each; intervals beyond this only count toward the guild. */
+		@Min(0)
+		private int maxTrackedMembers = 10_000;
+		
+		@Min(0)
+		private int maxTrackedGuilds = 2_000;
+	}
+	
+	@Data
+	public static class History {
+		/** Keep each member's recent mute/deafen transitions for {@code history}. */
+		private boolean enabled = true;
+		
+		/** Transitions kept per member and guild; older ones are overwritten. */
+		@Min(1)
+		@Max(1000)
+		private int entriesPerMember = 50;
+		
+		/** Estimated heap for all members' history; least recently active members are evicted beyond it. */
+		@NotNull
+		private DataSize memoryBudget = DataSize.ofMegabytes(16);
+	}
+	
+	@Data
+	public static class EventLog {
+		private boolean enabled = true;
+		
+		/** Directory holding the {@code events-<created millis>.log} segments. */
+		@NotBlank
+		private String directory = "data/events";
+		
+		/** Records waiting for the writer thread; when full, new records are dropped rather than blocking the event thread. */
+		@Min(1024)
+		private int queueCapacity = 65_536;
+		
+		/** A segment is closed and a new one started once it reaches either limit. */
+		@NotNull
+		private DataSize segmentSize = DataSize.ofMegabytes(64);
+		
+		@NotNull
+		private Duration segmentDuration = Duration.ofHours(1);
+		
+		@NotNull
+		private FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+		
+		/** How often written records are forced to disk with {@code fsync: interval}. */
+		@NotNull
+		private Duration fsyncInterval = Duration.ofSeconds(1);
+		
+		/** Closed segments older than this are deleted. */
+		@NotNull
+		private Duration retention = Duration.ofDays(30);
+		
+		/** Oldest closed segments are deleted while all segments together exceed this size. */
+		@NotNull
+		private DataSize maxTotalSize = DataSize.ofGigabytes(1);
+		
+		/** Closed segments older than this are rewritten without the {@code compact-discard} outcomes. */
+		@NotNull
+		private Duration compactAfter = Duration.ofDays(1);
+		
+		/** Outcomes only worth keeping while recent; empty disables compaction. */
+		@NotNull
+		private Set<AnnouncementOutcome> compactDiscard = EnumSet.of(AnnouncementOutcome.FILTERED);
+		
+		@NotNull
+		private Duration maintenanceInterval = Duration.ofMinutes(10);
+	}
+	
+	@Data
+	public static class Execution {
+		/** Threads behind JDA's callback and REST pools and Spring's {@code @Async} and {@code @Scheduled}. */
+		@NotNull
+		private ThreadModel threads = ThreadModel.VIRTUAL;
+		
+		/**
+		 * Hand gateway events to a pool instead of dispatching them in order on each shard's gateway thread.
+		 * Updates for one member can then be handled out of order, corrupting voice state diffs and history.
+		 */
+		private boolean eventPool = false;
+		
+		/** Pool sizes with {@code threads: platform}; virtual threads are started per task instead. */
+		@Min(1)
+		private int eventPoolSize = 4;
+		
+		@Min(1)
+		private int callbackPoolSize = 2;
+		
+		/** Runs REST requests once their rate limit bucket allows it. */
+		@Min(1)
+		private int restPoolSize = 4;
+		
+		@Min(1)
+		private int asyncPoolSize = 4;
+		
+		/** Scheduler workers are fixed in both modes; with {@code threads: virtual} they are virtual threads. */
+		@Min(1)
+		private int rateLimitSchedulerSize = 2;
+		
+		@Min(1)
+		private int schedulerSize = 2;
+	}
+	
+	public enum ThreadModel {
+		/** A new virtual thread per task; blocking parks it instead of holding a pool thread. */
+		VIRTUAL,
+		/** Fixed pools of daemon platform threads. */
+		PLATFORM
+	}
+	
+	public enum FsyncPolicy {
+		/** Leave flushing to the OS; a crash may lose the last seconds of records. */
+		NEVER,
+		/** Force to disk every {@code fsync-interval}. */
+		INTERVAL,
+		/** Force to disk after every batch the writer drains from its queue. */
+		EVERY_BATCH
+	}
+	
+	public enum BackpressurePolicy {
+		BLOCK,
+		DROP_OLDEST,
+		DROP_NEWEST
+	}
+	
 	@Data
 	public static class Messages {
 		@NotEmpty
@@ -92,6 +417,21 @@ public class BotProperties {
 				"🎧❌ **{user}** plugged into the matrix!"
 		);
 		
+		/** Used when a member deafens and is muted along with it, instead of two separate announcements. */
+		@NotEmpty
+		private List<String> deafenMuteTemplates = List.of(
+				"👂❌ **{user}** went fully dark: deafened and muted!",
+				"🔕 **{user}** has left the building (mentally)!",
+				"🎧 **{user}** can't hear you and won't answer either!"
+		);
+		
+		@NotEmpty
+		private List<String> undeafenUnmuteTemplates = List.of(
+				"👂 **{user}** is back: undeafened and unmuted!",
+				"🔊 **{user}** has rejoined the conversation in full!",
+				"💬 **{user}** can hear you and talk back again!"
+		);
+		
 		private Map<String, List<String>> customUserMessages = Map.of();
 	}
 }
@@ -1,6 +1,12 @@
 package com.jakec.mutediscordbot.config;
 
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.handler.ChannelCacheListener;
 import com.jakec.mutediscordbot.handler.DiscordEventHandler;
+import com.jakec.mutediscordbot.handler.ShardMetricsListener;
+import com.jakec.mutediscordbot.handler.SlashCommandListener;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.StartupReport;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,50 +17,87 @@ import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Configuration
+@Profile("!loadtest") // the load generator feeds DiscordEventHandler itself, without a gateway connection
 @RequiredArgsConstructor
 @Slf4j
 public class JdaConfiguration {
 	
+	private static final List<GatewayIntent> VOICE_INTENTS = List.of(GatewayIntent.GUILD_VOICE_STATES);
+	
+	// Only needed for prefix commands; every message in every guild is delivered while these are enabled.
+	private static final List<GatewayIntent> MESSAGE_INTENTS = List.of(
+			GatewayIntent.MESSAGE_CONTENT,
+			GatewayIntent.GUILD_MESSAGES,
+			GatewayIntent.DIRECT_MESSAGES
+	);
+	
 	private final BotProperties botProperties;
+	private final BotMetrics botMetrics;
+	private final StartupReport startupReport;
+	private final BotExecutors botExecutors;
 	private volatile JDA jda;
+	private volatile ShardManager shardManager;
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 	
 	@Bean
+	@Lazy(false) // logging in is the critical path, so it starts during refresh even under lazy initialization
+	@ConditionalOnProperty(prefix = "discord.bot.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
 	@Retryable(retryFor = {Exception.class}, maxAttempts = 3, backoff = @Backoff(delay = 5000))
-	public JDA jda(DiscordEventHandler eventHandler) {
+	public JDA jda(DiscordEventHandler eventHandler, ChannelCacheListener channelCacheListener,
+				   SlashCommandListener slashCommandListener) {
 		try {
 			log.info("Starting Discord bot connection...");
+			validateToken();
+			
+			JDABuilder builder = JDABuilder.createDefault(botProperties.getToken())
+										 .addEventListeners(eventHandler)
+										 .addEventListeners(channelCacheListener)
+										 .addEventListeners(slashCommandListener)
+										 .addEventListeners(new BotLifecycleListener())
+										 .addEventListeners(new ShardMetricsListener(botMetrics.registerShard(0, () -> jda)))
+										 .enableIntents(VOICE_INTENTS)
+										 .setMemberCachePolicy(MemberCachePolicy.VOICE)
+										 .setStatus(OnlineStatus.ONLINE)
+										 .setActivity(Activity.listening("for mute/deafen changes"))
+										 .setAutoReconnect(true)
+										 .setCallbackPool(botExecutors.getCallbackPool(), false)
+										 .setRateLimitScheduler(botExecutors.getRateLimitScheduler(), false)
+										 .setRateLimitElastic(botExecutors.getRestPool(), false);
 			
-			if (botProperties.getToken() == null || botProperties.getToken().trim().isEmpty()) {
-				throw new IllegalArgumentException("Discord bot token is required but not provided");
+			if (botExecutors.getEventPool() != null) {
+				builder.setEventPool(botExecutors.getEventPool(), false);
 			}
 			
-			this.jda = JDABuilder.createDefault(botProperties.getToken())
-							.addEventListeners(eventHandler)
-							.addEventListeners(new BotLifecycleListener())
-							.enableIntents(
-									GatewayIntent.GUILD_VOICE_STATES,
-									GatewayIntent.MESSAGE_CONTENT,
-									GatewayIntent.GUILD_MESSAGES
-							)
-							.setMemberCachePolicy(MemberCachePolicy.VOICE)
-							.setStatus(OnlineStatus.ONLINE)
-							.setActivity(Activity.listening("for mute/deafen changes"))
-							.setAutoReconnect(true)
-							.build();
+			if (botProperties.getCommands().isPrefixEnabled()) {
+				builder.enableIntents(MESSAGE_INTENTS);
+			} else {
+				builder.disableIntents(MESSAGE_INTENTS);
+			}
+			
+			long loginStarted = System.nanoTime();
+			this.jda = builder.build();
+			startupReport.recordLogin(Duration.ofNanos(System.nanoTime() - loginStarted));
 			
 			
 			scheduleConnectionHealthCheck();
@@ -68,11 +111,80 @@ public class JdaConfiguration {
 		}
 	}
 	
-	private static class BotLifecycleListener extends ListenerAdapter {
+	@Bean
+	@Lazy(false) // logging in is the critical path, so it starts during refresh even under lazy initialization
+	@ConditionalOnProperty(prefix = "discord.bot.sharding", name = "enabled", havingValue = "true")
+	@Retryable(retryFor = {Exception.class}, maxAttempts = 3, backoff = @Backoff(delay = 5000))
+	public ShardManager shardManager(DiscordEventHandler eventHandler, ChannelCacheListener channelCacheListener,
+									 SlashCommandListener slashCommandListener) {
+		try {
+			BotProperties.Sharding sharding = botProperties.getSharding();
+			log.info("Starting sharded Discord bot connection (total shards: {}, range: {})",
+					sharding.getTotalShards() > 0 ? sharding.getTotalShards() : "recommended",
+					sharding.hasShardRange() ? sharding.getMinShardId() + "-" + sharding.getMaxShardId() : "all");
+			validateToken();
+			
+			DefaultShardManagerBuilder builder = DefaultShardManagerBuilder.createDefault(botProperties.getToken())
+														.addEventListeners(eventHandler, channelCacheListener,
+																slashCommandListener, new BotLifecycleListener())
+														.addEventListenerProvider(shardId -> new ShardMetricsListener(
+																botMetrics.registerShard(shardId,
+																		() -> shardManager != null ? shardManager.getShardById(shardId) : null)))
+														.enableIntents(VOICE_INTENTS)
+														.setMemberCachePolicy(MemberCachePolicy.VOICE)
+														.setStatus(OnlineStatus.ONLINE)
+														.setActivity(Activity.listening("for mute/deafen changes"))
+														.setAutoReconnect(true)
+														.setCallbackPool(botExecutors.getCallbackPool(), false)
+														.setRateLimitScheduler(botExecutors.getRateLimitScheduler(), false)
+														.setRateLimitElastic(botExecutors.getRestPool(), false)
+														.setShardsTotal(sharding.getTotalShards());
+			
+			if (botExecutors.getEventPool() != null) {
+				builder.setEventPool(botExecutors.getEventPool(), false);
+			}
+			
+			if (botProperties.getCommands().isPrefixEnabled()) {
+				builder.enableIntents(MESSAGE_INTENTS);
+			} else {
+				builder.disableIntents(MESSAGE_INTENTS);
+			}
+			
+			if (sharding.hasShardRange()) {
+				if (sharding.getTotalShards() <= 0) {
+					throw new IllegalArgumentException("A shard range requires an explicit total shard count");
+				}
+				builder.setShards(sharding.getMinShardId(), sharding.getMaxShardId());
+			}
+			
+			long loginStarted = System.nanoTime();
+			this.shardManager = builder.build();
+			startupReport.recordLogin(Duration.ofNanos(System.nanoTime() - loginStarted));
+			
+			scheduleConnectionHealthCheck();
+			
+			log.info("Sharded Discord bot connection initiated ({} shards queued)", shardManager.getShardsQueued());
+			return shardManager;
+			
+		} catch (Exception e) {
+			log.error("Failed to initialize sharded Discord bot: {}", e.getMessage(), e);
+			throw new RuntimeException("Discord bot initialization failed", e);
+		}
+	}
+	
+	private void validateToken() {
+		if (botProperties.getToken() == null || botProperties.getToken().trim().isEmpty()) {
+			throw new IllegalArgumentException("Discord bot token is required but not provided");
+		}
+	}
+	
+	private class BotLifecycleListener extends ListenerAdapter {
 		
 		@Override
 		public void onReady(@NotNull ReadyEvent event) {
-			log.info("Discord bot ready! Connected as: {}", event.getJDA().getSelfUser().getName());
+			JDA.ShardInfo shardInfo = event.getJDA().getShardInfo();
+			log.info("Discord bot ready! Connected as: {} ({})", event.getJDA().getSelfUser().getName(),
+					shardInfo.getShardString());
 			log.info("Connected to {} guilds", event.getJDA().getGuilds().size());
 			log.info("Bot is now monitoring voice state changes");
 			
@@ -81,32 +193,50 @@ public class JdaConfiguration {
 			if (ping > 0) {
 				log.info("Gateway ping: {}ms", ping);
 			}
+			
+			if (allShardsReady(event.getJDA())) {
+				startupReport.recordReady();
+			}
+		}
+		
+		private boolean allShardsReady(JDA readyShard) {
+			ShardManager manager = readyShard.getShardManager();
+			return manager == null || (manager.getShardsQueued() == 0 && manager.getShards().stream()
+					.allMatch(shard -> shard.getStatus() == JDA.Status.CONNECTED));
 		}
 	}
 	
+	private List<JDA> shards() {
+		if (shardManager != null) {
+			return shardManager.getShards();
+		}
+		return jda != null ? List.of(jda) : List.of();
+	}
+	
 	private void scheduleConnectionHealthCheck() {
 		scheduler.schedule(() -> {
-			if (jda != null) {
-				JDA.Status status = jda.getStatus();
+			for (JDA shard : shards()) {
+				String shardName = shard.getShardInfo().getShardString();
+				JDA.Status status = shard.getStatus();
 				switch (status) {
-					case CONNECTED -> log.info("Discord bot health check: Connected successfully");
+					case CONNECTED -> log.info("Discord bot health check ({}): Connected successfully", shardName);
 					case CONNECTING_TO_WEBSOCKET, IDENTIFYING_SESSION, LOADING_SUBSYSTEMS ->
-							log.info("Discord bot health check: Still connecting ({})", status);
+							log.info("Discord bot health check ({}): Still connecting ({})", shardName, status);
 					case DISCONNECTED, FAILED_TO_LOGIN, SHUTDOWN -> {
-						log.error("Discord bot health check: Connection failed ({})", status);
-						attemptReconnection();
+						log.error("Discord bot health check ({}): Connection failed ({})", shardName, status);
+						attemptReconnection(shard);
 					}
-					default -> log.warn("⚠Discord bot health check: Unknown status ({})", status);
+					default -> log.warn("⚠Discord bot health check ({}): Unknown status ({})", shardName, status);
 				}
 			}
 		}, 30, TimeUnit.SECONDS);
 	}
 	
-	private void attemptReconnection() {
-		if (jda != null && jda.getStatus() == JDA.Status.FAILED_TO_LOGIN) {
+	private void attemptReconnection(JDA shard) {
+		if (shard.getStatus() == JDA.Status.FAILED_TO_LOGIN) {
 			log.info("Attempting Discord bot reconnection...");
 			try {
-				jda.shutdown();
+				shard.shutdown();
 				Thread.sleep(5000);
 				
 				log.warn("Bot reconnection requires restart - please check logs and restart application");
@@ -121,6 +251,7 @@ public class JdaConfiguration {
 	@PreDestroy
 	public void shutdown() {
 		log.info("Shutting down Discord bot...");
+		List<JDA> shards = shards();
 		
 		try {
 			if (!scheduler.isShutdown()) {
@@ -130,37 +261,51 @@ public class JdaConfiguration {
 				}
 			}
 			
-			if (jda != null) {
+			if (shardManager != null) {
+				shardManager.shutdown();
+			} else if (jda != null) {
 				jda.shutdown();
-				if (!jda.awaitShutdown(Duration.ofSeconds(10))) {
-					log.warn("⚠Discord bot shutdown timed out, forcing shutdown");
-					jda.shutdownNow();
+			}
+			
+			for (JDA shard : shards) {
+				if (!shard.awaitShutdown(Duration.ofSeconds(10))) {
+					log.warn("⚠Discord bot shutdown timed out ({}), forcing shutdown",
+							shard.getShardInfo().getShardString());
+					shard.shutdownNow();
 				}
-				log.info("Discord bot shutdown complete");
 			}
+			log.info("Discord bot shutdown complete");
 			
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 			log.warn("Shutdown interrupted, forcing immediate shutdown");
-			if (jda != null) {
-				jda.shutdownNow();
-			}
+			shards.forEach(JDA::shutdownNow);
 		} catch (Exception e) {
 			log.error("Error during Discord bot shutdown: {}", e.getMessage(), e);
-			if (jda != null) {
-				jda.shutdownNow();
-			}
+			shards.forEach(JDA::shutdownNow);
 		}
 	}
 	
 	public boolean isBotReady() {
-		return jda != null && jda.getStatus() == JDA.Status.CONNECTED;
+		List<JDA> shards = shards();
+		return !shards.isEmpty() && shards.stream().allMatch(shard -> shard.getStatus() == JDA.Status.CONNECTED);
 	}
 	
 	public String getBotStatus() {
-		if (jda == null) {
+		List<JDA> shards = shards();
+		if (shards.isEmpty()) {
 			return "NOT_INITIALIZED";
 		}
-		return jda.getStatus().toString();
+		if (shards.size() == 1) {
+			return shards.get(0).getStatus().toString();
+		}
+		
+		Map<JDA.Status, Long> byStatus = shards.stream()
+												.collect(Collectors.groupingBy(JDA::getStatus, Collectors.counting()));
+		String breakdown = byStatus.entrySet().stream()
+									.map(entry -> entry.getValue() + " " + entry.getKey())
+									.collect(Collectors.joining(", "));
+		
+		return (isBotReady() ? "CONNECTED" : "DEGRADED") + " (" + shards.size() + " shards: " + breakdown + ")";
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,187 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceAction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * On-disk layout of event log segments (big-endian).
+ * <p>
+ * A segment is a 16-byte header ({@code magic, version (short), flags (short), created-at millis}) followed by
+ * fixed-width 32-byte records: {@code guildId, userId, timestamp, action (byte), outcome (byte), 2 reserved bytes}
+ * and a CRC32C of those first 28 bytes. Fixed width keeps a segment seekable by record index, and the per-record
+ * checksum lets readers stop cleanly at a record torn by a crash. Segment files are named after their creation
+ * time, so lexical order is write order.
+ */
+public final class EventLogFormat {
+	
+	public static final int MAGIC = 0x4D44454C; // "MDEL"
+	public static final short VERSION = 1;
+	public static final int HEADER_BYTES = 16;
+	public static final int RECORD_BYTES = 32;
+	
+	/** Header flag: records with discarded outcomes have been removed from this segment. */
+	public static final short FLAG_COMPACTED = 1;
+	
+	private static final int CHECKSUMMED_BYTES = 28;
+	private static final String SEGMENT_PREFIX = "events-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final VoiceAction[] ACTIONS = VoiceAction.values();
+	
+	public record Header(short version, short flags, long createdAtMillis) {
+		
+		public boolean isCompacted() {
+			return (flags & FLAG_COMPACTED) != 0;
+		}
+	}
+	
+	private EventLogFormat() {}
+	
+	static void writeHeader(ByteBuffer out, short flags, long createdAtMillis) {
+		out.putInt(MAGIC).putShort(VERSION).putShort(flags).putLong(createdAtMillis);
+	}
+	
+	/**
+	 * @throws IOException if the buffer does not start with a supported segment header
+	 */
+	public static Header readHeader(ByteBuffer in) throws IOException {
+		if (in.remaining() < HEADER_BYTES) {
+			throw new IOException("truncated header");
+		}
+		int magic = in.getInt();
+		short version = in.getShort();
+		short flags = in.getShort();
+		long createdAt = in.getLong();
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("not an event log segment (magic " + Integer.toHexString(magic) + ", version " + version + ")");
+		}
+		return new Header(version, flags, createdAt);
+	}
+	
+	/**
+	 * Appends one record at the buffer's position. {@code crc} is scratch state, reused to avoid allocation.
+	 */
+	static void encode(ByteBuffer out, EventRecord record, CRC32C crc) {
+		int start = out.position();
+		out.putLong(record.guildId())
+				.putLong(record.userId())
+				.putLong(record.timestampMillis())
+				.put((byte) record.action().ordinal())
+				.put((byte) record.outcome().ordinal())
+				.putShort((short) 0);
+		
+		crc.reset();
+		crc.update(out.slice(start, CHECKSUMMED_BYTES));
+		out.putInt((int) crc.getValue());
+	}
+	
+	/**
+	 * Reads the record at the buffer's position, advancing past it.
+	 *
+	 * @return the record, or {@code null} if it is torn or corrupt
+	 */
+	static EventRecord decode(ByteBuffer in, CRC32C crc) {
+		int start = in.position();
+		crc.reset();
+		crc.update(in.slice(start, CHECKSUMMED_BYTES));
+		
+		long guildId = in.getLong();
+		long userId = in.getLong();
+		long timestamp = in.getLong();
+		int action = in.get();
+		AnnouncementOutcome outcome = AnnouncementOutcome.ofCode(in.get());
+		in.getShort();
+		int checksum = in.getInt();
+		
+		if (checksum != (int) crc.getValue() || action < 0 || action >= ACTIONS.length || outcome == null) {
+			return null;
+		}
+		return new EventRecord(guildId, userId, timestamp, ACTIONS[action], outcome);
+	}
+	
+	/**
+	 * Streams every intact record of a segment to {@code consumer}, stopping at the first torn or corrupt one.
+	 *
+	 * @return the number of records read; fewer than {@link #recordSlots} means the segment ends in damaged data
+	 */
+	public static long read(Path segment, Consumer<EventRecord> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			readHeader(buffer);
+			
+			CRC32C crc = new CRC32C();
+			long records = 0;
+			while (buffer.remaining() >= RECORD_BYTES) {
+				EventRecord record = decode(buffer, crc);
+				if (record == null) {
+					break;
+				}
+				consumer.accept(record);
+				records++;
+			}
+			return records;
+		}
+	}
+	
+	public static Header readHeader(Path segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// keep reading until the header is complete or the file ends
+			}
+			return readHeader(header.flip());
+		}
+	}
+	
+	/**
+	 * Whole records a segment of {@code fileSize} bytes has room for, intact or not.
+	 */
+	public static long recordSlots(long fileSize) {
+		return Math.max(0, (fileSize - HEADER_BYTES) / RECORD_BYTES);
+	}
+	
+	static String segmentName(long createdAtMillis) {
+		return String.format("%s%013d%s", SEGMENT_PREFIX, createdAtMillis, SEGMENT_SUFFIX);
+	}
+	
+	public static boolean isSegment(Path path) {
+		String name = path.getFileName().toString();
+		return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+					   && name.length() > SEGMENT_PREFIX.length() + SEGMENT_SUFFIX.length()
+					   && name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+							  .chars().allMatch(Character::isDigit);
+	}
+	
+	/**
+	 * Creation time encoded in the segment's file name, which unlike the modification time survives compaction.
+	 */
+	static long createdAt(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+	
+	/**
+	 * Segments in {@code directory}, oldest first; {@code path} itself if it is a single segment.
+	 */
+	public static List<Path> listSegments(Path path) throws IOException {
+		if (!Files.isDirectory(path)) {
+			return List.of(path);
+		}
+		try (Stream<Path> files = Files.list(path)) {
+			return files.filter(EventLogFormat::isSegment)
+						.sorted()
+						.toList();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Applies retention and compaction to closed event log segments; the segment being written is never touched.
+ * <p>
+ * Retention deletes segments older than {@code retention}, then the oldest ones while all segments together exceed
+ * {@code max-total-size}. Compaction rewrites segments older than {@code compact-after} without the
+ * {@code compact-discard} outcomes, once each: the copy is written next to the original and moved over it
+ * atomically, so readers only ever see one complete version.
+ */
+@Component
+@Lazy(false) // nothing depends on it, so under lazy initialization it would never be created
+@Slf4j
+public class EventLogMaintenance {
+	
+	private static final int BUFFER_BYTES = 64 * 1024;
+	
+	private final BotProperties.EventLog settings;
+	private final EventLogWriter eventLogWriter;
+	private final ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> schedule;
+	
+	public EventLogMaintenance(BotProperties botProperties, EventLogWriter eventLogWriter, BotExecutors botExecutors) {
+		this.settings = botProperties.getEventLog();
+		this.eventLogWriter = eventLogWriter;
+		this.scheduler = botExecutors.getScheduler();
+	}
+	
+	@PostConstruct
+	public void start() {
+		if (!settings.isEnabled()) {
+			return;
+		}
+		
+		long interval = settings.getMaintenanceInterval().toMillis();
+		schedule = scheduler.scheduleWithFixedDelay(this::runSafely, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	private void runSafely() {
+		try {
+			run();
+		} catch (IOException | UncheckedIOException e) {
+			log.warn("Event log maintenance failed: {}", e.getMessage());
+		} catch (Exception e) {
+			log.error("Unexpected error during event log maintenance", e);
+		}
+	}
+	
+	void run() throws IOException {
+		Path directory = eventLogWriter.getDirectory();
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		
+		// Read the active segment after listing: a segment opened in between is then simply not in the list.
+		List<Path> segments = EventLogFormat.listSegments(directory);
+		Path active = eventLogWriter.getActiveSegment();
+		long now = System.currentTimeMillis();
+		
+		long totalBytes = 0;
+		List<Path> closed = new ArrayList<>(segments.size());
+		for (Path segment : segments) {
+			long size = Files.size(segment);
+			if (segment.equals(active)) {
+				totalBytes += size;
+			} else if (now - EventLogFormat.createdAt(segment) > settings.getRetention().toMillis()) {
+				delete(segment, "older than retention");
+			} else {
+				totalBytes += size;
+				closed.add(segment);
+			}
+		}
+		
+		long maxTotalBytes = settings.getMaxTotalSize().toBytes();
+		while (totalBytes > maxTotalBytes && !closed.isEmpty()) {
+			Path oldest = closed.removeFirst();
+			totalBytes -= Files.size(oldest);
+			delete(oldest, "total size above " + settings.getMaxTotalSize());
+		}
+		
+		if (settings.getCompactDiscard().isEmpty()) {
+			return;
+		}
+		for (Path segment : closed) {
+			if (now - EventLogFormat.createdAt(segment) <= settings.getCompactAfter().toMillis()) {
+				continue;
+			}
+			try {
+				if (!EventLogFormat.readHeader(segment).isCompacted()) {
+					compact(segment, settings.getCompactDiscard());
+				}
+			} catch (IOException | UncheckedIOException e) {
+				// One unreadable segment must not hold up the others; retention removes it eventually.
+				log.warn("Skipping compaction of event log segment {}: {}", segment.getFileName(), e.getMessage());
+			}
+		}
+	}
+	
+	private void delete(Path segment, String reason) throws IOException {
+		Files.deleteIfExists(segment);
+		log.info("Deleted event log segment {} ({})", segment.getFileName(), reason);
+	}
+	
+	private void compact(Path segment, Set<AnnouncementOutcome> discard) throws IOException {
+		EventLogFormat.Header header = EventLogFormat.readHeader(segment);
+		Path temp = segment.resolveSibling(segment.getFileName() + ".tmp");
+		long[] kept = {0};
+		long read;
+		
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			CRC32C crc = new CRC32C();
+			EventLogFormat.writeHeader(buffer, (short) (header.flags() | EventLogFormat.FLAG_COMPACTED), header.createdAtMillis());
+			
+			read = EventLogFormat.read(segment, record -> {
+				if (discard.contains(record.outcome())) {
+					return;
+				}
+				if (buffer.remaining() < EventLogFormat.RECORD_BYTES) {
+					flush(out, buffer);
+				}
+				EventLogFormat.encode(buffer, record, crc);
+				kept[0]++;
+			});
+			flush(out, buffer);
+			out.force(true);
+		} catch (IOException | UncheckedIOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		
+		Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		log.info("Compacted event log segment {}: kept {} of {} records", segment.getFileName(), kept[0], read);
+	}
+	
+	private static void flush(FileChannel out, ByteBuffer buffer) {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		buffer.clear();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (schedule != null) {
+			schedule.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceAction;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads event log segments without starting the bot, e.g. {@code gradle eventLog --args="dump data/events --format csv"}.
+ * <pre>
+ * dump  &lt;segment|directory&gt; [--format text|csv|jsonl]
+ * stats &lt;segment|directory&gt;
+ * </pre>
+ * Records go to stdout, so redirecting {@code dump} converts segments for other tools; problems go to stderr.
+ */
+public final class EventLogTool {
+	
+	private static final String USAGE = """
+			Usage:
+			  dump  <segment|directory> [--format text|csv|jsonl]   print records, oldest first
+			  stats <segment|directory>                            count records by action and outcome""";
+	
+	private enum Format { TEXT, CSV, JSONL }
+	
+	private EventLogTool() {}
+	
+	public static void main(String[] args) {
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		int status = run(args, out, System.err);
+		out.flush();
+		System.exit(status);
+	}
+	
+	static int run(String[] args, PrintStream out, PrintStream err) {
+		if (args.length < 2) {
+			err.println(USAGE);
+			return 2;
+		}
+		
+		Path path = Paths.get(args[1]);
+		if (!Files.exists(path)) {
+			err.println("No such file or directory: " + path);
+			return 1;
+		}
+		
+		try {
+			List<Path> segments = EventLogFormat.listSegments(path);
+			switch (args[0]) {
+				case "dump" -> {
+					Format format = parseFormat(args);
+					if (format == null) {
+						err.println(USAGE);
+						return 2;
+					}
+					return dump(segments, format, out, err);
+				}
+				case "stats" -> {
+					return stats(segments, out, err);
+				}
+				default -> {
+					err.println(USAGE);
+					return 2;
+				}
+			}
+		} catch (IOException e) {
+			err.println("Failed to read " + path + ": " + e.getMessage());
+			return 1;
+		}
+	}
+	
+	private static Format parseFormat(String[] args) {
+		if (args.length == 2) {
+			return Format.TEXT;
+		}
+		if (args.length != 4 || !args[2].equals("--format")) {
+			return null;
+		}
+		try {
+			return Format.valueOf(args[3].toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	private static int dump(List<Path> segments, Format format, PrintStream out, PrintStream err) throws IOException {
+		if (format == Format.CSV) {
+			out.println("timestamp,guild_id,user_id,action,outcome");
+		}
+		
+		int damaged = 0;
+		for (Path segment : segments) {
+			long read = EventLogFormat.read(segment, record -> out.println(format(record, format)));
+			damaged += reportDamage(segment, read, err);
+		}
+		return damaged == 0 ? 0 : 1;
+	}
+	
+	private static String format(EventRecord record, Format format) {
+		Instant timestamp = Instant.ofEpochMilli(record.timestampMillis());
+		return switch (format) {
+			case TEXT -> timestamp + " guild=" + record.guildId() + " user=" + record.userId()
+							 + " " + record.action() + " " + record.outcome();
+			case CSV -> timestamp + "," + record.guildId() + "," + record.userId()
+							+ "," + record.action() + "," + record.outcome();
+			// Snowflakes exceed the integer precision of JavaScript numbers, so ids are strings.
+			case JSONL -> "{\"timestamp\":\"" + timestamp + "\",\"guildId\":\"" + record.guildId()
+							  + "\",\"userId\":\"" + record.userId() + "\",\"action\":\"" + record.action()
+							  + "\",\"outcome\":\"" + record.outcome() + "\"}";
+		};
+	}
+	
+	private static int stats(List<Path> segments, PrintStream out, PrintStream err) throws IOException {
+		long[] actions = new long[VoiceAction.values().length];
+		long[] outcomes = new long[AnnouncementOutcome.values().length];
+		long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+		long records = 0;
+		long bytes = 0;
+		int compacted = 0;
+		int damaged = 0;
+		
+		for (Path segment : segments) {
+			if (EventLogFormat.readHeader(segment).isCompacted()) {
+				compacted++;
+			}
+			long read = EventLogFormat.read(segment, record -> {
+				actions[record.action().ordinal()]++;
+				outcomes[record.outcome().ordinal()]++;
+				range[0] = Math.min(range[0], record.timestampMillis());
+				range[1] = Math.max(range[1], record.timestampMillis());
+			});
+			records += read;
+			bytes += Files.size(segment);
+			damaged += reportDamage(segment, read, err);
+		}
+		
+		out.printf("Segments: %d (%d compacted, %d damaged), %d bytes%n", segments.size(), compacted, damaged, bytes);
+		out.printf("Records:  %d%n", records);
+		if (records > 0) {
+			out.printf("From:     %s%nTo:       %s%n", Instant.ofEpochMilli(range[0]), Instant.ofEpochMilli(range[1]));
+		}
+		out.println("Actions:");
+		for (VoiceAction action : VoiceAction.values()) {
+			out.printf("  %-24s %d%n", action, actions[action.ordinal()]);
+		}
+		out.println("Outcomes:");
+		for (AnnouncementOutcome outcome : AnnouncementOutcome.values()) {
+			out.printf("  %-24s %d%n", outcome, outcomes[outcome.ordinal()]);
+		}
+		return damaged == 0 ? 0 : 1;
+	}
+	
+	private static int reportDamage(Path segment, long read, PrintStream err) throws IOException {
+		long unreadable = Files.size(segment) - EventLogFormat.HEADER_BYTES - read * EventLogFormat.RECORD_BYTES;
+		if (unreadable == 0) {
+			return 0;
+		}
+		err.printf("%s: damaged after record %d (%d bytes unreadable)%n", segment.getFileName(), read, unreadable);
+		return 1;
+	}
+}
@@ -0,0 +1,284 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceStateChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Appends every voice state change and its {@link AnnouncementOutcome} to rotating binary segments.
+ * <p>
+ * {@link #append} only offers a fixed-size record to a bounded queue, so event threads never touch the disk and
+ * never block; if the queue is full the record is dropped and counted. A single writer thread drains the queue in
+ * batches, encodes each batch into one direct buffer and hands it to the segment's {@link FileChannel} in a single
+ * write. Fsyncs follow the configured {@link BotProperties.FsyncPolicy} and also happen only on that thread.
+ * <p>
+ * Every start opens a fresh segment rather than appending to the last one, so a segment torn by a crash is never
+ * written to again.
+ */
+@Component
+@Slf4j
+public class EventLogWriter {
+	
+	private static final int BATCH_RECORDS = 2048;
+	private static final long POLL_MILLIS = 100;
+	private static final long SHUTDOWN_MILLIS = 5000;
+	
+	private final BotProperties.EventLog settings;
+	private final BotMetrics botMetrics;
+	private final Path directory;
+	private final BlockingQueue<EventRecord> queue;
+	
+	// Owned by the writer thread
+	private final List<EventRecord> batch = new ArrayList<>(BATCH_RECORDS);
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_RECORDS * EventLogFormat.RECORD_BYTES);
+	private final CRC32C crc = new CRC32C();
+	private FileChannel channel;
+	private long segmentCreatedAt;
+	private long segmentBytes;
+	private long lastFsyncNanos;
+	private boolean dirty;
+	
+	private volatile boolean running;
+	private volatile Path activeSegment;
+	private volatile long recordsWritten;
+	private volatile long bytesWritten;
+	private volatile long fsyncs;
+	private Thread writer;
+	
+	public EventLogWriter(BotProperties botProperties, BotMetrics botMetrics) {
+		this.settings = botProperties.getEventLog();
+		this.botMetrics = botMetrics;
+		this.directory = Paths.get(settings.getDirectory());
+		this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+		
+		botMetrics.registerEventLog(this);
+	}
+	
+	@PostConstruct
+	public void start() {
+		if (!settings.isEnabled()) {
+			log.info("Event log disabled");
+			return;
+		}
+		
+		running = true;
+		writer = Thread.ofPlatform().name("event-log-writer").daemon(true).start(this::run);
+		log.info("Event log writing to {} (fsync {})", directory.toAbsolutePath(), settings.getFsync());
+	}
+	
+	/**
+	 * Queues the change for the writer thread. Never blocks; a no-op while the event log is not running.
+	 */
+	public void append(VoiceStateChange stateChange, AnnouncementOutcome outcome) {
+		if (!running) {
+			return;
+		}
+		
+		EventRecord record = new EventRecord(stateChange.member().getGuild().getIdLong(), stateChange.getUserId(),
+				stateChange.timestamp().toEpochMilli(), stateChange.action(), outcome);
+		if (!queue.offer(record)) {
+			botMetrics.incrementEventLogDropped(1);
+		}
+	}
+	
+	private void run() {
+		try {
+			// After shutdown() clears running, keep going until everything already queued is written.
+			while (running || !queue.isEmpty()) {
+				EventRecord first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, BATCH_RECORDS - 1);
+					write(batch);
+					batch.clear();
+				}
+				maintainSegment();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeSegment();
+		}
+	}
+	
+	private void write(List<EventRecord> records) {
+		int bytes = records.size() * EventLogFormat.RECORD_BYTES;
+		try {
+			if (channel == null || segmentBytes + bytes > settings.getSegmentSize().toBytes()) {
+				rotate();
+			}
+			
+			buffer.clear();
+			for (EventRecord record : records) {
+				EventLogFormat.encode(buffer, record, crc);
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			
+			segmentBytes += bytes;
+			recordsWritten += records.size();
+			bytesWritten += bytes;
+			dirty = true;
+			
+			if (settings.getFsync() == BotProperties.FsyncPolicy.EVERY_BATCH) {
+				force();
+			}
+		} catch (IOException e) {
+			// The segment may now end in a partial record; start a new one for the next batch.
+			log.error("Failed to write {} event log records to {}: {}", records.size(), activeSegment, e.getMessage());
+			botMetrics.incrementErrors();
+			botMetrics.incrementEventLogDropped(records.size());
+			closeSegment();
+		}
+	}
+	
+	private void maintainSegment() {
+		if (channel == null) {
+			return;
+		}
+		
+		try {
+			if (dirty && settings.getFsync() == BotProperties.FsyncPolicy.INTERVAL
+						&& System.nanoTime() - lastFsyncNanos >= settings.getFsyncInterval().toNanos()) {
+				force();
+			}
+		} catch (IOException e) {
+			log.error("Failed to fsync event log segment {}: {}", activeSegment, e.getMessage());
+			botMetrics.incrementErrors();
+			closeSegment();
+			return;
+		}
+		
+		// The next record opens the new segment, so quiet periods leave no empty files behind.
+		if (System.currentTimeMillis() - segmentCreatedAt >= settings.getSegmentDuration().toMillis()) {
+			closeSegment();
+		}
+	}
+	
+	private void rotate() throws IOException {
+		closeSegment();
+		Files.createDirectories(directory);
+		
+		// Names are creation millis, so keep them strictly increasing even for segments opened in the same millisecond.
+		long createdAt = Math.max(System.currentTimeMillis(), segmentCreatedAt + 1);
+		Path path = directory.resolve(EventLogFormat.segmentName(createdAt));
+		// Published before the file exists, so maintenance never sees it as a closed segment.
+		activeSegment = path;
+		FileChannel opened;
+		try {
+			opened = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			activeSegment = null;
+			throw e;
+		}
+		try {
+			ByteBuffer header = ByteBuffer.allocate(EventLogFormat.HEADER_BYTES);
+			EventLogFormat.writeHeader(header, (short) 0, createdAt);
+			header.flip();
+			while (header.hasRemaining()) {
+				opened.write(header);
+			}
+		} catch (IOException e) {
+			opened.close();
+			activeSegment = null;
+			throw e;
+		}
+		
+		channel = opened;
+		segmentCreatedAt = createdAt;
+		segmentBytes = EventLogFormat.HEADER_BYTES;
+		lastFsyncNanos = System.nanoTime();
+		log.debug("Opened event log segment {}", path);
+	}
+	
+	private void force() throws IOException {
+		channel.force(false);
+		dirty = false;
+		lastFsyncNanos = System.nanoTime();
+		fsyncs++;
+	}
+	
+	private void closeSegment() {
+		if (channel == null) {
+			return;
+		}
+		
+		try {
+			if (dirty && settings.getFsync() != BotProperties.FsyncPolicy.NEVER) {
+				force();
+			}
+			channel.close();
+		} catch (IOException e) {
+			log.warn("Failed to close event log segment {}: {}", activeSegment, e.getMessage());
+		} finally {
+			channel = null;
+			activeSegment = null;
+			dirty = false;
+		}
+	}
+	
+	/**
+	 * The segment currently open for writing, which maintenance must leave alone, or {@code null} if none is.
+	 */
+	public Path getActiveSegment() {
+		return activeSegment;
+	}
+	
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	public int getQueueDepth() {
+		return queue.size();
+	}
+	
+	public long getRecordsWritten() {
+		return recordsWritten;
+	}
+	
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+	public long getFsyncs() {
+		return fsyncs;
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (writer == null) {
+			return;
+		}
+		
+		running = false;
+		try {
+			writer.join(SHUTDOWN_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writer.isAlive()) {
+			log.warn("Event log writer did not finish within {} ms; {} records not written", SHUTDOWN_MILLIS, queue.size());
+		}
+	}
+}
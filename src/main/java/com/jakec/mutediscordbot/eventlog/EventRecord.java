@@ -0,0 +1,12 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceAction;
+
+/**
+ * One voice state change and its outcome, as stored in an event log segment.
+ *
+ * @param timestampMillis when the gateway event was received, in epoch milliseconds
+ */
+public record EventRecord(long guildId, long userId, long timestampMillis, VoiceAction action,
+						  AnnouncementOutcome outcome) {}
@@ -0,0 +1,105 @@
+package com.jakec.mutediscordbot.execution;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executors behind JDA's callback and REST pools, Spring's {@code @Async} and {@code @Scheduled}, and the bot's
+ * own background work: the announcement pipeline's workers run on their own pool, and the periodic and delayed
+ * tasks of the other services on the shared scheduler.
+ * <p>
+ * Gateway events stay on each shard's gateway thread, which dispatches them in order, unless {@code event-pool}
+ * is set; only then is there an event pool, built like the others.
+ * <p>
+ * With {@code threads: virtual} every task gets its own virtual thread, so a listener blocked on a retry backoff
+ * or a slow log appender parks instead of holding one of a few pool threads while a burst queues up behind it.
+ * Schedulers keep a fixed number of workers either way, but with virtual threads those workers park too.
+ * With {@code threads: platform} each pool is a fixed set of daemon threads of the configured size.
+ * <p>
+ * The pools are shared by every shard and shut down here, after JDA has stopped using them.
+ */
+@Component
+@Getter
+@Slf4j
+public class BotExecutors {
+	
+	/** Null unless {@code event-pool} is set. */
+	private final ExecutorService eventPool;
+	private final ExecutorService callbackPool;
+	private final ExecutorService restPool;
+	private final ScheduledExecutorService rateLimitScheduler;
+	private final ExecutorService asyncPool;
+	private final ScheduledExecutorService scheduler;
+	/** Each announcement pipeline worker holds one of its threads for as long as the pipeline runs. */
+	private final ExecutorService pipelinePool;
+	
+	private final BotProperties.ThreadModel threadModel;
+	@Getter(AccessLevel.NONE)
+	private final List<ExecutorService> all = new ArrayList<>();
+	
+	public BotExecutors(BotProperties botProperties, BotMetrics botMetrics) {
+		BotProperties.Execution settings = botProperties.getExecution();
+		this.threadModel = settings.getThreads();
+		
+		this.eventPool = settings.isEventPool() ? pool("jda-event", settings.getEventPoolSize(), botMetrics) : null;
+		this.callbackPool = pool("jda-callback", settings.getCallbackPoolSize(), botMetrics);
+		this.restPool = pool("jda-rest", settings.getRestPoolSize(), botMetrics);
+		this.rateLimitScheduler = scheduledPool("jda-rate-limit", settings.getRateLimitSchedulerSize(), botMetrics);
+		this.asyncPool = pool("async", settings.getAsyncPoolSize(), botMetrics);
+		this.scheduler = scheduledPool("scheduler", settings.getSchedulerSize(), botMetrics);
+		this.pipelinePool = pool("announcement-worker", botProperties.getPipeline().getWorkers(), botMetrics);
+		
+		log.info("Executors use {} threads", threadModel.name().toLowerCase());
+	}
+	
+	private ExecutorService pool(String name, int size, BotMetrics botMetrics) {
+		ExecutorService delegate = threadModel == BotProperties.ThreadModel.VIRTUAL
+				? Executors.newThreadPerTaskExecutor(threadFactory(name))
+				: Executors.newFixedThreadPool(size, threadFactory(name));
+		InstrumentedExecutorService executor = new InstrumentedExecutorService(delegate);
+		botMetrics.registerExecutor(name, executor);
+		all.add(executor);
+		return executor;
+	}
+	
+	private ScheduledExecutorService scheduledPool(String name, int size, BotMetrics botMetrics) {
+		InstrumentedScheduledExecutor executor = new InstrumentedScheduledExecutor(size, threadFactory(name));
+		botMetrics.registerExecutor(name, executor);
+		all.add(executor);
+		return executor;
+	}
+	
+	private ThreadFactory threadFactory(String name) {
+		return threadModel == BotProperties.ThreadModel.VIRTUAL
+				? Thread.ofVirtual().name(name + "-", 0).factory()
+				: Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		all.forEach(ExecutorService::shutdown);
+		try {
+			for (ExecutorService executor : all) {
+				if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+					executor.shutdownNow();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			all.forEach(ExecutorService::shutdownNow);
+		}
+	}
+}
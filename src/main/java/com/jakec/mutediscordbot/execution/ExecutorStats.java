@@ -0,0 +1,15 @@
+package com.jakec.mutediscordbot.execution;
+
+/**
+ * Load of one executor, exported as the {@code bot.executor.*} gauges.
+ */
+public interface ExecutorStats {
+	
+	/** Tasks running right now. */
+	int getActiveCount();
+	
+	/** Tasks submitted but not started; for schedulers this includes delayed tasks that are not yet due. */
+	int getQueuedCount();
+	
+	long getCompletedTaskCount();
+}
@@ -0,0 +1,84 @@
+package com.jakec.mutediscordbot.execution;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts tasks around any executor, so a thread-per-task executor reports the same numbers as a fixed pool.
+ */
+final class InstrumentedExecutorService extends AbstractExecutorService implements ExecutorStats {
+	
+	private final ExecutorService delegate;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	
+	InstrumentedExecutorService(ExecutorService delegate) {
+		this.delegate = delegate;
+	}
+	
+	@Override
+	public void execute(Runnable task) {
+		queued.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				queued.decrementAndGet();
+				active.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					active.decrementAndGet();
+					completed.increment();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			throw e;
+		}
+	}
+	
+	@Override
+	public int getActiveCount() {
+		return active.get();
+	}
+	
+	@Override
+	public int getQueuedCount() {
+		return queued.get();
+	}
+	
+	@Override
+	public long getCompletedTaskCount() {
+		return completed.sum();
+	}
+	
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+	
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+	
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+	
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
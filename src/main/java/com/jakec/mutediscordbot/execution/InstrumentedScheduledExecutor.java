@@ -0,0 +1,21 @@
+package com.jakec.mutediscordbot.execution;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link ScheduledThreadPoolExecutor} whose queue length is exported; cancelled tasks leave the queue at once
+ * so they don't count as waiting.
+ */
+final class InstrumentedScheduledExecutor extends ScheduledThreadPoolExecutor implements ExecutorStats {
+	
+	InstrumentedScheduledExecutor(int threads, ThreadFactory threadFactory) {
+		super(threads, threadFactory);
+		setRemoveOnCancelPolicy(true);
+	}
+	
+	@Override
+	public int getQueuedCount() {
+		return getQueue().size();
+	}
+}
@@ -0,0 +1,135 @@
+package com.jakec.mutediscordbot.guild;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The settings one guild has changed from the global defaults, exactly as persisted.
+ * Unset ({@code null}) fields fall back to {@code discord.bot.*}. Only mutated under the
+ * {@link GuildSettingsStore} lock, on a copy that is then resolved into a new {@link GuildSettings}.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class GuildOverrides {
+	
+	public static final List<String> KEYS = List.of(
+			"channel", "mute", "deafen", "bots", "nicknames", "cooldown", "user-rate", "guild-rate");
+	
+	private String announcementChannel;
+	private Boolean announceMute;
+	private Boolean announceDeafen;
+	private Boolean includeBots;
+	private Boolean useNicknames;
+	private Long cooldownMillis;
+	private Integer maxAnnouncementsPerMinute;
+	private Integer guildAnnouncementsPerMinute;
+	private Map<VoiceAction, List<String>> templates = new EnumMap<>(VoiceAction.class);
+	
+	public GuildOverrides copy() {
+		GuildOverrides copy = new GuildOverrides();
+		copy.announcementChannel = announcementChannel;
+		copy.announceMute = announceMute;
+		copy.announceDeafen = announceDeafen;
+		copy.includeBots = includeBots;
+		copy.useNicknames = useNicknames;
+		copy.cooldownMillis = cooldownMillis;
+		copy.maxAnnouncementsPerMinute = maxAnnouncementsPerMinute;
+		copy.guildAnnouncementsPerMinute = guildAnnouncementsPerMinute;
+		templates.forEach((action, sources) -> copy.templates.put(action, new ArrayList<>(sources)));
+		return copy;
+	}
+	
+	@JsonIgnore
+	public boolean isEmpty() {
+		return announcementChannel == null && announceMute == null && announceDeafen == null
+					   && includeBots == null && useNicknames == null && cooldownMillis == null
+					   && maxAnnouncementsPerMinute == null && guildAnnouncementsPerMinute == null
+					   && templates.isEmpty();
+	}
+	
+	/**
+	 * Sets one of {@link #KEYS} from its command-line form. Range checks happen when the result is resolved.
+	 */
+	public void set(String key, String value) {
+		switch (key) {
+			case "channel" -> announcementChannel = value.startsWith("#") ? value.substring(1) : value;
+			case "mute" -> announceMute = parseToggle(value);
+			case "deafen" -> announceDeafen = parseToggle(value);
+			case "bots" -> includeBots = parseToggle(value);
+			case "nicknames" -> useNicknames = parseToggle(value);
+			case "cooldown" -> cooldownMillis = parseDuration(value).toMillis();
+			case "user-rate" -> maxAnnouncementsPerMinute = parseCount(value);
+			case "guild-rate" -> guildAnnouncementsPerMinute = parseCount(value);
+			default -> throw unknownKey(key);
+		}
+	}
+	
+	public void reset(String key) {
+		switch (key) {
+			case "channel" -> announcementChannel = null;
+			case "mute" -> announceMute = null;
+			case "deafen" -> announceDeafen = null;
+			case "bots" -> includeBots = null;
+			case "nicknames" -> useNicknames = null;
+			case "cooldown" -> cooldownMillis = null;
+			case "user-rate" -> maxAnnouncementsPerMinute = null;
+			case "guild-rate" -> guildAnnouncementsPerMinute = null;
+			case "templates" -> templates.clear();
+			default -> throw unknownKey(key);
+		}
+	}
+	
+	public void addTemplate(VoiceAction action, String template) {
+		templates.computeIfAbsent(action, a -> new ArrayList<>()).add(template);
+	}
+	
+	private static boolean parseToggle(String value) {
+		return switch (value.toLowerCase(Locale.ROOT)) {
+			case "on", "true", "yes", "enable", "enabled" -> true;
+			case "off", "false", "no", "disable", "disabled" -> false;
+			default -> throw new IllegalArgumentException("Expected on or off, got '" + value + "'");
+		};
+	}
+	
+	/**
+	 * Accepts {@code 3}, {@code 3s}, {@code 1500ms} or an ISO-8601 duration such as {@code PT3S}.
+	 */
+	private static Duration parseDuration(String value) {
+		String normalized = value.toLowerCase(Locale.ROOT);
+		try {
+			if (normalized.endsWith("ms")) {
+				return Duration.ofMillis(Long.parseLong(normalized.substring(0, normalized.length() - 2)));
+			}
+			if (normalized.endsWith("s") && !normalized.startsWith("pt")) {
+				return Duration.ofMillis(Math.round(Double.parseDouble(normalized.substring(0, normalized.length() - 1)) * 1000));
+			}
+			if (normalized.startsWith("pt")) {
+				return Duration.parse(normalized);
+			}
+			return Duration.ofMillis(Math.round(Double.parseDouble(normalized) * 1000));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Expected a duration such as 3s or 1500ms, got '" + value + "'");
+		}
+	}
+	
+	private static int parseCount(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Expected a number of announcements per minute, got '" + value + "'");
+		}
+	}
+	
+	private static IllegalArgumentException unknownKey(String key) {
+		return new IllegalArgumentException("Unknown setting '" + key + "', expected one of " + String.join(", ", KEYS));
+	}
+}
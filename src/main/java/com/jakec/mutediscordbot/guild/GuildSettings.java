@@ -0,0 +1,49 @@
+package com.jakec.mutediscordbot.guild;
+
+import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.template.CompiledTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One guild's effective settings: overrides applied over the global defaults, templates compiled and
+ * rates converted to GCRA intervals. Immutable and shared by every event in the guild until the next change.
+ *
+ * @param guildIntervalMillis 0 when the guild limit is disabled
+ */
+public record GuildSettings(
+		String announcementChannel,
+		boolean announceMute,
+		boolean announceDeafen,
+		boolean includeBots,
+		boolean useNicknames,
+		long cooldownMillis,
+		long userIntervalMillis,
+		int userBurst,
+		long guildIntervalMillis,
+		int guildBurst,
+		Map<VoiceAction, List<CompiledTemplate>> templates
+) {
+	
+	/**
+	 * Combined actions are announced if either of the changes they stand for is.
+	 */
+	public boolean announces(VoiceAction action) {
+		if (action.isCombined()) {
+			return announceMute || announceDeafen;
+		}
+		return action.isMuteAction() ? announceMute : announceDeafen;
+	}
+	
+	public List<CompiledTemplate> templatesFor(VoiceAction action) {
+		return templates.getOrDefault(action, List.of());
+	}
+	
+	/**
+	 * Spacing between announcements for a sustained rate of {@code perMinute}.
+	 */
+	public static long intervalMillis(int perMinute) {
+		return Math.max(1, 60_000L / perMinute);
+	}
+}
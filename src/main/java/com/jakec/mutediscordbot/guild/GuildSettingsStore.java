@@ -0,0 +1,281 @@
+package com.jakec.mutediscordbot.guild;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.template.CompiledTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Per-guild settings, read on every voice event and changed by the {@code config} admin command.
+ * <p>
+ * Readers do a single volatile load of the current {@link Snapshot}, an immutable sorted array of resolved
+ * {@link GuildSettings}, and a binary search; guilds without overrides share the defaults instance. Writers
+ * serialize on the store lock, resolve only the guild that changed (compiling its templates once), publish a
+ * new snapshot and persist the overrides as JSON, written to a temporary file and moved over the old one.
+ */
+@Service
+@Slf4j
+public class GuildSettingsStore {
+	
+	private static final int MAX_TEMPLATES_PER_ACTION = 25;
+	private static final int MAX_TEMPLATE_LENGTH = 1500;
+	private static final int MAX_CHANNEL_NAME_LENGTH = 100;
+	
+	private final BotProperties botProperties;
+	private final Path path;
+	private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+	
+	// Only touched under the instance lock.
+	private final Map<Long, GuildOverrides> overrides = new TreeMap<>();
+	private final Map<Long, GuildSettings> resolved = new TreeMap<>();
+	
+	private volatile Snapshot snapshot;
+	
+	private record Snapshot(long[] guildIds, GuildSettings[] settings, GuildSettings defaults) {
+		
+		GuildSettings lookup(long guildId) {
+			int index = Arrays.binarySearch(guildIds, guildId);
+			return index >= 0 ? settings[index] : defaults;
+		}
+	}
+	
+	public GuildSettingsStore(BotProperties botProperties) {
+		this.botProperties = botProperties;
+		this.path = Path.of(botProperties.getGuildConfig().getPath()).toAbsolutePath();
+		this.snapshot = new Snapshot(new long[0], new GuildSettings[0], resolve(new GuildOverrides(), null));
+	}
+	
+	@PostConstruct
+	public synchronized void load() {
+		if (!Files.exists(path)) {
+			log.info("No guild settings at {}, every guild uses the defaults", path);
+			return;
+		}
+		
+		Map<Long, GuildOverrides> stored;
+		try {
+			stored = objectMapper.readValue(path.toFile(), new TypeReference<Map<Long, GuildOverrides>>() {});
+		} catch (IOException e) {
+			log.error("Failed to read guild settings {}, every guild uses the defaults: {}", path, e.getMessage());
+			return;
+		}
+		
+		GuildSettings defaults = snapshot.defaults();
+		stored.forEach((guildId, guildOverrides) -> {
+			GuildOverrides copy = guildOverrides.copy();
+			try {
+				GuildSettings settings = resolve(copy, defaults);
+				if (!copy.isEmpty()) {
+					overrides.put(guildId, copy);
+					resolved.put(guildId, settings);
+				}
+			} catch (IllegalArgumentException e) {
+				log.warn("Ignoring stored settings for guild {}: {}", guildId, e.getMessage());
+			}
+		});
+		
+		publish();
+		log.info("Loaded settings overrides for {} guilds from {}", resolved.size(), path);
+	}
+	
+	/**
+	 * The effective settings for {@code guildId}; safe to call from any thread without locking.
+	 */
+	public GuildSettings forGuild(long guildId) {
+		return snapshot.lookup(guildId);
+	}
+	
+	public GuildSettings defaults() {
+		return snapshot.defaults();
+	}
+	
+	public synchronized Optional<GuildOverrides> getOverrides(long guildId) {
+		return Optional.ofNullable(overrides.get(guildId)).map(GuildOverrides::copy);
+	}
+	
+	public int getGuildCount() {
+		return snapshot.guildIds().length;
+	}
+	
+	/**
+	 * Applies {@code change} to a copy of the guild's overrides and, if the result resolves, publishes and
+	 * persists it. Nothing changes when the result is invalid.
+	 *
+	 * @throws IllegalArgumentException if {@code change} rejects its input or the result is out of range
+	 */
+	public synchronized GuildSettings update(long guildId, Consumer<GuildOverrides> change) {
+		GuildOverrides updated = Optional.ofNullable(overrides.get(guildId))
+										 .map(GuildOverrides::copy)
+										 .orElseGet(GuildOverrides::new);
+		change.accept(updated);
+		GuildSettings settings = resolve(updated, snapshot.defaults());
+		
+		if (updated.isEmpty()) {
+			overrides.remove(guildId);
+			resolved.remove(guildId);
+		} else {
+			overrides.put(guildId, updated);
+			resolved.put(guildId, settings);
+		}
+		
+		publish();
+		persist();
+		listeners.forEach(listener -> listener.accept(guildId));
+		return settings;
+	}
+	
+	/**
+	 * Registers a callback run with the guild id after every change, e.g. to drop caches derived from the old settings.
+	 */
+	public void onChange(LongConsumer listener) {
+		listeners.add(listener);
+	}
+	
+	private void publish() {
+		long[] guildIds = new long[resolved.size()];
+		GuildSettings[] settings = new GuildSettings[resolved.size()];
+		int i = 0;
+		for (Map.Entry<Long, GuildSettings> entry : resolved.entrySet()) {
+			guildIds[i] = entry.getKey();
+			settings[i++] = entry.getValue();
+		}
+		snapshot = new Snapshot(guildIds, settings, snapshot.defaults());
+	}
+	
+	private void persist() {
+		try {
+			Path directory = path.getParent();
+			if (directory != null) {
+				Files.createDirectories(directory);
+			}
+			Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+			objectMapper.writeValue(temp.toFile(), overrides);
+			
+			try {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			log.error("Failed to persist guild settings {}, changes apply until restart: {}", path, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Resolves overrides against the global settings. Templates that are not overridden reuse the
+	 * compiled lists of {@code defaults}, so only a guild's own templates are ever compiled again.
+	 *
+	 * @param defaults the resolved global settings, or {@code null} while resolving them
+	 */
+	private GuildSettings resolve(GuildOverrides guild, GuildSettings defaults) {
+		BotProperties.Announcements announcements = botProperties.getAnnouncements();
+		BotProperties.SpamPrevention spamPrevention = botProperties.getSpamPrevention();
+		
+		String channel = guild.getAnnouncementChannel() != null
+								 ? guild.getAnnouncementChannel().trim()
+								 : botProperties.getAnnouncementChannel();
+		if (channel.isEmpty() || channel.length() > MAX_CHANNEL_NAME_LENGTH) {
+			throw new IllegalArgumentException("Channel name must be 1-" + MAX_CHANNEL_NAME_LENGTH + " characters");
+		}
+		
+		long cooldownMillis = guild.getCooldownMillis() != null
+									  ? guild.getCooldownMillis()
+									  : spamPrevention.getCooldown().toMillis();
+		if (cooldownMillis < 100 || cooldownMillis > 30_000) {
+			throw new IllegalArgumentException("Cooldown must be between 100ms and 30 seconds");
+		}
+		
+		int userRate = guild.getMaxAnnouncementsPerMinute() != null
+							   ? guild.getMaxAnnouncementsPerMinute()
+							   : spamPrevention.getMaxAnnouncementsPerMinute();
+		if (userRate < 1) {
+			throw new IllegalArgumentException("User rate must be at least 1 announcement per minute");
+		}
+		
+		int guildRate = guild.getGuildAnnouncementsPerMinute() != null
+								? guild.getGuildAnnouncementsPerMinute()
+								: spamPrevention.getGuildAnnouncementsPerMinute();
+		if (guildRate < 0) {
+			throw new IllegalArgumentException("Guild rate must be 0 (unlimited) or more announcements per minute");
+		}
+		
+		Map<VoiceAction, List<CompiledTemplate>> templates = new EnumMap<>(VoiceAction.class);
+		for (VoiceAction action : VoiceAction.values()) {
+			List<String> custom = guild.getTemplates().get(action);
+			if (custom != null && !custom.isEmpty()) {
+				validateTemplates(action, custom);
+				templates.put(action, compile(custom));
+			} else {
+				templates.put(action, defaults != null
+											  ? defaults.templatesFor(action)
+											  : compile(defaultTemplates(action)));
+			}
+		}
+		
+		return new GuildSettings(
+				channel,
+				guild.getAnnounceMute() != null ? guild.getAnnounceMute() : announcements.isMute(),
+				guild.getAnnounceDeafen() != null ? guild.getAnnounceDeafen() : announcements.isDeafen(),
+				guild.getIncludeBots() != null ? guild.getIncludeBots() : announcements.isIncludeBots(),
+				guild.getUseNicknames() != null ? guild.getUseNicknames() : announcements.isUseNicknames(),
+				cooldownMillis,
+				GuildSettings.intervalMillis(userRate),
+				spamPrevention.getUserBurst(),
+				guildRate > 0 ? GuildSettings.intervalMillis(guildRate) : 0,
+				spamPrevention.getGuildBurst(),
+				Collections.unmodifiableMap(templates)
+		);
+	}
+	
+	private List<String> defaultTemplates(VoiceAction action) {
+		BotProperties.Messages messages = botProperties.getMessages();
+		return switch (action) {
+			case MUTED -> messages.getMuteTemplates();
+			case UNMUTED -> messages.getUnmuteTemplates();
+			case DEAFENED -> messages.getDeafenTemplates();
+			case UNDEAFENED -> messages.getUndeafenTemplates();
+			case DEAFENED_AND_MUTED -> messages.getDeafenMuteTemplates();
+			case UNDEAFENED_AND_UNMUTED -> messages.getUndeafenUnmuteTemplates();
+		};
+	}
+	
+	private static void validateTemplates(VoiceAction action, List<String> sources) {
+		if (sources.size() > MAX_TEMPLATES_PER_ACTION) {
+			throw new IllegalArgumentException("At most " + MAX_TEMPLATES_PER_ACTION + " templates per action ("
+													   + action.name().toLowerCase() + ")");
+		}
+		for (String source : sources) {
+			if (source == null || source.isBlank() || source.length() > MAX_TEMPLATE_LENGTH) {
+				throw new IllegalArgumentException("Templates must be 1-" + MAX_TEMPLATE_LENGTH + " characters");
+			}
+		}
+	}
+	
+	private static List<CompiledTemplate> compile(List<String> sources) {
+		return sources.stream()
+					   .map(CompiledTemplate::compile)
+					   .toList();
+	}
+}
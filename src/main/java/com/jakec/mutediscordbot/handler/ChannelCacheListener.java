@@ -0,0 +1,82 @@
+package com.jakec.mutediscordbot.handler;
+
+import com.jakec.mutediscordbot.service.ChannelService;
+import lombok.RequiredArgsConstructor;
+import net.dv8tion.jda.api.events.channel.ChannelCreateEvent;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.update.ChannelUpdateNameEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.guild.override.GenericPermissionOverrideEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.role.update.RoleUpdatePermissionsEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops a guild's cached announcement channel whenever something that could change which channel
+ * we resolve, or whether we may post in it, happens in that guild.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChannelCacheListener extends ListenerAdapter {
+	
+	private final ChannelService channelService;
+	
+	@Override
+	public void onChannelCreate(@NotNull ChannelCreateEvent event) {
+		if (event.isFromGuild()) {
+			channelService.invalidate(event.getGuild().getIdLong());
+		}
+	}
+	
+	@Override
+	public void onChannelDelete(@NotNull ChannelDeleteEvent event) {
+		if (event.isFromGuild()) {
+			channelService.invalidate(event.getGuild().getIdLong());
+		}
+	}
+	
+	@Override
+	public void onChannelUpdateName(@NotNull ChannelUpdateNameEvent event) {
+		if (event.isFromGuild()) {
+			channelService.invalidate(event.getGuild().getIdLong());
+		}
+	}
+	
+	@Override
+	public void onGenericPermissionOverride(@NotNull GenericPermissionOverrideEvent event) {
+		channelService.invalidate(event.getGuild().getIdLong());
+	}
+	
+	@Override
+	public void onRoleUpdatePermissions(@NotNull RoleUpdatePermissionsEvent event) {
+		channelService.invalidate(event.getGuild().getIdLong());
+	}
+	
+	@Override
+	public void onRoleDelete(@NotNull RoleDeleteEvent event) {
+		channelService.invalidate(event.getGuild().getIdLong());
+	}
+	
+	@Override
+	public void onGuildMemberRoleAdd(@NotNull GuildMemberRoleAddEvent event) {
+		if (event.getMember().equals(event.getGuild().getSelfMember())) {
+			channelService.invalidate(event.getGuild().getIdLong());
+		}
+	}
+	
+	@Override
+	public void onGuildMemberRoleRemove(@NotNull GuildMemberRoleRemoveEvent event) {
+		if (event.getMember().equals(event.getGuild().getSelfMember())) {
+			channelService.invalidate(event.getGuild().getIdLong());
+		}
+	}
+	
+	@Override
+	public void onGuildLeave(@NotNull GuildLeaveEvent event) {
+		channelService.invalidate(event.getGuild().getIdLong());
+	}
+}
@@ -1,8 +1,12 @@
 package com.jakec.mutediscordbot.handler;
 
+import com.jakec.mutediscordbot.config.BotProperties;
 import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.CommandResult;
+import com.jakec.mutediscordbot.model.OutboundPriority;
 import com.jakec.mutediscordbot.service.CommandService;
 import com.jakec.mutediscordbot.service.MessageTemplateService;
+import com.jakec.mutediscordbot.service.OutboundMessageScheduler;
 import com.jakec.mutediscordbot.service.VoiceStateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,12 +17,13 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.Optional;
 
 @Component
+@DependsOn("stateSnapshotStore") // restore voice states and cooldowns before the first gateway event is handled
 @RequiredArgsConstructor
 @Slf4j
 public class DiscordEventHandler extends ListenerAdapter {
@@ -27,6 +32,8 @@ public class DiscordEventHandler extends ListenerAdapter {
 	private final CommandService commandService;
 	private final BotMetrics botMetrics;
 	private final MessageTemplateService messageTemplateService;
+	private final OutboundMessageScheduler outboundScheduler;
+	private final BotProperties botProperties;
 	
 	@Override
 	public void onReady(ReadyEvent event) {
@@ -39,30 +46,49 @@ public class DiscordEventHandler extends ListenerAdapter {
 	
 	@Override
 	public void onGuildVoiceSelfMute(@NotNull GuildVoiceSelfMuteEvent event) {
-		handleVoiceStateEvent(event.getVoiceState());
+		handleVoiceStateEvent(event);
 	}
 	
 	@Override
 	public void onGuildVoiceSelfDeafen(@NotNull GuildVoiceSelfDeafenEvent event) {
-		handleVoiceStateEvent(event.getVoiceState());
+		handleVoiceStateEvent(event);
 	}
 	
 	@Override
 	public void onGuildVoiceGuildMute(@NotNull GuildVoiceGuildMuteEvent event) {
-		handleVoiceStateEvent(event.getVoiceState());
+		handleVoiceStateEvent(event);
 	}
 	
 	@Override
 	public void onGuildVoiceGuildDeafen(@NotNull GuildVoiceGuildDeafenEvent event) {
-		handleVoiceStateEvent(event.getVoiceState());
+		handleVoiceStateEvent(event);
 	}
 	
-	private void handleVoiceStateEvent(GuildVoiceState newState) {
+	@Override
+	public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event) {
 		try {
+			if (event.getChannelJoined() == null) {
+				voiceStateService.handleVoiceLeave(event.getMember(), event.getGuild(), event.getResponseNumber());
+			} else if (event.getChannelLeft() == null) {
+				voiceStateService.handleVoiceJoin(event.getMember(), event.getVoiceState(), event.getGuild(),
+						event.getResponseNumber());
+			}
+			
+		} catch (Exception e) {
+			log.error("Error handling voice channel update: {}", e.getMessage(), e);
+			botMetrics.incrementErrors();
+		}
+	}
+	
+	private void handleVoiceStateEvent(GenericGuildVoiceEvent event) {
+		long receivedNanos = System.nanoTime();
+		try {
+			GuildVoiceState newState = event.getVoiceState();
 			if (newState == null) return;
 			
 			Member member = newState.getMember();
-			voiceStateService.handleVoiceStateUpdate(member, newState, newState.getGuild());
+			voiceStateService.handleVoiceFlagEvent(member, newState, newState.getGuild(), event.getResponseNumber(),
+					receivedNanos);
 			
 		} catch (Exception e) {
 			log.error("Error handling voice state update: {}", e.getMessage(), e);
@@ -72,30 +98,32 @@ public class DiscordEventHandler extends ListenerAdapter {
 	
 	@Override
 	public void onMessageReceived(MessageReceivedEvent event) {
-		if (event.getAuthor().isBot()) return;
+		if (!botProperties.getCommands().isPrefixEnabled() || event.getAuthor().isBot()) return;
 		
 		String message = event.getMessage().getContentRaw().trim();
 		
 		if (!message.startsWith("!")) return;
 		
 		try {
-			Optional<String> response = commandService.processCommand(message, event);
-			
-			response.ifPresent(resp ->
-									   event.getChannel().sendMessage(resp).queue(
-											   success -> botMetrics.incrementCommandsProcessed(),
-											   error -> {
-												   log.error("Failed to send command response: {}", error.getMessage());
-												   botMetrics.incrementErrors();
-											   }
-									   )
-			);
+			// Other bots share the ! prefix, so only actual responses are sent; rejections and cooldowns stay silent.
+			if (commandService.processCommand(message, event) instanceof CommandResult.Response response) {
+				response.text().thenCompose(text -> outboundScheduler.submit(event.getChannel(), text, OutboundPriority.COMMAND))
+						.whenComplete((sent, error) -> {
+							if (error == null) {
+								botMetrics.incrementCommandsProcessed();
+							} else {
+								log.error("Failed to send command response: {}", error.getMessage());
+								botMetrics.incrementErrors();
+							}
+						});
+			}
 			
 		} catch (Exception e) {
 			log.error("Error processing command '{}': {}", message, e.getMessage(), e);
 			botMetrics.incrementErrors();
 			
-			event.getChannel().sendMessage("An error occurred processing your command.").queue();
+			outboundScheduler.submit(event.getChannel(), "An error occurred processing your command.",
+					OutboundPriority.COMMAND);
 		}
 	}
 }
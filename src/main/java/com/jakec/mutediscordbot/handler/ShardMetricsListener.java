@@ -0,0 +1,21 @@
+package com.jakec.mutediscordbot.handler;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.RequiredArgsConstructor;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Counts every event a single shard dispatches, giving a per-shard event rate.
+ */
+@RequiredArgsConstructor
+public class ShardMetricsListener extends ListenerAdapter {
+	
+	private final Counter events;
+	
+	@Override
+	public void onGenericEvent(@NotNull GenericEvent event) {
+		events.increment();
+	}
+}
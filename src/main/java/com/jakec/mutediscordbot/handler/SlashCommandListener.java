@@ -0,0 +1,114 @@
+package com.jakec.mutediscordbot.handler;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.CommandResult;
+import com.jakec.mutediscordbot.service.CommandService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Serves the bot commands as slash commands. Discord only delivers an interaction when a command is
+ * actually used, so unlike prefix commands this needs neither the message intents nor a look at every message.
+ * <p>
+ * Replies go through the interaction webhook, which is not subject to the channel send bucket, so they
+ * bypass the outbound scheduler. A response that is not ready at once, like {@code test} waiting on Discord,
+ * is deferred first so the three-second acknowledgement deadline never depends on it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SlashCommandListener extends ListenerAdapter {
+	
+	private static final String ARGUMENTS_OPTION = "arguments";
+	
+	private final CommandService commandService;
+	private final BotProperties botProperties;
+	private final BotMetrics botMetrics;
+	
+	@Override
+	public void onReady(@NotNull ReadyEvent event) {
+		// Global commands are shared by every shard, so one bulk overwrite from the first shard covers them all.
+		if (event.getJDA().getShardInfo().getShardId() != 0) {
+			return;
+		}
+		
+		// With slash commands disabled the overwrite is empty, which removes any previously registered ones.
+		List<CommandData> commands = botProperties.getCommands().isSlashEnabled()
+											 ? commandService.getCommandDescriptions().entrySet().stream()
+													   .<CommandData>map(command -> toCommandData(command.getKey(), command.getValue()))
+													   .toList()
+											 : List.of();
+		
+		event.getJDA().updateCommands().addCommands(commands).queue(
+				registered -> log.info("Registered {} slash commands", registered.size()),
+				error -> log.error("Failed to register slash commands: {}", error.getMessage())
+		);
+	}
+	
+	private SlashCommandData toCommandData(String name, String description) {
+		SlashCommandData command = Commands.slash(name, description);
+		if (commandService.takesArguments(name)) {
+			command.addOption(OptionType.STRING, ARGUMENTS_OPTION, "Everything after the command name, as with the ! prefix", false);
+		}
+		return command;
+	}
+	
+	@Override
+	public void onSlashCommandInteraction(@NotNull SlashCommandInteractionEvent event) {
+		if (!botProperties.getCommands().isSlashEnabled()) return;
+		
+		CommandService.Invocation invocation = new CommandService.Invocation(event.getJDA(), event.getGuild(),
+				event.getMember(), event.getChannelIdLong(), event.getUser().getEffectiveName(), "/",
+				event.getOption(ARGUMENTS_OPTION, "", OptionMapping::getAsString).trim());
+		
+		try {
+			// Interactions must be answered; rejections and cooldowns get a reply only the invoker can see.
+			switch (commandService.processCommand(event.getName(), invocation)) {
+				case CommandResult.Response response -> respond(event, response.text());
+				case CommandResult.Rejected rejected -> event.reply(rejected.reason()).setEphemeral(true).queue();
+				case CommandResult.Throttled throttled ->
+						event.reply("⏳ That command was just used here, try again in a moment.").setEphemeral(true).queue();
+			}
+			
+		} catch (Exception e) {
+			log.error("Error processing command '/{}': {}", event.getName(), e.getMessage(), e);
+			botMetrics.incrementErrors();
+			
+			event.reply("An error occurred processing your command.").setEphemeral(true).queue();
+		}
+	}
+	
+	private void respond(SlashCommandInteractionEvent event, CompletableFuture<String> text) {
+		if (text.isDone()) {
+			event.reply(text.join()).queue(sent -> botMetrics.incrementCommandsProcessed(), this::onReplyFailure);
+			return;
+		}
+		
+		event.deferReply().queue(
+				deferred -> text.whenComplete((response, error) -> {
+					String message = error == null ? response : "An error occurred processing your command.";
+					event.getHook().sendMessage(message).queue(sent -> botMetrics.incrementCommandsProcessed(), this::onReplyFailure);
+				}),
+				this::onReplyFailure
+		);
+	}
+	
+	private void onReplyFailure(Throwable error) {
+		log.error("Failed to send command response: {}", error.getMessage());
+		botMetrics.incrementErrors();
+	}
+}
@@ -0,0 +1,11 @@
+package com.jakec.mutediscordbot.history;
+
+import com.jakec.mutediscordbot.model.VoiceAction;
+
+/**
+ * One mute or deafen transition of a member.
+ *
+ * @param durationMillis for unmutes and undeafens, how long the member had been muted or deafened;
+ *                       0 if that is unknown, e.g. because they joined voice already muted
+ */
+public record VoiceHistoryEntry(VoiceAction action, long timestampMillis, long durationMillis) {}
@@ -0,0 +1,132 @@
+package com.jakec.mutediscordbot.history;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Each member's recent mute/deafen transitions per guild, served by {@code history}.
+ * <p>
+ * Every {@code (guild, member)} pair has its own {@link VoiceHistoryRing}, so recording is a map lookup plus an
+ * uncontended lock, and reading the last {@code n} transitions touches only those {@code n} entries. Heap use is
+ * estimated as rings are created and grow; once it passes {@code memory-budget}, a task on the async pool evicts the
+ * members whose history was least recently written or read until it is back under 90% of the budget.
+ */
+@Component
+@Slf4j
+public class VoiceHistoryIndex {
+	
+	private final BotProperties.History settings;
+	private final BotMetrics botMetrics;
+	private final Map<MemberKey, VoiceHistoryRing> rings = new ConcurrentHashMap<>();
+	private final AtomicLong estimatedBytes = new AtomicLong();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	private final ExecutorService evictor;
+	
+	private record MemberKey(long guildId, long userId) {}
+	
+	private record Candidate(MemberKey key, VoiceHistoryRing ring, long lastAccessMillis) {}
+	
+	public VoiceHistoryIndex(BotProperties botProperties, BotMetrics botMetrics, BotExecutors botExecutors) {
+		this.settings = botProperties.getHistory();
+		this.botMetrics = botMetrics;
+		this.evictor = botExecutors.getAsyncPool();
+		
+		botMetrics.registerVoiceHistory(this);
+	}
+	
+	public void record(long guildId, long userId, VoiceAction action, long timestampMillis) {
+		if (!settings.isEnabled()) {
+			return;
+		}
+		
+		MemberKey key = new MemberKey(guildId, userId);
+		long grown;
+		do {
+			VoiceHistoryRing ring = rings.computeIfAbsent(key, k -> {
+				VoiceHistoryRing created = new VoiceHistoryRing(settings.getEntriesPerMember());
+				estimatedBytes.addAndGet(created.estimatedBytes());
+				return created;
+			});
+			grown = ring.add(action, timestampMillis, settings.getEntriesPerMember());
+			if (grown < 0) {
+				rings.remove(key, ring); // evicted between lookup and add
+			}
+		} while (grown < 0);
+		
+		if (estimatedBytes.addAndGet(grown) > settings.getMemoryBudget().toBytes() && evicting.compareAndSet(false, true)) {
+			evictor.execute(this::evict);
+		}
+	}
+	
+	/**
+	 * @return up to {@code limit} transitions, newest first; empty if none are kept for the member
+	 */
+	public List<VoiceHistoryEntry> latest(long guildId, long userId, int limit) {
+		VoiceHistoryRing ring = rings.get(new MemberKey(guildId, userId));
+		return ring != null ? ring.latest(limit) : List.of();
+	}
+	
+	private void evict() {
+		try {
+			long budget = settings.getMemoryBudget().toBytes();
+			long target = budget / 10 * 9;
+			if (estimatedBytes.get() <= budget) {
+				return;
+			}
+			
+			// Access times keep moving, so sort a snapshot of them rather than the live rings.
+			List<Candidate> candidates = new ArrayList<>(rings.size());
+			rings.forEach((key, ring) -> candidates.add(new Candidate(key, ring, ring.lastAccessMillis())));
+			candidates.sort(Comparator.comparingLong(Candidate::lastAccessMillis));
+			
+			int evicted = 0;
+			for (Candidate candidate : candidates) {
+				if (estimatedBytes.get() <= target) {
+					break;
+				}
+				long freed = candidate.ring().evict();
+				if (freed > 0) {
+					rings.remove(candidate.key(), candidate.ring());
+					estimatedBytes.addAndGet(-freed);
+					evicted++;
+				}
+			}
+			
+			botMetrics.incrementVoiceHistoryEvictions(evicted);
+			log.debug("Evicted voice history of {} members to stay within {}", evicted, settings.getMemoryBudget());
+		} catch (Exception e) {
+			log.error("Unexpected error evicting voice history", e);
+		} finally {
+			evicting.set(false);
+		}
+	}
+	
+	public boolean isEnabled() {
+		return settings.isEnabled();
+	}
+	
+	public int getEntriesPerMember() {
+		return settings.getEntriesPerMember();
+	}
+	
+	public int getTrackedMembers() {
+		return rings.size();
+	}
+	
+	public long estimatedBytes() {
+		return estimatedBytes.get();
+	}
+}
@@ -0,0 +1,156 @@
+package com.jakec.mutediscordbot.history;
+
+import com.jakec.mutediscordbot.model.VoiceAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recent transitions of one member in one guild, as parallel primitive arrays used as a ring.
+ * <p>
+ * The arrays start small and double up to the configured capacity, so members who rarely toggle cost little.
+ * Durations are worked out when the matching unmute or undeafen arrives, which keeps reads a plain walk
+ * backwards over the entries returned.
+ */
+final class VoiceHistoryRing {
+	
+	private static final int INITIAL_CAPACITY = 8;
+	private static final VoiceAction[] ACTIONS = VoiceAction.values();
+	
+	/** Rough heap cost of an instance without its arrays, including its map entry and key. */
+	private static final long OVERHEAD_BYTES = 160;
+	private static final long BYTES_PER_ENTRY = Long.BYTES + Integer.BYTES + Byte.BYTES;
+	
+	private long[] timestamps;
+	private int[] durationSeconds;
+	private byte[] actions;
+	private int head; // next slot to write
+	private int size;
+	private long mutedAt;
+	private long deafenedAt;
+	private boolean evicted;
+	private volatile long lastAccessMillis = System.currentTimeMillis();
+	
+	VoiceHistoryRing(int maxCapacity) {
+		int capacity = Math.min(INITIAL_CAPACITY, maxCapacity);
+		timestamps = new long[capacity];
+		durationSeconds = new int[capacity];
+		actions = new byte[capacity];
+	}
+	
+	private static long estimatedBytes(int capacity) {
+		return OVERHEAD_BYTES + capacity * BYTES_PER_ENTRY;
+	}
+	
+	synchronized long estimatedBytes() {
+		return estimatedBytes(timestamps.length);
+	}
+	
+	/**
+	 * @return heap added by growing the arrays, or -1 if the ring was evicted and the caller needs a new one
+	 */
+	synchronized long add(VoiceAction action, long timestampMillis, int maxCapacity) {
+		if (evicted) {
+			return -1;
+		}
+		
+		long grown = 0;
+		if (size == timestamps.length && size < maxCapacity) {
+			grown = grow(Math.min(maxCapacity, size * 2));
+		}
+		
+		timestamps[head] = timestampMillis;
+		durationSeconds[head] = durationSeconds(action, timestampMillis);
+		actions[head] = (byte) action.ordinal();
+		head = (head + 1) % timestamps.length;
+		size = Math.min(size + 1, timestamps.length);
+		lastAccessMillis = System.currentTimeMillis();
+		return grown;
+	}
+	
+	private int durationSeconds(VoiceAction action, long timestampMillis) {
+		long since = 0;
+		switch (action) {
+			case MUTED -> mutedAt = timestampMillis;
+			case DEAFENED -> deafenedAt = timestampMillis;
+			case UNMUTED -> {
+				since = mutedAt;
+				mutedAt = 0;
+			}
+			case UNDEAFENED -> {
+				since = deafenedAt;
+				deafenedAt = 0;
+			}
+			case DEAFENED_AND_MUTED -> {
+				mutedAt = timestampMillis;
+				deafenedAt = timestampMillis;
+			}
+			case UNDEAFENED_AND_UNMUTED -> {
+				since = deafenedAt;
+				mutedAt = 0;
+				deafenedAt = 0;
+			}
+		}
+		
+		if (since <= 0 || timestampMillis <= since) {
+			return 0;
+		}
+		return (int) Math.min(Integer.MAX_VALUE, (timestampMillis - since) / 1000);
+	}
+	
+	/**
+	 * Unrolls the ring so the oldest entry is at index 0 and the arrays have room for {@code capacity} entries.
+	 */
+	private long grow(int capacity) {
+		int oldCapacity = timestamps.length;
+		long[] newTimestamps = new long[capacity];
+		int[] newDurations = new int[capacity];
+		byte[] newActions = new byte[capacity];
+		
+		int oldest = (head - size + oldCapacity) % oldCapacity;
+		for (int i = 0; i < size; i++) {
+			int from = (oldest + i) % oldCapacity;
+			newTimestamps[i] = timestamps[from];
+			newDurations[i] = durationSeconds[from];
+			newActions[i] = actions[from];
+		}
+		
+		timestamps = newTimestamps;
+		durationSeconds = newDurations;
+		actions = newActions;
+		head = size;
+		return (capacity - oldCapacity) * BYTES_PER_ENTRY;
+	}
+	
+	/**
+	 * Up to {@code limit} entries, newest first; costs one step per entry returned.
+	 */
+	synchronized List<VoiceHistoryEntry> latest(int limit) {
+		int count = Math.min(limit, size);
+		List<VoiceHistoryEntry> entries = new ArrayList<>(count);
+		int capacity = timestamps.length;
+		for (int i = 1; i <= count; i++) {
+			int slot = (head - i + capacity) % capacity;
+			entries.add(new VoiceHistoryEntry(ACTIONS[actions[slot]], timestamps[slot], durationSeconds[slot] * 1000L));
+		}
+		lastAccessMillis = System.currentTimeMillis();
+		return entries;
+	}
+	
+	/**
+	 * Marks the ring dead for {@link #add}, so its heap is released from the estimate exactly once.
+	 *
+	 * @return the heap it held, or 0 if it was already evicted
+	 */
+	synchronized long evict() {
+		if (evicted) {
+			return 0;
+		}
+		evicted = true;
+		return estimatedBytes(timestamps.length);
+	}
+	
+	long lastAccessMillis() {
+		return lastAccessMillis;
+	}
+}
@@ -1,200 +1,532 @@
 package com.jakec.mutediscordbot.metrics;
 
+import com.jakec.mutediscordbot.analytics.VoiceTimeAggregator;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.execution.ExecutorStats;
+import com.jakec.mutediscordbot.history.VoiceHistoryIndex;
+import com.jakec.mutediscordbot.model.OutboundPriority;
 import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
+import com.jakec.mutediscordbot.util.HashedTimingWheel;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Thread-safe metrics collection service for Discord bot operations.
  * Integrates with Micrometer for monitoring and observability.
+ * <p>
+ * Every counter is a single {@link LongAdder} in an enum-indexed array, so concurrent JDA threads
+ * update striped cells instead of contending on one value. Micrometer reads the same adders through
+ * {@link FunctionCounter}s, and {@link #reset()} moves a baseline instead of zeroing them, so exported
+ * counters stay monotonic.
  */
 @Service
 @Slf4j
 public class BotMetrics {
 	
+	private enum Count {
+		SUCCESSFUL_ANNOUNCEMENTS("bot.announcements.success", "Number of successful announcements"),
+		FAILED_ANNOUNCEMENTS("bot.announcements.failed", "Number of failed announcements"),
+		COOLDOWN_BLOCKS("bot.cooldown.blocks", "Number of announcements blocked by cooldown"),
+		RATE_LIMITS("bot.rate.limits", "Number of rate limit hits"),
+		ERRORS("bot.errors", "Number of bot errors"),
+		COMMANDS_PROCESSED("bot.commands.processed", "Number of commands processed"),
+		COMMANDS_THROTTLED("bot.commands.throttled", "Commands ignored because the same command was just used in the channel"),
+		COMMAND_CACHE_HITS("bot.commands.cache", "Command responses by cache outcome", "result", "hit"),
+		COMMAND_CACHE_MISSES("bot.commands.cache", "Command responses by cache outcome", "result", "miss"),
+		PIPELINE_DROPS("bot.pipeline.dropped", "Announcements dropped because the pipeline queue was full"),
+		REST_CALLS_SAVED("bot.announcements.rest.calls.saved", "Discord REST calls avoided by coalescing announcements"),
+		CHANNEL_CACHE_HITS("bot.channel.cache", "Announcement channel lookups by cache outcome", "result", "hit"),
+		CHANNEL_CACHE_MISSES("bot.channel.cache", "Announcement channel lookups by cache outcome", "result", "miss"),
+		CHANNEL_CACHE_INVALIDATIONS("bot.channel.cache.invalidations", "Cached announcement channels dropped after a guild change"),
+		OUTBOUND_SUPERSEDED("bot.outbound.superseded", "Queued announcements discarded because a newer one replaced them"),
+		OUTBOUND_DROPPED("bot.outbound.dropped", "Announcements dropped because their channel's outbound queue was full"),
+		SEND_RETRIES("bot.outbound.retries", "Discord sends retried after a transient failure"),
+		SEND_RETRIES_EXHAUSTED("bot.outbound.retries.exhausted", "Discord sends that still failed after being retried"),
+		VOICE_TIME_UNTRACKED("bot.voice.time.untracked", "Mute/deafen intervals not kept per member because the member limit was reached"),
+		VOICE_UPDATES_DEBOUNCED("bot.voice.debounce.merged", "Voice updates folded into a member's settled state instead of announced on their own"),
+		VOICE_HISTORY_EVICTIONS("bot.voice.history.evictions", "Members whose voice history was evicted to stay within the memory budget"),
+		EVENT_LOG_DROPPED("bot.eventlog.dropped", "Event log records lost because the writer queue was full or a write failed");
+		
+		private final String meterName;
+		private final String description;
+		private final String[] tags;
+		
+		Count(String meterName, String description, String... tags) {
+			this.meterName = meterName;
+			this.description = description;
+			this.tags = tags;
+		}
+	}
+	
+	private static final Count[] COUNTS = Count.values();
+	private static final VoiceAction[] VOICE_ACTIONS = VoiceAction.values();
+	private static final String[] VOICE_ACTION_NAMES = Arrays.stream(VOICE_ACTIONS)
+																.map(action -> action.name().toLowerCase())
+																.toArray(String[]::new);
+	
 	private final MeterRegistry meterRegistry;
 	
-	private final Map<VoiceAction, AtomicLong> voiceStateChanges;
-	private final AtomicLong successfulAnnouncements = new AtomicLong(0);
-	private final AtomicLong failedAnnouncements = new AtomicLong(0);
-	private final AtomicLong cooldownBlocks = new AtomicLong(0);
-	private final AtomicLong rateLimits = new AtomicLong(0);
-	private final AtomicLong errors = new AtomicLong(0);
-	private final AtomicLong commandsProcessed = new AtomicLong(0);
-	
-	private final Counter successfulAnnouncementsCounter;
-	private final Counter failedAnnouncementsCounter;
-	private final Counter cooldownBlocksCounter;
-	private final Counter rateLimitsCounter;
-	private final Counter errorsCounter;
-	private final Counter commandsProcessedCounter;
-	private final Map<VoiceAction, Counter> voiceActionCounters;
+	private final LongAdder[] counts = newAdders(COUNTS.length);
+	private final LongAdder[] voiceActions = newAdders(VOICE_ACTIONS.length);
+	
+	// Values at the last reset(); snapshots report the difference, exported counters never go backwards.
+	private volatile long[] countBaseline = new long[COUNTS.length];
+	private volatile long[] voiceActionBaseline = new long[VOICE_ACTIONS.length];
+	
+	private final DistributionSummary announcementBatchSize;
+	private final Map<OutboundPriority, Timer> outboundWaitTimers;
+	private final Map<LatencyStage, Timer> latencyTimers;
 	
 	public BotMetrics(MeterRegistry meterRegistry) {
 		this.meterRegistry = meterRegistry;
 		
-		this.voiceStateChanges = Arrays.stream(VoiceAction.values())
-									.collect(Collectors.toConcurrentMap(
-										 action -> action,
-										 action -> new AtomicLong(0),
-										 (existing, replacement) -> existing,
-										 ConcurrentHashMap::new
-									));
-		
-		this.successfulAnnouncementsCounter = Counter.builder("bot.announcements.success")
-												.description("Number of successful announcements")
-												.register(meterRegistry);
+		for (Count count : COUNTS) {
+			FunctionCounter.builder(count.meterName, counts[count.ordinal()], LongAdder::sum)
+					.description(count.description)
+					.tags(count.tags)
+					.register(meterRegistry);
+		}
 		
-		this.failedAnnouncementsCounter = Counter.builder("bot.announcements.failed")
-											.description("Number of failed announcements")
-											.register(meterRegistry);
+		for (VoiceAction action : VOICE_ACTIONS) {
+			FunctionCounter.builder("bot.voice.actions", voiceActions[action.ordinal()], LongAdder::sum)
+					.description("Voice state changes by action")
+					.tag("action", VOICE_ACTION_NAMES[action.ordinal()])
+					.register(meterRegistry);
+		}
 		
-		this.cooldownBlocksCounter = Counter.builder("bot.cooldown.blocks")
-										.description("Number of announcements blocked by cooldown")
+		this.announcementBatchSize = DistributionSummary.builder("bot.announcements.batch.size")
+										.description("Announcements combined into each coalesced message")
+										.serviceLevelObjectives(1, 2, 5, 10, 20)
 										.register(meterRegistry);
 		
-		this.rateLimitsCounter = Counter.builder("bot.rate.limits")
-									.description("Number of rate limit hits")
-									.register(meterRegistry);
-		
-		this.errorsCounter = Counter.builder("bot.errors")
-								.description("Number of bot errors")
-								.register(meterRegistry);
-		
-		this.commandsProcessedCounter = Counter.builder("bot.commands.processed")
-											.description("Number of commands processed")
-											.register(meterRegistry);
-		
-		this.voiceActionCounters = Arrays.stream(VoiceAction.values())
-										.collect(Collectors.toConcurrentMap(
-										action -> action,
-										action -> Counter.builder("bot.voice.actions")
-																	.description("Voice state changes by action")
-																	.tag("action", action.name().toLowerCase())
-																	.register(meterRegistry),
-										(existing, replacement) -> existing,
-											ConcurrentHashMap::new
-										));
+		this.outboundWaitTimers = new EnumMap<>(OutboundPriority.class);
+		for (OutboundPriority priority : OutboundPriority.values()) {
+			outboundWaitTimers.put(priority, Timer.builder("bot.outbound.wait")
+													 .description("Time a message waited in the outbound scheduler before being sent")
+													 .tag("priority", priority.name().toLowerCase())
+													 .publishPercentileHistogram()
+													 .register(meterRegistry));
+		}
+		
+		this.latencyTimers = new EnumMap<>(LatencyStage.class);
+		for (LatencyStage stage : LatencyStage.values()) {
+			latencyTimers.put(stage, Timer.builder("bot.announcement.latency")
+											 .description("Time spent in each announcement stage, from gateway event to Discord's acknowledgement")
+											 .tag("stage", stage.tag())
+											 .publishPercentiles(0.5, 0.95, 0.99)
+											 .publishPercentileHistogram()
+											 .register(meterRegistry));
+		}
 		
 		registerGauges();
 	}
 	
+	private static LongAdder[] newAdders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+	
+	private void increment(Count count) {
+		counts[count.ordinal()].increment();
+	}
+	
+	private long get(Count count) {
+		return counts[count.ordinal()].sum() - countBaseline[count.ordinal()];
+	}
+	
 	public void incrementVoiceStateChanges(VoiceAction action) {
 		if (action == null) {
 			log.warn("Attempted to increment voice state changes with null action");
 			return;
 		}
 		
-		voiceStateChanges.get(action).incrementAndGet();
-		voiceActionCounters.get(action).increment();
+		voiceActions[action.ordinal()].increment();
 	}
 	
 	public long getVoiceStateChanges(VoiceAction action) {
-		return action != null ? voiceStateChanges.get(action).get() : 0;
+		return action != null ? voiceActions[action.ordinal()].sum() - voiceActionBaseline[action.ordinal()] : 0;
 	}
 	
 	public long getTotalVoiceStateChanges() {
-		return voiceStateChanges.values().stream()
-					   .mapToLong(AtomicLong::get)
-					   .sum();
+		long total = 0;
+		for (VoiceAction action : VOICE_ACTIONS) {
+			total += getVoiceStateChanges(action);
+		}
+		return total;
 	}
 	
 	public void incrementSuccessfulAnnouncements() {
-		successfulAnnouncements.incrementAndGet();
-		successfulAnnouncementsCounter.increment();
+		increment(Count.SUCCESSFUL_ANNOUNCEMENTS);
 	}
 	
 	public void incrementFailedAnnouncements() {
-		failedAnnouncements.incrementAndGet();
-		failedAnnouncementsCounter.increment();
+		increment(Count.FAILED_ANNOUNCEMENTS);
 	}
 	
 	public long getSuccessfulAnnouncements() {
-		return successfulAnnouncements.get();
+		return get(Count.SUCCESSFUL_ANNOUNCEMENTS);
 	}
 	
 	public long getFailedAnnouncements() {
-		return failedAnnouncements.get();
+		return get(Count.FAILED_ANNOUNCEMENTS);
 	}
 	
-	public BigDecimal getSuccessRate() {
-		long total = successfulAnnouncements.get() + failedAnnouncements.get();
+	/**
+	 * Success rate as a percentage rounded to two decimals, or 0 before any announcement.
+	 */
+	public double getSuccessRate() {
+		return successRate(getSuccessfulAnnouncements(), getFailedAnnouncements());
+	}
+	
+	private static double successRate(long successful, long failed) {
+		long total = successful + failed;
 		if (total == 0) {
-			return BigDecimal.ZERO;
+			return 0;
 		}
-		
-		return BigDecimal.valueOf(successfulAnnouncements.get())
-					   .divide(BigDecimal.valueOf(total), 4, RoundingMode.HALF_UP)
-					   .multiply(BigDecimal.valueOf(100));
+		return Math.round(successful * 10_000.0 / total) / 100.0;
 	}
 	
 	public void incrementCooldownBlocks() {
-		cooldownBlocks.incrementAndGet();
-		cooldownBlocksCounter.increment();
+		increment(Count.COOLDOWN_BLOCKS);
 	}
 	
 	public void incrementRateLimits() {
-		rateLimits.incrementAndGet();
-		rateLimitsCounter.increment();
+		increment(Count.RATE_LIMITS);
 	}
 	
 	public long getCooldownBlocks() {
-		return cooldownBlocks.get();
+		return get(Count.COOLDOWN_BLOCKS);
 	}
 	
 	public long getRateLimits() {
-		return rateLimits.get();
+		return get(Count.RATE_LIMITS);
 	}
 	
 	public void incrementErrors() {
-		errors.incrementAndGet();
-		errorsCounter.increment();
+		increment(Count.ERRORS);
 	}
 	
 	public void incrementCommandsProcessed() {
-		commandsProcessed.incrementAndGet();
-		commandsProcessedCounter.increment();
+		increment(Count.COMMANDS_PROCESSED);
+	}
+	
+	public void incrementCommandsThrottled() {
+		increment(Count.COMMANDS_THROTTLED);
+	}
+	
+	public void incrementCommandCacheHits() {
+		increment(Count.COMMAND_CACHE_HITS);
+	}
+	
+	public void incrementCommandCacheMisses() {
+		increment(Count.COMMAND_CACHE_MISSES);
 	}
 	
 	public long getErrors() {
-		return errors.get();
+		return get(Count.ERRORS);
 	}
 	
 	public long getCommandsProcessed() {
-		return commandsProcessed.get();
+		return get(Count.COMMANDS_PROCESSED);
+	}
+	
+	public void incrementPipelineDrops() {
+		increment(Count.PIPELINE_DROPS);
+	}
+	
+	public long getPipelineDrops() {
+		return get(Count.PIPELINE_DROPS);
+	}
+	
+	public void recordAnnouncementBatch(int size) {
+		announcementBatchSize.record(size);
+		if (size > 1) {
+			counts[Count.REST_CALLS_SAVED.ordinal()].add(size - 1);
+		}
+	}
+	
+	public long getRestCallsSaved() {
+		return get(Count.REST_CALLS_SAVED);
+	}
+	
+	public void incrementChannelCacheHits() {
+		increment(Count.CHANNEL_CACHE_HITS);
+	}
+	
+	public void incrementChannelCacheMisses() {
+		increment(Count.CHANNEL_CACHE_MISSES);
+	}
+	
+	public void incrementChannelCacheInvalidations() {
+		increment(Count.CHANNEL_CACHE_INVALIDATIONS);
+	}
+	
+	public void incrementOutboundSuperseded() {
+		increment(Count.OUTBOUND_SUPERSEDED);
+	}
+	
+	public void incrementOutboundDropped() {
+		increment(Count.OUTBOUND_DROPPED);
+	}
+	
+	public void incrementSendRetries() {
+		increment(Count.SEND_RETRIES);
+	}
+	
+	public void incrementSendRetriesExhausted() {
+		increment(Count.SEND_RETRIES_EXHAUSTED);
+	}
+	
+	public void incrementVoiceUpdatesDebounced(int updates) {
+		counts[Count.VOICE_UPDATES_DEBOUNCED.ordinal()].add(updates);
+	}
+	
+	public void incrementVoiceTimeUntracked() {
+		increment(Count.VOICE_TIME_UNTRACKED);
+	}
+	
+	public void incrementVoiceHistoryEvictions(int members) {
+		counts[Count.VOICE_HISTORY_EVICTIONS.ordinal()].add(members);
+	}
+	
+	public void incrementEventLogDropped(int records) {
+		counts[Count.EVENT_LOG_DROPPED.ordinal()].add(records);
+	}
+	
+	public void recordOutboundWait(OutboundPriority priority, long waitNanos) {
+		outboundWaitTimers.get(priority).record(waitNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	public void recordLatency(LatencyStage stage, long nanos) {
+		latencyTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Percentiles over the timers' recent window (Micrometer's default two-minute decay), keyed by stage.
+	 * Stages with nothing recorded yet are omitted.
+	 */
+	public Map<LatencyStage, LatencyPercentiles> getLatencyPercentiles() {
+		Map<LatencyStage, LatencyPercentiles> percentiles = new EnumMap<>(LatencyStage.class);
+		
+		latencyTimers.forEach((stage, timer) -> {
+			HistogramSnapshot snapshot = timer.takeSnapshot();
+			if (snapshot.count() == 0) {
+				return;
+			}
+			
+			double[] values = new double[3];
+			for (ValueAtPercentile value : snapshot.percentileValues()) {
+				int index = value.percentile() < 0.9 ? 0 : value.percentile() < 0.98 ? 1 : 2;
+				values[index] = value.value(TimeUnit.MILLISECONDS);
+			}
+			percentiles.put(stage, new LatencyPercentiles(snapshot.count(), values[0], values[1], values[2]));
+		});
+		
+		return Collections.unmodifiableMap(percentiles);
+	}
+	
+	public record LatencyPercentiles(long count, double p50Millis, double p95Millis, double p99Millis) {}
+	
+	/**
+	 * Registers status and ping gauges for a gateway shard and returns its event counter.
+	 * Safe to call again when JDA restarts a shard; the existing meters are reused.
+	 */
+	public Counter registerShard(int shardId, Supplier<JDA> shard) {
+		String shardTag = String.valueOf(shardId);
+		
+		Gauge.builder("bot.gateway.shard.connected", () -> {
+					JDA current = shard.get();
+					return current != null && current.getStatus() == JDA.Status.CONNECTED ? 1 : 0;
+				})
+				.description("Whether the shard's gateway session is connected (1) or not (0)")
+				.tag("shard", shardTag)
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.gateway.shard.ping", () -> {
+					JDA current = shard.get();
+					return current != null ? current.getGatewayPing() : -1;
+				})
+				.description("Gateway heartbeat latency in milliseconds")
+				.baseUnit("milliseconds")
+				.tag("shard", shardTag)
+				.register(meterRegistry);
+		
+		return Counter.builder("bot.gateway.events")
+					   .description("Gateway events dispatched by the shard")
+					   .tag("shard", shardTag)
+					   .register(meterRegistry);
+	}
+	
+	public void registerAnnouncementQueue(Collection<?> queue, int capacity) {
+		Gauge.builder("bot.pipeline.queue.depth", queue, Collection::size)
+				.description("Announcements waiting for a pipeline worker")
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.pipeline.queue.remaining", queue, q -> capacity - q.size())
+				.description("Free slots in the announcement pipeline queue")
+				.register(meterRegistry);
+	}
+	
+	public void registerOutboundQueue(AtomicInteger queued) {
+		Gauge.builder("bot.outbound.queued", queued, AtomicInteger::get)
+				.description("Messages waiting in the outbound scheduler")
+				.register(meterRegistry);
 	}
 	
+	public void registerTimingWheel(HashedTimingWheel wheel) {
+		Gauge.builder("bot.timer.pending", wheel, HashedTimingWheel::pending)
+				.description("Timeouts scheduled on the timing wheel and not yet expired")
+				.tag("wheel", wheel.name())
+				.register(meterRegistry);
+		
+		FunctionCounter.builder("bot.timer.expirations", wheel, HashedTimingWheel::expiredCount)
+				.description("Timeouts expired by the timing wheel")
+				.tag("wheel", wheel.name())
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.timer.expirations.rate", wheel, HashedTimingWheel::expirationsPerSecond)
+				.description("Timeouts expired during the last second")
+				.tag("wheel", wheel.name())
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.timer.tick.lag", wheel, HashedTimingWheel::tickLagMillis)
+				.description("How late the most recent wheel tick ran")
+				.baseUnit("milliseconds")
+				.tag("wheel", wheel.name())
+				.register(meterRegistry);
+	}
+	
+	public void registerVoiceTime(VoiceTimeAggregator aggregator) {
+		Gauge.builder("bot.voice.time.members", aggregator, VoiceTimeAggregator::getTrackedMembers)
+				.description("Members with their own mute/deafen time aggregates")
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.voice.time.open", aggregator, VoiceTimeAggregator::getOpenIntervals)
+				.description("Mute and deafen intervals currently in progress")
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.voice.time.memory", aggregator, VoiceTimeAggregator::estimatedBytes)
+				.description("Estimated heap held by mute/deafen time aggregates")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+	}
+	
+	public void registerVoiceDebounce(Map<?, ?> pending) {
+		Gauge.builder("bot.voice.debounce.pending", pending, Map::size)
+				.description("Members whose voice updates are waiting for their state to settle")
+				.register(meterRegistry);
+	}
+	
+	public void registerVoiceHistory(VoiceHistoryIndex index) {
+		Gauge.builder("bot.voice.history.members", index, VoiceHistoryIndex::getTrackedMembers)
+				.description("Members with recent transitions kept for the history command")
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.voice.history.memory", index, VoiceHistoryIndex::estimatedBytes)
+				.description("Estimated heap held by voice history")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+	}
+	
+	public void registerEventLog(EventLogWriter writer) {
+		Gauge.builder("bot.eventlog.queue", writer, EventLogWriter::getQueueDepth)
+				.description("Event log records waiting for the writer thread")
+				.register(meterRegistry);
+		
+		FunctionCounter.builder("bot.eventlog.records", writer, EventLogWriter::getRecordsWritten)
+				.description("Event log records written to segments")
+				.register(meterRegistry);
+		
+		FunctionCounter.builder("bot.eventlog.bytes", writer, EventLogWriter::getBytesWritten)
+				.description("Bytes written to event log segments")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		
+		FunctionCounter.builder("bot.eventlog.fsyncs", writer, EventLogWriter::getFsyncs)
+				.description("Event log segment fsyncs")
+				.register(meterRegistry);
+	}
+	
+	public void registerExecutor(String pool, ExecutorStats executor) {
+		Gauge.builder("bot.executor.active", executor, ExecutorStats::getActiveCount)
+				.description("Tasks running on the executor")
+				.tag("pool", pool)
+				.register(meterRegistry);
+		
+		Gauge.builder("bot.executor.queued", executor, ExecutorStats::getQueuedCount)
+				.description("Tasks waiting for the executor, including scheduled tasks not yet due")
+				.tag("pool", pool)
+				.register(meterRegistry);
+		
+		FunctionCounter.builder("bot.executor.completed", executor, ExecutorStats::getCompletedTaskCount)
+				.description("Tasks the executor has finished")
+				.tag("pool", pool)
+				.register(meterRegistry);
+	}
+	
+	public void registerCooldownBuckets(ConcurrentLongPairMap buckets) {
+		Gauge.builder("bot.cooldown.buckets", buckets, ConcurrentLongPairMap::size)
+				.description("Live rate limit buckets across user, guild and global scopes")
+				.register(meterRegistry);
+	}
+	
+	/**
+	 * Reads every counter once. Allocation is limited to the snapshot itself and the per-action map; latency
+	 * percentiles need histogram snapshots, so they are left to {@link #getLatencyPercentiles()}.
+	 */
 	public MetricsSnapshot getSnapshot() {
-		Map<String, Long> voiceActionCounts = voiceStateChanges.entrySet().stream()
-																.collect(Collectors.toMap(
-										entry -> entry.getKey()
-																					.name().toLowerCase(),
-															entry -> entry
-																									.getValue().get()
-																));
+		long[] baseline = voiceActionBaseline;
+		Map<String, Long> voiceActionCounts = new LinkedHashMap<>(VOICE_ACTIONS.length * 2);
+		long totalVoiceStateChanges = 0;
+		for (int i = 0; i < VOICE_ACTIONS.length; i++) {
+			long count = voiceActions[i].sum() - baseline[i];
+			voiceActionCounts.put(VOICE_ACTION_NAMES[i], count);
+			totalVoiceStateChanges += count;
+		}
+		
+		long successful = get(Count.SUCCESSFUL_ANNOUNCEMENTS);
+		long failed = get(Count.FAILED_ANNOUNCEMENTS);
 		
 		return new MetricsSnapshot(
-				getTotalVoiceStateChanges(),
+				totalVoiceStateChanges,
 				Collections.unmodifiableMap(voiceActionCounts),
-				successfulAnnouncements.get(),
-				failedAnnouncements.get(),
-				getSuccessRate(),
-				cooldownBlocks.get(),
-				rateLimits.get(),
-				errors.get(),
-				commandsProcessed.get()
+				successful,
+				failed,
+				successRate(successful, failed),
+				get(Count.COOLDOWN_BLOCKS),
+				get(Count.RATE_LIMITS),
+				get(Count.ERRORS),
+				get(Count.COMMANDS_PROCESSED),
+				get(Count.PIPELINE_DROPS),
+				get(Count.REST_CALLS_SAVED),
+				get(Count.CHANNEL_CACHE_HITS),
+				get(Count.CHANNEL_CACHE_MISSES),
+				get(Count.CHANNEL_CACHE_INVALIDATIONS),
+				get(Count.OUTBOUND_SUPERSEDED)
 		);
 	}
 	
@@ -203,22 +535,34 @@ public class BotMetrics {
 			Map<String, Long> voiceActionCounts,
 			long successfulAnnouncements,
 			long failedAnnouncements,
-			BigDecimal successRatePercentage,
+			double successRatePercentage,
 			long cooldownBlocks,
 			long rateLimits,
 			long errors,
-			long commandsProcessed
+			long commandsProcessed,
+			long pipelineDrops,
+			long restCallsSaved,
+			long channelCacheHits,
+			long channelCacheMisses,
+			long channelCacheInvalidations,
+			long outboundSuperseded
 	) {}
 	
+	/**
+	 * Zeroes what snapshots and getters report. Exported Micrometer counters keep counting.
+	 */
 	public void reset() {
 		log.info("Resetting all bot metrics");
-		voiceStateChanges.values().forEach(counter -> counter.set(0));
-		successfulAnnouncements.set(0);
-		failedAnnouncements.set(0);
-		cooldownBlocks.set(0);
-		rateLimits.set(0);
-		errors.set(0);
-		commandsProcessed.set(0);
+		voiceActionBaseline = sums(voiceActions);
+		countBaseline = sums(counts);
+	}
+	
+	private static long[] sums(LongAdder[] adders) {
+		long[] sums = new long[adders.length];
+		for (int i = 0; i < adders.length; i++) {
+			sums[i] = adders[i].sum();
+		}
+		return sums;
 	}
 	
 	private void registerGauges() {
@@ -226,9 +570,7 @@ public class BotMetrics {
 				.description("Total voice state changes")
 				.register(meterRegistry);
 		
-		Gauge.builder("bot.announcements.success.rate", this, metrics -> metrics
-																								.getSuccessRate()
-																								.doubleValue())
+		Gauge.builder("bot.announcements.success.rate", this, BotMetrics::getSuccessRate)
 				.description("Announcement success rate percentage")
 				.register(meterRegistry);
 		
@@ -0,0 +1,20 @@
+package com.jakec.mutediscordbot.metrics;
+
+/**
+ * Stages an announcement passes through between the gateway event and Discord's acknowledgement.
+ */
+public enum LatencyStage {
+	STATE_DIFF,
+	COOLDOWN_CHECK,
+	QUEUE_WAIT,
+	TEMPLATE_RENDER,
+	CHANNEL_RESOLVE,
+	REST_ACK,
+	TOTAL;
+	
+	private final String tag = name().toLowerCase().replace('_', '.');
+	
+	public String tag() {
+		return tag;
+	}
+}
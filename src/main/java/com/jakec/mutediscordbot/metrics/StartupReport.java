@@ -0,0 +1,65 @@
+package com.jakec.mutediscordbot.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times the phases of a start and logs them as one line once every shard is ready, so a slow start can be
+ * attributed to the JVM, the Spring context or the Discord gateway.
+ * <p>
+ * The phases run back to back from JVM start: {@code jvm} until Spring starts, {@code context refresh} until every
+ * eager bean exists, and {@code ready} until the gateway has sent READY for every shard. {@code JDA login} happens
+ * inside the context refresh and is reported separately because it is a network round trip, not local work.
+ */
+@Component
+@Slf4j
+public class StartupReport {
+	
+	private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+	private final AtomicBoolean reported = new AtomicBoolean();
+	private volatile long springStartMillis;
+	private volatile long refreshedMillis;
+	private volatile long readyMillis;
+	private volatile long loginMillis = -1;
+	
+	@EventListener
+	public void onStarted(ApplicationStartedEvent event) {
+		long now = System.currentTimeMillis();
+		springStartMillis = now - event.getTimeTaken().toMillis();
+		refreshedMillis = now;
+		reportIfComplete();
+	}
+	
+	public void recordLogin(Duration took) {
+		loginMillis = took.toMillis();
+	}
+	
+	/**
+	 * Called once the gateway is ready for every shard; this can happen before the context refresh has finished.
+	 */
+	public void recordReady() {
+		if (readyMillis == 0) {
+			readyMillis = System.currentTimeMillis();
+		}
+		reportIfComplete();
+	}
+	
+	private void reportIfComplete() {
+		if (refreshedMillis == 0 || readyMillis == 0 || !reported.compareAndSet(false, true)) {
+			return;
+		}
+		
+		log.info("Startup breakdown: jvm {}ms, context refresh {}ms (JDA login {}), ready {}ms, total {}ms",
+				springStartMillis - jvmStartMillis,
+				refreshedMillis - springStartMillis,
+				loginMillis >= 0 ? loginMillis + "ms" : "n/a",
+				Math.max(0, readyMillis - refreshedMillis),
+				Math.max(readyMillis, refreshedMillis) - jvmStartMillis);
+	}
+}
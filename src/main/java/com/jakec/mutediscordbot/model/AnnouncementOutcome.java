@@ -0,0 +1,28 @@
+package com.jakec.mutediscordbot.model;
+
+/**
+ * What finally happened to a voice state change, as recorded in the event log.
+ * The ordinal is stored on disk, so constants may only ever be appended.
+ */
+public enum AnnouncementOutcome {
+	/** Discord accepted the announcement. */
+	SENT,
+	/** Only in older segments, written when an announcement joined a batch; batches now record SENT or FAILED. */
+	BATCHED,
+	/** Replaced by a newer announcement for the same user before it was sent. */
+	SUPERSEDED,
+	/** Held back by the cooldown or a rate limit. */
+	FILTERED,
+	/** The action or bot announcements are turned off for the guild. */
+	DISABLED,
+	/** No template or channel, or Discord rejected the message. */
+	FAILED,
+	/** Discarded because the announcement pipeline queue was full. */
+	DROPPED;
+
+	private static final AnnouncementOutcome[] VALUES = values();
+
+	public static AnnouncementOutcome ofCode(int code) {
+		return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+	}
+}
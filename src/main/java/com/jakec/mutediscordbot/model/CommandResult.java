@@ -0,0 +1,25 @@
+package com.jakec.mutediscordbot.model;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What a command invocation produced. Prefix commands answer only a {@link Response}; slash commands must
+ * answer every interaction, so they also explain rejections and cooldowns to the invoker.
+ */
+public sealed interface CommandResult {
+	
+	/**
+	 * @param text completes with the reply; already complete unless the command waits on Discord, like {@code test}
+	 */
+	record Response(CompletableFuture<String> text) implements CommandResult {}
+	
+	/** Not a command, or arguments for a command that takes none. */
+	record Rejected(String reason) implements CommandResult {}
+	
+	/** Used again in the same channel before its cooldown ran out. */
+	record Throttled() implements CommandResult {}
+	
+	static Response response(String text) {
+		return new Response(CompletableFuture.completedFuture(text));
+	}
+}
@@ -0,0 +1,9 @@
+package com.jakec.mutediscordbot.model;
+
+/**
+ * Order in which queued messages for the same channel are sent; earlier constants go first.
+ */
+public enum OutboundPriority {
+	COMMAND,
+	ANNOUNCEMENT
+}
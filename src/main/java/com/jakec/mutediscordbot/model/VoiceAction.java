@@ -10,19 +10,32 @@ import java.util.function.Predicate;
 @Getter
 @RequiredArgsConstructor
 public enum VoiceAction {
-	MUTED("User muted their microphone", "🔇", true),
-	UNMUTED("User unmuted their microphone", "🎤", true),
-	DEAFENED("User deafened themselves", "👂❌", false),
-	UNDEAFENED("User undeafened themselves", "👂", false);
+	MUTED("User muted their microphone", "🔇", true, "muted"),
+	UNMUTED("User unmuted their microphone", "🎤", true, "unmuted"),
+	DEAFENED("User deafened themselves", "👂❌", false, "deafened"),
+	UNDEAFENED("User undeafened themselves", "👂", false, "undeafened"),
+	// Deafening in Discord mutes as well, and undeafening unmutes again; each pair is one announcement.
+	// Appended after the single actions because ordinals are stored in the event log.
+	DEAFENED_AND_MUTED("User deafened and muted themselves", "👂❌", false, "deafened (and muted)"),
+	UNDEAFENED_AND_UNMUTED("User undeafened and unmuted themselves", "👂", false, "undeafened (and unmuted)");
 	
 	private final String description;
 	private final String defaultEmoji;
 	private final boolean isMuteAction;
+	/** How the action reads in messages, e.g. for the {@code {action}} placeholder. */
+	private final String label;
 	
 	public boolean isDeafenAction() {
 		return !isMuteAction;
 	}
 	
+	/**
+	 * Whether the action changes both the muted and the deafened state.
+	 */
+	public boolean isCombined() {
+		return this == DEAFENED_AND_MUTED || this == UNDEAFENED_AND_UNMUTED;
+	}
+	
 	public Optional<VoiceAction> fromString(String name) {
 		return Arrays.stream(values())
 				.filter(action -> action.name().equalsIgnoreCase(name))
@@ -16,7 +16,8 @@ public record VoiceStateChange(
 	@NotNull Member member,
 	@NotNull VoiceAction action,
 	@PastOrPresent @NotNull Instant timestamp,
-	@NotBlank String guildId
+	@NotBlank String guildId,
+	long receivedNanos
 	) {
 	
 	public VoiceStateChange {
@@ -26,14 +27,26 @@ public record VoiceStateChange(
 	}
 	
 	public static VoiceStateChange of(Member member, VoiceAction action) {
+		return of(member, action, System.nanoTime());
+	}
+	
+	/**
+	 * @param receivedNanos {@link System#nanoTime()} when the gateway event reached the bot, the origin for latency metrics
+	 */
+	public static VoiceStateChange of(Member member, VoiceAction action, long receivedNanos) {
 		return VoiceStateChange.builder()
 								.member(member)
 								.action(action)
 								.timestamp(Instant.now())
 								.guildId(member.getGuild().getId())
+								.receivedNanos(receivedNanos)
 								.build();
 	}
 	
+	public long nanosSinceReceived() {
+		return System.nanoTime() - receivedNanos;
+	}
+	
 	public String getUserName() {
 		return member.getEffectiveName();
 	}
@@ -47,6 +60,10 @@ public record VoiceStateChange(
 		return member.getUser().getIdLong();
 	}
 	
+	public long getGuildIdLong() {
+		return member.getGuild().getIdLong();
+	}
+	
 	public boolean isBot() {
 		return member.getUser().isBot();
 	}
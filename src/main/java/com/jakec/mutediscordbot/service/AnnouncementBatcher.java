@@ -0,0 +1,188 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
+import com.jakec.mutediscordbot.model.AnnouncementResult;
+import com.jakec.mutediscordbot.model.OutboundPriority;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces announcements headed for the same text channel into a single message.
+ * A batch is sent when its window elapses, when it reaches the message limit, or when the next
+ * announcement would push it past the character limit. Each announcement's result completes with the send result
+ * of its batch, after any retries.
+ */
+@Service
+@Slf4j
+public class AnnouncementBatcher {
+	
+	private static final String SEPARATOR = "\n";
+	
+	private final BotMetrics botMetrics;
+	private final ChannelService channelService;
+	private final OutboundMessageScheduler outboundScheduler;
+	private final BotProperties.Coalescing settings;
+	private final Map<Long, Batch> pending = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler;
+	
+	public AnnouncementBatcher(BotProperties botProperties, BotMetrics botMetrics, ChannelService channelService,
+							   OutboundMessageScheduler outboundScheduler, BotExecutors botExecutors) {
+		this.botMetrics = botMetrics;
+		this.channelService = channelService;
+		this.outboundScheduler = outboundScheduler;
+		this.settings = botProperties.getCoalescing();
+		this.scheduler = botExecutors.getScheduler();
+	}
+	
+	public boolean isEnabled() {
+		return settings.isEnabled();
+	}
+	
+	/**
+	 * @param receivedNanos when the announced gateway event arrived, for end-to-end latency once the batch is acknowledged
+	 */
+	public CompletableFuture<AnnouncementResult> enqueue(TextChannel channel, String message, long receivedNanos) {
+		long channelId = channel.getIdLong();
+		CompletableFuture<AnnouncementResult> result = new CompletableFuture<>();
+		
+		while (true) {
+			Batch batch = pending.computeIfAbsent(channelId, id -> openBatch(channel));
+			Batch ready = null;
+			boolean added = false;
+			
+			synchronized (batch) {
+				if (batch.closed) {
+					continue;
+				}
+				
+				if (batch.fits(message, settings.getMaxCharacters())) {
+					batch.add(message, receivedNanos, result);
+					added = true;
+					if (batch.messages.size() >= settings.getMaxMessages()) {
+						ready = close(channelId, batch);
+					}
+				} else {
+					ready = close(channelId, batch);
+				}
+			}
+			
+			if (ready != null) {
+				send(ready);
+			}
+			if (added) {
+				return result;
+			}
+		}
+	}
+	
+	private Batch openBatch(TextChannel channel) {
+		Batch batch = new Batch(channel);
+		scheduler.schedule(() -> flush(batch), settings.getWindow().toMillis(), TimeUnit.MILLISECONDS);
+		return batch;
+	}
+	
+	private void flush(Batch batch) {
+		Batch ready;
+		synchronized (batch) {
+			if (batch.closed) {
+				return;
+			}
+			ready = close(batch.channel.getIdLong(), batch);
+		}
+		send(ready);
+	}
+	
+	private Batch close(long channelId, Batch batch) {
+		batch.closed = true;
+		pending.remove(channelId, batch);
+		return batch;
+	}
+	
+	private void send(Batch batch) {
+		int size = batch.messages.size();
+		if (size == 0) {
+			return;
+		}
+		
+		TextChannel channel = batch.channel;
+		String content = String.join(SEPARATOR, batch.messages);
+		long enqueuedNanos = System.nanoTime();
+		
+		try {
+			outboundScheduler.submit(channel, content, OutboundPriority.ANNOUNCEMENT, null,
+					batch.receivedNanos.get(0)).whenComplete((sent, error) -> {
+				if (error == null) {
+					log.info("Batch of {} announcements sent to #{}", size, channel.getName());
+					botMetrics.recordAnnouncementBatch(size);
+					long ackedNanos = System.nanoTime();
+					botMetrics.recordLatency(LatencyStage.REST_ACK, ackedNanos - enqueuedNanos);
+					for (int i = 0; i < size; i++) {
+						botMetrics.incrementSuccessfulAnnouncements();
+						botMetrics.recordLatency(LatencyStage.TOTAL, ackedNanos - batch.receivedNanos.get(i));
+						batch.results.get(i).complete(AnnouncementResult.success(batch.messages.get(i), channel.getName()));
+					}
+				} else {
+					log.error("Discord API error for batch of {} to #{}: {}", size, channel.getName(), error.getMessage());
+					channelService.onSendFailure(channel, error);
+					fail(batch, "Discord API error: " + error.getMessage());
+				}
+			});
+		} catch (Exception e) {
+			log.error("Exception queuing batch to #{}: {}", channel.getName(), e.getMessage(), e);
+			fail(batch, "Send error: " + e.getMessage());
+		}
+	}
+	
+	private void fail(Batch batch, String reason) {
+		for (CompletableFuture<AnnouncementResult> result : batch.results) {
+			botMetrics.incrementFailedAnnouncements();
+			result.complete(AnnouncementResult.failure(reason));
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		// Flushing closes each batch, so its window timer, still queued on the shared scheduler, finds nothing to do.
+		pending.values().forEach(this::flush);
+	}
+	
+	private static final class Batch {
+		private final TextChannel channel;
+		private final List<String> messages = new ArrayList<>();
+		private final List<Long> receivedNanos = new ArrayList<>();
+		private final List<CompletableFuture<AnnouncementResult>> results = new ArrayList<>();
+		private int length;
+		private boolean closed;
+		
+		Batch(TextChannel channel) {
+			this.channel = channel;
+		}
+		
+		boolean fits(String message, int maxCharacters) {
+			if (messages.isEmpty()) {
+				return true;
+			}
+			return length + SEPARATOR.length() + message.length() <= maxCharacters;
+		}
+		
+		void add(String message, long received, CompletableFuture<AnnouncementResult> result) {
+			length += messages.isEmpty() ? message.length() : SEPARATOR.length() + message.length();
+			messages.add(message);
+			receivedNanos.add(received);
+			results.add(result);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.AnnouncementResult;
+import com.jakec.mutediscordbot.model.VoiceStateChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands accepted voice state changes from the JDA event thread to a pool of workers through a bounded queue,
+ * so slow rendering or channel lookups never stall gateway dispatch. The workers run on
+ * {@link BotExecutors#getPipelinePool()} until shutdown, when they drain the queue and stop.
+ */
+@Service
+@Slf4j
+public class AnnouncementPipeline {
+	
+	private static final long POLL_TIMEOUT_MS = 500;
+	/** Drops are counted on every occurrence but summarised in the log at most once per interval. */
+	private static final long DROP_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	
+	private final AnnouncementService announcementService;
+	private final BotMetrics botMetrics;
+	private final EventLogWriter eventLogWriter;
+	private final BotProperties.Pipeline settings;
+	private final BlockingQueue<AnnouncementTask> queue;
+	private final ExecutorService workers;
+	private final List<Future<?>> runningWorkers = new ArrayList<>();
+	private CountDownLatch drained = new CountDownLatch(0);
+	private volatile boolean running;
+	private final AtomicLong unloggedDrops = new AtomicLong();
+	private final AtomicLong lastDropLogNanos = new AtomicLong(System.nanoTime() - DROP_LOG_INTERVAL_NANOS);
+	
+	private record AnnouncementTask(VoiceStateChange stateChange, Guild guild, long enqueuedNanos) {}
+	
+	public AnnouncementPipeline(AnnouncementService announcementService, BotProperties botProperties,
+								BotMetrics botMetrics, EventLogWriter eventLogWriter, BotExecutors botExecutors) {
+		this.announcementService = announcementService;
+		this.botMetrics = botMetrics;
+		this.eventLogWriter = eventLogWriter;
+		this.settings = botProperties.getPipeline();
+		this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+		this.workers = botExecutors.getPipelinePool();
+		
+		botMetrics.registerAnnouncementQueue(queue, settings.getQueueCapacity());
+	}
+	
+	@PostConstruct
+	public void start() {
+		if (!settings.isEnabled()) {
+			log.info("Announcement pipeline disabled, announcements run on the event thread");
+			return;
+		}
+		
+		running = true;
+		drained = new CountDownLatch(settings.getWorkers());
+		for (int i = 0; i < settings.getWorkers(); i++) {
+			runningWorkers.add(workers.submit(this::drainQueue));
+		}
+		log.info("Announcement pipeline started: {} workers, capacity {}, backpressure {}",
+				settings.getWorkers(), settings.getQueueCapacity(), settings.getBackpressure());
+	}
+	
+	public void submit(VoiceStateChange stateChange, Guild guild) {
+		if (!running) {
+			process(new AnnouncementTask(stateChange, guild, System.nanoTime()));
+			return;
+		}
+		
+		AnnouncementTask task = new AnnouncementTask(stateChange, guild, System.nanoTime());
+		switch (settings.getBackpressure()) {
+			case BLOCK -> enqueueBlocking(task);
+			case DROP_NEWEST -> {
+				if (!queue.offer(task)) {
+					recordDrop(task);
+				}
+			}
+			case DROP_OLDEST -> {
+				while (!queue.offer(task)) {
+					AnnouncementTask evicted = queue.poll();
+					if (evicted != null) {
+						recordDrop(evicted);
+					}
+				}
+			}
+		}
+	}
+	
+	private void enqueueBlocking(AnnouncementTask task) {
+		try {
+			queue.put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			recordDrop(task);
+		}
+	}
+	
+	private void recordDrop(AnnouncementTask task) {
+		botMetrics.incrementPipelineDrops();
+		eventLogWriter.append(task.stateChange(), AnnouncementOutcome.DROPPED);
+		unloggedDrops.incrementAndGet();
+		
+		long now = System.nanoTime();
+		long last = lastDropLogNanos.get();
+		if (now - last >= DROP_LOG_INTERVAL_NANOS && lastDropLogNanos.compareAndSet(last, now)) {
+			logDrops(task);
+		}
+	}
+	
+	private void logDrops(AnnouncementTask latest) {
+		long drops = unloggedDrops.getAndSet(0);
+		if (drops == 0) {
+			return;
+		}
+		
+		if (latest == null) {
+			log.warn("Announcement queue full, dropped {} announcements since the last report", drops);
+		} else {
+			log.warn("Announcement queue full, dropped {} announcements since the last report (latest: {} for {})",
+					drops, latest.stateChange().action(), latest.stateChange().getUserName());
+		}
+	}
+	
+	private void drainQueue() {
+		try {
+			while (running || !queue.isEmpty()) {
+				AnnouncementTask task = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+				if (task != null) {
+					botMetrics.recordLatency(LatencyStage.QUEUE_WAIT, System.nanoTime() - task.enqueuedNanos());
+					process(task);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			drained.countDown();
+		}
+	}
+	
+	private void process(AnnouncementTask task) {
+		VoiceStateChange stateChange = task.stateChange();
+		
+		try {
+			// Sending and its retries continue without the worker, which moves on to the next task.
+			announcementService.processAnnouncement(stateChange, task.guild()).whenComplete((result, error) -> {
+				if (error != null) {
+					log.error("Error processing announcement for {}: {}",
+							stateChange.getUserName(), error.getMessage(), error);
+					botMetrics.incrementErrors();
+					return;
+				}
+				
+				switch (result) {
+					case AnnouncementResult.Success success ->
+							log.debug("Successfully processed announcement for {} to {}",
+									stateChange.getUserName(), success.channelName());
+					
+					case AnnouncementResult.Failure failure ->
+							log.debug("Announcement not sent for {}: {}",
+									stateChange.getUserName(), failure.errorMessage());
+				}
+			});
+			
+		} catch (Exception e) {
+			log.error("Error processing announcement for {}: {}",
+					stateChange.getUserName(), e.getMessage(), e);
+			botMetrics.incrementErrors();
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (!running) {
+			return;
+		}
+		
+		log.info("Draining announcement pipeline ({} queued)", queue.size());
+		running = false;
+		logDrops(null);
+		
+		try {
+			if (!drained.await(5, TimeUnit.SECONDS)) {
+				log.warn("Announcement pipeline did not drain in time, {} announcements discarded", queue.size());
+				stopWorkers();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stopWorkers();
+		}
+	}
+	
+	/**
+	 * Interrupts the workers; the pool itself is shared and shut down by {@link BotExecutors}.
+	 */
+	private void stopWorkers() {
+		runningWorkers.forEach(worker -> worker.cancel(true));
+	}
+}
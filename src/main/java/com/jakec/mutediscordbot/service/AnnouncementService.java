@@ -1,20 +1,28 @@
 package com.jakec.mutediscordbot.service;
 
-import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.guild.GuildSettings;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
 import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
 import com.jakec.mutediscordbot.model.AnnouncementResult;
-import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.model.OutboundPriority;
 import com.jakec.mutediscordbot.model.VoiceStateChange;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Renders and sends announcements. Results complete once Discord has accepted or finally rejected the message,
+ * after any retries; batched announcements complete with the result of their batch.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -22,77 +30,124 @@ public class AnnouncementService {
 	
 	private final MessageTemplateService messageService;
 	private final ChannelService channelService;
-	private final BotProperties botProperties;
+	private final AnnouncementBatcher announcementBatcher;
+	private final OutboundMessageScheduler outboundScheduler;
+	private final GuildSettingsStore guildSettingsStore;
 	private final BotMetrics botMetrics;
+	private final EventLogWriter eventLogWriter;
 	
-	@Retryable(retryFor = {Exception.class}, maxAttempts = 3, backoff = @Backoff(delay = 1000))
-	public AnnouncementResult processAnnouncement(VoiceStateChange stateChange, Guild guild) {
-		if (!shouldAnnounceAction(stateChange.action())) {
+	public CompletableFuture<AnnouncementResult> processAnnouncement(VoiceStateChange stateChange, Guild guild) {
+		GuildSettings settings = guildSettingsStore.forGuild(guild.getIdLong());
+		if (!settings.announces(stateChange.action())) {
 			log.debug("Action {} disabled in configuration", stateChange.action());
-			return AnnouncementResult.failure("Action disabled in configuration");
+			eventLogWriter.append(stateChange, AnnouncementOutcome.DISABLED);
+			return CompletableFuture.completedFuture(AnnouncementResult.failure("Action disabled in configuration"));
 		}
 		
-		if (stateChange.isBot() && !botProperties.getAnnouncements().isIncludeBots()) {
+		if (stateChange.isBot() && !settings.includeBots()) {
 			log.debug("Bot action ignored for user {}", stateChange.getUserId());
-			return AnnouncementResult.failure("Bot actions excluded");
+			eventLogWriter.append(stateChange, AnnouncementOutcome.DISABLED);
+			return CompletableFuture.completedFuture(AnnouncementResult.failure("Bot actions excluded"));
 		}
 		
+		long renderStart = System.nanoTime();
 		Optional<String> messageOpt = messageService.generateMessage(stateChange);
+		botMetrics.recordLatency(LatencyStage.TEMPLATE_RENDER, System.nanoTime() - renderStart);
+		
 		if (messageOpt.isEmpty()) {
 			log.warn("No message template found for action: {}", stateChange.action());
 			botMetrics.incrementFailedAnnouncements();
-			return AnnouncementResult.failure("No message template available");
+			eventLogWriter.append(stateChange, AnnouncementOutcome.FAILED);
+			return CompletableFuture.completedFuture(AnnouncementResult.failure("No message template available"));
 		}
 		
 		String message = messageOpt.get();
 		
-		return channelService.findAnnouncementChannel(guild)
-								.map(channel -> sendMessage(channel, message))
+		long resolveStart = System.nanoTime();
+		Optional<TextChannel> announcementChannel = channelService.findAnnouncementChannel(guild);
+		botMetrics.recordLatency(LatencyStage.CHANNEL_RESOLVE, System.nanoTime() - resolveStart);
+		
+		return announcementChannel
+								.map(channel -> deliver(channel, message, stateChange))
 								.orElseGet(() -> {
 									log.error("No available channels in guild: {}", guild.getName());
 									botMetrics.incrementFailedAnnouncements();
-									return AnnouncementResult.failure("No available channels");
+									eventLogWriter.append(stateChange, AnnouncementOutcome.FAILED);
+									return CompletableFuture.completedFuture(AnnouncementResult.failure("No available channels"));
 								});
 	}
 	
-	private AnnouncementResult sendMessage(TextChannel channel, String message) {
+	private CompletableFuture<AnnouncementResult> deliver(TextChannel channel, String message, VoiceStateChange stateChange) {
+		if (!announcementBatcher.isEnabled()) {
+			return sendMessage(channel, message, OutboundPriority.ANNOUNCEMENT, stateChange);
+		}
+		
+		return announcementBatcher.enqueue(channel, message, stateChange.receivedNanos()).whenComplete((result, error) ->
+				eventLogWriter.append(stateChange, result != null && result.isSuccess()
+						? AnnouncementOutcome.SENT
+						: AnnouncementOutcome.FAILED));
+	}
+	
+	/**
+	 * @param stateChange the change being announced, or {@code null} for messages that are not voice announcements
+	 */
+	private CompletableFuture<AnnouncementResult> sendMessage(TextChannel channel, String message, OutboundPriority priority,
+															  VoiceStateChange stateChange) {
+		OutboundMessageScheduler.SupersedeKey supersedeKey = stateChange != null
+				? new OutboundMessageScheduler.SupersedeKey(stateChange.getUserId(), stateChange.isDeafenAction())
+				: null;
+		long enqueuedNanos = System.nanoTime();
+		long startNanos = stateChange != null ? stateChange.receivedNanos() : enqueuedNanos;
+		
 		try {
-			channel.sendMessage(message).queue(
-					success -> {
-						log.info("Message sent to #{}: {}", channel.getName(), message);
-						botMetrics.incrementSuccessfulAnnouncements();
-					},
-					error -> {
-						log.error("Discord API error for #{}: {}", channel.getName(), error.getMessage());
-						botMetrics.incrementFailedAnnouncements();
+			return outboundScheduler.submit(channel, message, priority, supersedeKey, startNanos).handle((sent, error) -> {
+				if (error == null) {
+					log.info("Message sent to #{}: {}", channel.getName(), message);
+					botMetrics.incrementSuccessfulAnnouncements();
+					botMetrics.recordLatency(LatencyStage.REST_ACK, System.nanoTime() - enqueuedNanos);
+					if (stateChange != null) {
+						botMetrics.recordLatency(LatencyStage.TOTAL, stateChange.nanosSinceReceived());
+						eventLogWriter.append(stateChange, AnnouncementOutcome.SENT);
 					}
-			);
-			
-			return AnnouncementResult.success(message, channel.getName());
+					return AnnouncementResult.success(message, channel.getName());
+				}
+				
+				if (error instanceof CancellationException) {
+					log.debug("Announcement to #{} superseded before sending: {}", channel.getName(), message);
+					if (stateChange != null) {
+						eventLogWriter.append(stateChange, AnnouncementOutcome.SUPERSEDED);
+					}
+					return AnnouncementResult.failure("Superseded by a newer announcement");
+				}
+				
+				log.error("Discord API error for #{}: {}", channel.getName(), error.getMessage());
+				botMetrics.incrementFailedAnnouncements();
+				channelService.onSendFailure(channel, error);
+				if (stateChange != null) {
+					eventLogWriter.append(stateChange, AnnouncementOutcome.FAILED);
+				}
+				return AnnouncementResult.failure("Discord API error: " + error.getMessage());
+			});
 			
 		} catch (Exception e) {
 			log.error("Exception queuing message to #{}: {}", channel.getName(), e.getMessage(), e);
 			botMetrics.incrementFailedAnnouncements();
-			return AnnouncementResult.failure("Send error: " + e.getMessage());
+			if (stateChange != null) {
+				eventLogWriter.append(stateChange, AnnouncementOutcome.FAILED);
+			}
+			return CompletableFuture.completedFuture(AnnouncementResult.failure("Send error: " + e.getMessage()));
 		}
 	}
 	
-	private boolean shouldAnnounceAction(VoiceAction action) {
-		return switch (action) {
-			case MUTED, UNMUTED -> botProperties.getAnnouncements().isMute();
-			case DEAFENED, UNDEAFENED -> botProperties.getAnnouncements().isDeafen();
-		};
-	}
-	
-	public AnnouncementResult sendTestAnnouncement(Guild guild, String testMessage) {
+	public CompletableFuture<AnnouncementResult> sendTestAnnouncement(Guild guild, String testMessage) {
 		Optional<TextChannel> channelOpt = channelService.findAnnouncementChannel(guild);
 		
 		if (channelOpt.isEmpty()) {
 			log.warn("No channel available for test message in guild: {}", guild.getName());
-			return AnnouncementResult.failure("No channel available for test");
+			return CompletableFuture.completedFuture(AnnouncementResult.failure("No channel available for test"));
 		}
 		
 		String formattedMessage = "**Test Announcement:** " + testMessage;
-		return sendMessage(channelOpt.get(), formattedMessage);
+		return sendMessage(channelOpt.get(), formattedMessage, OutboundPriority.COMMAND, null);
 	}
 }
\ No newline at end of file
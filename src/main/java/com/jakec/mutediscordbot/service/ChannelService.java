@@ -1,13 +1,16 @@
 package com.jakec.mutediscordbot.service;
 
-import com.jakec.mutediscordbot.config.BotProperties;
-import lombok.RequiredArgsConstructor;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 import static net.dv8tion.jda.api.Permission.MESSAGE_EMBED_LINKS;
@@ -15,14 +18,94 @@ import static net.dv8tion.jda.api.Permission.MESSAGE_SEND;
 import static net.dv8tion.jda.api.Permission.VIEW_CHANNEL;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ChannelService {
 	
-	private final BotProperties botProperties;
+	private static final long NO_CHANNEL = 0L;
+	
+	private final GuildSettingsStore guildSettingsStore;
+	private final BotMetrics botMetrics;
+	
+	// guild id -> resolved announcement channel id (or NO_CHANNEL), dropped on any channel/permission change
+	private final ConcurrentLongPairMap resolvedChannels = new ConcurrentLongPairMap(256, 16);
+	private final AtomicLong generation = new AtomicLong();
+	
+	public ChannelService(GuildSettingsStore guildSettingsStore, BotMetrics botMetrics) {
+		this.guildSettingsStore = guildSettingsStore;
+		this.botMetrics = botMetrics;
+		
+		// A guild switching its announcement channel must not keep announcing in the old one.
+		guildSettingsStore.onChange(this::invalidate);
+	}
 	
 	public Optional<TextChannel> findAnnouncementChannel(Guild guild) {
-		String channelName = botProperties.getAnnouncementChannel();
+		long guildId = guild.getIdLong();
+		long cached = resolvedChannels.get(guildId, 0L);
+		
+		if (cached == NO_CHANNEL) {
+			botMetrics.incrementChannelCacheHits();
+			return Optional.empty();
+		}
+		
+		if (cached != ConcurrentLongPairMap.NO_VALUE) {
+			TextChannel channel = guild.getTextChannelById(cached);
+			if (channel != null) {
+				botMetrics.incrementChannelCacheHits();
+				return Optional.of(channel);
+			}
+			invalidate(guildId);
+		}
+		
+		botMetrics.incrementChannelCacheMisses();
+		long observedGeneration = generation.get();
+		Optional<TextChannel> resolved = resolveAnnouncementChannel(guild);
+		cacheResolution(guildId, resolved.map(TextChannel::getIdLong).orElse(NO_CHANNEL), observedGeneration);
+		return resolved;
+	}
+	
+	public void invalidate(long guildId) {
+		generation.incrementAndGet();
+		
+		long cached;
+		while ((cached = resolvedChannels.get(guildId, 0L)) != ConcurrentLongPairMap.NO_VALUE) {
+			if (resolvedChannels.remove(guildId, 0L, cached)) {
+				botMetrics.incrementChannelCacheInvalidations();
+				log.debug("Invalidated cached announcement channel for guild {}", guildId);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Permission and channel events are the primary invalidation signal; a send rejected for access
+	 * reasons covers anything those events missed (e.g. role changes we receive no event for).
+	 */
+	public void onSendFailure(TextChannel channel, Throwable error) {
+		if (error instanceof ErrorResponseException response) {
+			switch (response.getErrorResponse()) {
+				case MISSING_ACCESS, MISSING_PERMISSIONS, UNKNOWN_CHANNEL -> invalidate(channel.getGuild().getIdLong());
+				default -> {}
+			}
+		}
+	}
+	
+	/**
+	 * Stores a freshly resolved channel unless an invalidation raced the resolution, in which case
+	 * the possibly stale result is withdrawn again.
+	 */
+	private void cacheResolution(long guildId, long channelId, long observedGeneration) {
+		long previous = resolvedChannels.putIfAbsent(guildId, 0L, channelId);
+		if (previous != ConcurrentLongPairMap.NO_VALUE && previous != channelId) {
+			resolvedChannels.compareAndSet(guildId, 0L, previous, channelId);
+		}
+		
+		if (generation.get() != observedGeneration) {
+			resolvedChannels.remove(guildId, 0L, channelId);
+		}
+	}
+	
+	private Optional<TextChannel> resolveAnnouncementChannel(Guild guild) {
+		String channelName = guildSettingsStore.forGuild(guild.getIdLong()).announcementChannel();
 		
 		return guild.getTextChannelsByName(channelName, true)
 							.stream()
@@ -0,0 +1,76 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps rendered command responses for a short TTL, with single-flight rendering: while one caller
+ * renders a response, concurrent callers for the same key wait for and share that render instead of
+ * taking their own snapshot and formatting it again.
+ */
+@Service
+public class CommandResponseCache {
+	
+	private final BotProperties.Commands settings;
+	private final BotMetrics botMetrics;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	
+	private record Entry(CompletableFuture<String> response, long renderedAt) {
+		
+		boolean isUsable(long now, long ttlNanos) {
+			return !response.isDone() || now - renderedAt < ttlNanos;
+		}
+	}
+	
+	public CommandResponseCache(BotProperties botProperties, BotMetrics botMetrics) {
+		this.settings = botProperties.getCommands();
+		this.botMetrics = botMetrics;
+	}
+	
+	/**
+	 * Returns the cached response for {@code key}, rendering it with {@code renderer} if it is missing or expired.
+	 * A render that throws is not cached; callers waiting on it see the same exception.
+	 */
+	public String get(String key, Supplier<String> renderer) {
+		long ttlNanos = settings.getResponseCacheTtl().toNanos();
+		if (ttlNanos <= 0) {
+			return renderer.get();
+		}
+		
+		while (true) {
+			long now = System.nanoTime();
+			Entry entry = entries.get(key);
+			if (entry != null && entry.isUsable(now, ttlNanos)) {
+				botMetrics.incrementCommandCacheHits();
+				return entry.response().join();
+			}
+			
+			Entry fresh = new Entry(new CompletableFuture<>(), now);
+			boolean owner = entry == null ? entries.putIfAbsent(key, fresh) == null : entries.replace(key, entry, fresh);
+			if (!owner) {
+				continue;
+			}
+			
+			botMetrics.incrementCommandCacheMisses();
+			try {
+				String response = renderer.get();
+				fresh.response().complete(response);
+				return response;
+			} catch (RuntimeException e) {
+				entries.remove(key, fresh);
+				fresh.response().completeExceptionally(e);
+				throw e;
+			}
+		}
+	}
+	
+	public void invalidateAll() {
+		entries.clear();
+	}
+}
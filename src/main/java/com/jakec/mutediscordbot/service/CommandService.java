@@ -1,19 +1,47 @@
 package com.jakec.mutediscordbot.service;
 
+import com.jakec.mutediscordbot.analytics.VoiceTimeAggregator;
+import com.jakec.mutediscordbot.analytics.VoiceTimeTotals;
+import com.jakec.mutediscordbot.analytics.VoiceTimeWindow;
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.guild.GuildOverrides;
+import com.jakec.mutediscordbot.guild.GuildSettings;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.history.VoiceHistoryEntry;
+import com.jakec.mutediscordbot.history.VoiceHistoryIndex;
 import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
 import com.jakec.mutediscordbot.model.AnnouncementResult;
+import com.jakec.mutediscordbot.model.CommandResult;
 import com.jakec.mutediscordbot.model.VoiceAction;
-import lombok.RequiredArgsConstructor;
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
+import com.jakec.mutediscordbot.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CommandService {
 	
@@ -21,6 +49,35 @@ public class CommandService {
 	private final MessageTemplateService messageTemplateService;
 	private final VoiceStateService voiceStateService;
 	private final AnnouncementService announcementService;
+	private final CommandResponseCache responseCache;
+	private final GuildSettingsStore guildSettingsStore;
+	private final VoiceTimeAggregator voiceTimeAggregator;
+	private final VoiceHistoryIndex voiceHistoryIndex;
+	private final BotProperties.Commands settings;
+	
+	// (channelId, command hash) -> epoch millis until which the command is ignored in that channel
+	private final ConcurrentLongPairMap channelCooldowns = new ConcurrentLongPairMap(256, 16);
+	private final HashedTimingWheel cooldownExpiry;
+	
+	public CommandService(BotMetrics botMetrics, MessageTemplateService messageTemplateService,
+						  VoiceStateService voiceStateService, AnnouncementService announcementService,
+						  CommandResponseCache responseCache, GuildSettingsStore guildSettingsStore,
+						  VoiceTimeAggregator voiceTimeAggregator, VoiceHistoryIndex voiceHistoryIndex,
+						  BotProperties botProperties) {
+		this.botMetrics = botMetrics;
+		this.messageTemplateService = messageTemplateService;
+		this.voiceStateService = voiceStateService;
+		this.announcementService = announcementService;
+		this.responseCache = responseCache;
+		this.guildSettingsStore = guildSettingsStore;
+		this.voiceTimeAggregator = voiceTimeAggregator;
+		this.voiceHistoryIndex = voiceHistoryIndex;
+		this.settings = botProperties.getCommands();
+		this.cooldownExpiry = new HashedTimingWheel("command-cooldowns", 100, TimeUnit.MILLISECONDS, 128,
+				channelCooldowns::remove);
+		
+		botMetrics.registerTimingWheel(cooldownExpiry);
+	}
 	
 	private BotMetrics.MetricsSnapshot getMetricsSnapshot() {
 		return botMetrics.getSnapshot();
@@ -62,48 +119,172 @@ public class CommandService {
 	}
 	
 	private static final class Commands {
-		static final String PING = "!ping";
-		static final String HELP = "!help";
-		static final String STATUS = "!status";
-		static final String STATS = "!stats";
-		static final String METRICS = "!metrics";
-		static final String TEMPLATES = "!templates";
-		static final String VOICE = "!voice";
-		static final String TEST = "!test";
+		static final String PING = "ping";
+		static final String HELP = "help";
+		static final String STATUS = "status";
+		static final String STATS = "stats";
+		static final String METRICS = "metrics";
+		static final String TEMPLATES = "templates";
+		static final String VOICE = "voice";
+		static final String HISTORY = "history";
+		static final String TEST = "test";
+		static final String CONFIG = "config";
 	}
 	
-	public Optional<String> processCommand(String command, MessageReceivedEvent event) {
-		String lowerCommand = command.toLowerCase();
+	private static final Map<String, String> DESCRIPTIONS = new LinkedHashMap<>();
+	
+	static {
+		DESCRIPTIONS.put(Commands.PING, "Health check with latency");
+		DESCRIPTIONS.put(Commands.STATUS, "Bot operational status");
+		DESCRIPTIONS.put(Commands.STATS, "Usage statistics");
+		DESCRIPTIONS.put(Commands.METRICS, "Detailed metrics snapshot");
+		DESCRIPTIONS.put(Commands.TEMPLATES, "Message template statistics");
+		DESCRIPTIONS.put(Commands.VOICE, "Voice state change statistics; `voice time [@user]` for time muted/deafened");
+		DESCRIPTIONS.put(Commands.HISTORY, "A member's recent mute/deafen changes: `history @user [count]`");
+		DESCRIPTIONS.put(Commands.TEST, "Send a test announcement");
+		DESCRIPTIONS.put(Commands.CONFIG, "View or change this server's settings (Manage Server)");
+		DESCRIPTIONS.put(Commands.HELP, "This help message");
+	}
+	
+	private static final Set<String> TAKES_ARGUMENTS = Set.of(Commands.CONFIG, Commands.VOICE, Commands.HISTORY);
+	// Admins change several settings in a row and moderators look up several members; neither renders anything expensive.
+	private static final Set<String> NO_COOLDOWN = Set.of(Commands.CONFIG, Commands.HISTORY);
+	private static final int DEFAULT_HISTORY_ENTRIES = 10;
+	// Keeps the response well under Discord's 2000 character message limit.
+	private static final int MAX_HISTORY_ENTRIES = 25;
+	private static final Duration TEST_CONFIRMATION_TIMEOUT = Duration.ofSeconds(10);
+	private static final String ACTION_KEYS = Arrays.stream(VoiceAction.values())
+													 .map(action -> action.name().toLowerCase(Locale.ROOT))
+													 .collect(Collectors.joining("|"));
+	private static final Pattern CHANNEL_MENTION = Pattern.compile("<#(\\d+)>");
+	private static final Pattern USER_MENTION = Pattern.compile("<@!?(\\d+)>");
+	
+	// Help only depends on the command list, so both variants are rendered once.
+	private static final String PREFIX_HELP = renderHelpMessage("!");
+	private static final String SLASH_HELP = renderHelpMessage("/");
+	
+	/**
+	 * Where a command came from, independent of whether it was typed as {@code !name} or invoked as {@code /name}.
+	 *
+	 * @param guild     the guild the command was used in, or {@code null} in direct messages
+	 * @param member    the invoker as a guild member, or {@code null} in direct messages
+	 * @param prefix    how the invoker writes commands, used when responses mention other commands
+	 * @param arguments everything after the command name, trimmed; empty if there is none
+	 */
+	public record Invocation(JDA jda, Guild guild, Member member, long channelId, String userName, String prefix,
+							 String arguments) {
+		
+		public static Invocation of(MessageReceivedEvent event, String arguments) {
+			return new Invocation(event.getJDA(), event.isFromGuild() ? event.getGuild() : null, event.getMember(),
+					event.getChannel().getIdLong(), event.getAuthor().getEffectiveName(), "!", arguments);
+		}
+	}
+	
+	/**
+	 * Command names and descriptions, in the order they are listed in help and registered as slash commands.
+	 */
+	public Map<String, String> getCommandDescriptions() {
+		return Collections.unmodifiableMap(DESCRIPTIONS);
+	}
+	
+	/**
+	 * Whether the command accepts arguments; as a slash command it gets an optional {@code arguments} option.
+	 */
+	public boolean takesArguments(String name) {
+		return TAKES_ARGUMENTS.contains(name);
+	}
+	
+	public CommandResult processCommand(String command, MessageReceivedEvent event) {
+		String[] parts = command.substring(1).split("\\s+", 2);
+		return processCommand(parts[0], Invocation.of(event, parts.length > 1 ? parts[1].trim() : ""));
+	}
+	
+	/**
+	 * Stats-style responses describe the whole bot rather than the invoking guild, so they are cached per command.
+	 *
+	 * @param name the command name without prefix, e.g. {@code ping}
+	 * @return the response, or why there is none
+	 */
+	public CommandResult processCommand(String name, Invocation invocation) {
+		String lowerCommand = name.toLowerCase();
+		if (!DESCRIPTIONS.containsKey(lowerCommand)) {
+			return new CommandResult.Rejected("❓ Unknown command `" + invocation.prefix() + name
+													 + "`. Use `" + invocation.prefix() + "help` to list commands.");
+		}
+		if (!invocation.arguments().isEmpty() && !takesArguments(lowerCommand)) {
+			return new CommandResult.Rejected("`" + invocation.prefix() + lowerCommand + "` takes no arguments.");
+		}
+		
+		if (!NO_COOLDOWN.contains(lowerCommand) && !tryAcquireCooldown(invocation.channelId(), lowerCommand)) {
+			botMetrics.incrementCommandsThrottled();
+			log.debug("Ignoring {}{} in channel {}: on cooldown", invocation.prefix(), lowerCommand, invocation.channelId());
+			return new CommandResult.Throttled();
+		}
 		
 		return switch (lowerCommand) {
-			case Commands.PING -> Optional.of(handlePingCommand(event));
-			case Commands.HELP -> Optional.of(getHelpMessage());
-			case Commands.STATUS -> Optional.of(getStatusMessage(event));
-			case Commands.STATS -> Optional.of(getStatsMessage());
-			case Commands.METRICS -> Optional.of(getMetricsMessage());
-			case Commands.TEMPLATES -> Optional.of(getTemplatesMessage());
-			case Commands.VOICE -> Optional.of(getVoiceStatsMessage());
-			case Commands.TEST -> Optional.of(handleTestCommand(event));
-			default -> Optional.empty(); // Unknown command - no response
+			case Commands.PING -> CommandResult.response(handlePingCommand(invocation));
+			case Commands.HELP -> CommandResult.response("/".equals(invocation.prefix()) ? SLASH_HELP : PREFIX_HELP);
+			case Commands.STATUS -> CommandResult.response(responseCache.get(Commands.STATUS, () -> getStatusMessage(invocation)));
+			case Commands.STATS -> CommandResult.response(responseCache.get(Commands.STATS, this::getStatsMessage));
+			case Commands.METRICS -> CommandResult.response(responseCache.get(Commands.METRICS, this::getMetricsMessage));
+			case Commands.TEMPLATES -> CommandResult.response(responseCache.get(Commands.TEMPLATES, this::getTemplatesMessage));
+			case Commands.VOICE -> CommandResult.response(invocation.arguments().isEmpty()
+																  ? responseCache.get(Commands.VOICE, this::getVoiceStatsMessage)
+																  : handleVoiceTimeCommand(invocation));
+			case Commands.HISTORY -> CommandResult.response(handleHistoryCommand(invocation));
+			case Commands.TEST -> new CommandResult.Response(handleTestCommand(invocation));
+			case Commands.CONFIG -> CommandResult.response(handleConfigCommand(invocation));
+			default -> throw new IllegalStateException("Command without a handler: " + lowerCommand);
 		};
 	}
 	
-	private String handlePingCommand(MessageReceivedEvent event) {
-		long ping = event.getJDA().getGatewayPing();
-		return String.format("🏓 Pong! Gateway ping: %dms", ping);
+	private boolean tryAcquireCooldown(long channelId, String command) {
+		long cooldownMillis = settings.getChannelCooldown().toMillis();
+		if (cooldownMillis <= 0) {
+			return true;
+		}
+		
+		long commandKey = command.hashCode();
+		long now = System.currentTimeMillis();
+		while (true) {
+			long until = channelCooldowns.get(channelId, commandKey);
+			if (until != ConcurrentLongPairMap.NO_VALUE && now < until) {
+				return false;
+			}
+			
+			long next = now + cooldownMillis;
+			boolean stored = until == ConcurrentLongPairMap.NO_VALUE
+									 ? channelCooldowns.putIfAbsent(channelId, commandKey, next) == ConcurrentLongPairMap.NO_VALUE
+									 : channelCooldowns.compareAndSet(channelId, commandKey, until, next);
+			if (stored) {
+				cooldownExpiry.schedule(channelId, commandKey, next, cooldownMillis);
+				return true;
+			}
+		}
 	}
 	
-	private String getHelpMessage() {
-		return """
-            🤖 **Mute/Deafen Bot Commands:**
-            • `!ping` - Health check with latency
-            • `!status` - Bot operational status
-            • `!stats` - Usage statistics
-            • `!metrics` - Detailed metrics snapshot
-            • `!templates` - Message template statistics
-            • `!voice` - Voice state change statistics
-            • `!test` - Send a test announcement
-            • `!help` - This help message
+	private String handlePingCommand(Invocation invocation) {
+		JDA shard = invocation.jda();
+		long ping = shard.getGatewayPing();
+		ShardManager shardManager = shard.getShardManager();
+		
+		if (shardManager == null) {
+			return String.format("🏓 Pong! Gateway ping: %dms", ping);
+		}
+		
+		return String.format("🏓 Pong! Gateway ping: %dms (%s, average %.0fms across %d shards)",
+				ping, shard.getShardInfo().getShardString(),
+				shardManager.getAverageGatewayPing(), shardManager.getShardsRunning());
+	}
+	
+	private static String renderHelpMessage(String prefix) {
+		MessageBuilder builder = new MessageBuilder()
+										.appendLine("🤖 **Mute/Deafen Bot Commands:**");
+		
+		DESCRIPTIONS.forEach((name, description) ->
+									 builder.appendLine("• `%s%s` - %s", prefix, name, description));
+		
+		return builder.append("""
             
             🎭 **Features:**
             • Announces mute/unmute actions
@@ -111,22 +292,27 @@ public class CommandService {
             • Smart spam prevention with cooldowns
             • Fun random messages with {user}, {time}, {channel}, {guild} variables
             • Retry mechanism for reliable message delivery
-            """;
+            """).build();
 	}
 	
-	private String getStatusMessage(MessageReceivedEvent event) {
-		long guilds = event.getJDA().getGuilds().size();
+	private String getStatusMessage(Invocation invocation) {
+		ShardManager shardManager = invocation.jda().getShardManager();
+		long guilds = shardManager != null
+							  ? shardManager.getGuildCache().size()
+							  : invocation.jda().getGuildCache().size();
+		int shards = shardManager != null ? shardManager.getShardsRunning() : 1;
 		Map<String, Object> templateStats = getTemplateStats();
 		
 		return String.format("""
             ✅ **Bot Status: ONLINE**
-            🏰 Connected to %d guilds
+            🏰 Connected to %d guilds across %d shard(s)
             📊 Monitoring voice state changes
             📝 %d message templates loaded
             👥 %d users with custom messages
             🎯 Ready to announce!
             """,
 				guilds,
+				shards,
 				getIntFromStats(templateStats, "totalDefaultTemplates"),
 				getIntFromStats(templateStats, "customUserCount"));
 	}
@@ -147,7 +333,7 @@ public class CommandService {
 				metrics.totalVoiceStateChanges(),
 				metrics.successfulAnnouncements(),
 				metrics.failedAnnouncements(),
-				metrics.successRatePercentage().doubleValue(),
+				metrics.successRatePercentage(),
 				metrics.cooldownBlocks(),
 				metrics.rateLimits(),
 				metrics.errors(),
@@ -169,16 +355,40 @@ public class CommandService {
 			.appendSection("**Announcement Performance:**")
 			.appendLine("✅ Successful: %d", metrics.successfulAnnouncements())
 			.appendLine("❌ Failed: %d", metrics.failedAnnouncements())
-			.appendLine("📈 Success Rate: %.2f%%", metrics.successRatePercentage().doubleValue())
+			.appendLine("📈 Success Rate: %.2f%%", metrics.successRatePercentage())
+			.appendLine("📦 REST Calls Saved by Batching: %d", metrics.restCallsSaved())
+			.appendLine("⏭️ Superseded Before Sending: %d", metrics.outboundSuperseded())
+			.appendSection("**Channel Cache:**")
+			.appendLine("🎯 Hits: %d", metrics.channelCacheHits())
+			.appendLine("🔍 Misses: %d", metrics.channelCacheMisses())
+			.appendLine("♻️ Invalidations: %d", metrics.channelCacheInvalidations())
+			.append(formatLatencySection())
 			.appendSection("**Rate Limiting:**")
 			.appendLine("🚫 Cooldown Blocks: %d", metrics.cooldownBlocks())
 			.appendLine("⚡ Rate Limits: %d", metrics.rateLimits())
 			.appendSection("**System:**")
 			.appendLine("💥 Errors: %d", metrics.errors())
 			.appendLine("⌨️ Commands: %d", metrics.commandsProcessed())
+			.appendLine("🗑️ Pipeline Drops: %d", metrics.pipelineDrops())
 			.build();
 	}
 	
+	private String formatLatencySection() {
+		Map<LatencyStage, BotMetrics.LatencyPercentiles> latencyPercentiles = botMetrics.getLatencyPercentiles();
+		if (latencyPercentiles.isEmpty()) {
+			return "";
+		}
+		
+		MessageBuilder builder = new MessageBuilder()
+										.appendSection("**Latency (p50 / p95 / p99 ms):**");
+		
+		latencyPercentiles.forEach((stage, latency) ->
+				builder.appendLine("  • %s: %.1f / %.1f / %.1f (n=%d)", stage.tag(),
+						latency.p50Millis(), latency.p95Millis(), latency.p99Millis(), latency.count()));
+		
+		return builder.build();
+	}
+	
 	private String getTemplatesMessage() {
 		Map<String, Object> templateStats = getTemplateStats();
 		
@@ -224,7 +434,9 @@ public class CommandService {
 										.appendLine("🔇 Mutes: %d", voiceStats.muteCount())
 										.appendLine("🎤 Unmutes: %d", voiceStats.unmuteCount())
 										.appendLine("👂❌ Deafens: %d", voiceStats.deafenCount())
-										.appendLine("👂 Undeafens: %d", voiceStats.undeafenCount());
+										.appendLine("👂 Undeafens: %d", voiceStats.undeafenCount())
+										.appendLine("👂❌🔇 Deafens with mute: %d", voiceStats.deafenMuteCount())
+										.appendLine("👂🎤 Undeafens with unmute: %d", voiceStats.undeafenUnmuteCount());
 		
 		if (voiceStats.totalChanges() > 0) {
 			builder.appendSection("**Action Distribution:**")
@@ -235,27 +447,288 @@ public class CommandService {
 					.appendLine("Deafens: %.1f%%",
 							(voiceStats.deafenCount() * 100.0) / voiceStats.totalChanges())
 					.appendLine("Undeafens: %.1f%%",
-							(voiceStats.undeafenCount() * 100.0) / voiceStats.totalChanges());
+							(voiceStats.undeafenCount() * 100.0) / voiceStats.totalChanges())
+					.appendLine("Deafens with mute: %.1f%%",
+							(voiceStats.deafenMuteCount() * 100.0) / voiceStats.totalChanges())
+					.appendLine("Undeafens with unmute: %.1f%%",
+							(voiceStats.undeafenUnmuteCount() * 100.0) / voiceStats.totalChanges());
 		}
 		
 		return builder.build();
 	}
 	
-	private String handleTestCommand(MessageReceivedEvent event) {
-		if (!event.isFromGuild()) {
-			return "Test command only works in servers!";
+	/**
+	 * Served from the running aggregates in {@link VoiceTimeAggregator}; nothing is recomputed from past events.
+	 */
+	private String handleVoiceTimeCommand(Invocation invocation) {
+		String[] args = invocation.arguments().split("\\s+", 2);
+		Matcher mention = args.length > 1 ? USER_MENTION.matcher(args[1].trim()) : null;
+		if (!args[0].equalsIgnoreCase("time") || (mention != null && !mention.matches())) {
+			return String.format("Usage: `%1$svoice` or `%1$svoice time [@user]`", invocation.prefix());
+		}
+		if (invocation.guild() == null) {
+			return "Voice time only works in servers!";
+		}
+		if (!voiceTimeAggregator.isEnabled()) {
+			return "Voice time tracking is turned off for this bot.";
 		}
 		
-		AnnouncementResult result = announcementService.sendTestAnnouncement(
-				event.getGuild(),
-				"Bot functionality check from " + event.getAuthor().getEffectiveName()
-		);
+		long guildId = invocation.guild().getIdLong();
+		long userId;
+		String name;
+		if (mention != null) {
+			userId = Long.parseLong(mention.group(1));
+			Member target = invocation.guild().getMemberById(userId);
+			name = target != null ? target.getEffectiveName() : "That member";
+		} else {
+			userId = invocation.member() != null ? invocation.member().getIdLong() : 0L;
+			name = invocation.userName();
+		}
 		
-		return switch (result) {
-			case AnnouncementResult.Success success ->
-					"Test announcement sent successfully to #" + success.channelName() + "!";
-			case AnnouncementResult.Failure failure ->
-					"Failed to send test announcement: " + failure.errorMessage();
-		};
+		MessageBuilder builder = new MessageBuilder()
+										.appendLine("⏱️ **Time spent muted / deafened in this server** (all members combined):");
+		appendVoiceTime(builder, voiceTimeAggregator.getGuildTotals(guildId));
+		
+		builder.appendSection("👤 **" + name + ":**");
+		VoiceTimeTotals member = voiceTimeAggregator.getMemberTotals(guildId, userId);
+		if (member.isEmpty()) {
+			builder.appendLine("No mute or deafen time in the last week.");
+		} else {
+			appendVoiceTime(builder, member);
+		}
+		
+		return builder.build();
+	}
+	
+	private static void appendVoiceTime(MessageBuilder builder, VoiceTimeTotals totals) {
+		for (VoiceTimeWindow window : VoiceTimeWindow.values()) {
+			builder.appendLine("• %s: 🔇 %s / 👂❌ %s", window.getLabel(),
+					formatDuration(totals.muted(window)), formatDuration(totals.deafened(window)));
+		}
+	}
+	
+	private static String formatDuration(long millis) {
+		Duration duration = Duration.ofMillis(millis);
+		if (duration.toHours() > 0) {
+			return String.format("%dh %02dm", duration.toHours(), duration.toMinutesPart());
+		}
+		if (duration.toMinutes() > 0) {
+			return String.format("%dm %02ds", duration.toMinutes(), duration.toSecondsPart());
+		}
+		return duration.toSeconds() + "s";
+	}
+	
+	/**
+	 * Served from {@link VoiceHistoryIndex}, so the cost depends only on how many entries are shown.
+	 */
+	private String handleHistoryCommand(Invocation invocation) {
+		String[] args = invocation.arguments().split("\\s+");
+		Matcher mention = USER_MENTION.matcher(args[0]);
+		int limit = args.length == 2 ? parseHistoryLimit(args[1]) : DEFAULT_HISTORY_ENTRIES;
+		if (!mention.matches() || args.length > 2 || limit <= 0) {
+			return String.format("Usage: `%shistory @user [count]` (count 1-%d, default %d)",
+					invocation.prefix(), MAX_HISTORY_ENTRIES, DEFAULT_HISTORY_ENTRIES);
+		}
+		if (invocation.guild() == null) {
+			return "History only works in servers!";
+		}
+		if (!voiceHistoryIndex.isEnabled()) {
+			return "Voice history is turned off for this bot.";
+		}
+		
+		long userId = Long.parseLong(mention.group(1));
+		Member target = invocation.guild().getMemberById(userId);
+		String name = target != null ? target.getEffectiveName() : "That member";
+		
+		List<VoiceHistoryEntry> entries = voiceHistoryIndex.latest(invocation.guild().getIdLong(), userId, limit);
+		if (entries.isEmpty()) {
+			return name + " has no recent mute or deafen changes in this server.";
+		}
+		
+		MessageBuilder builder = new MessageBuilder()
+										.appendLine("📜 **Recent voice changes for %s** (newest first):", name);
+		for (VoiceHistoryEntry entry : entries) {
+			// Discord renders <t:seconds:f> in each reader's own time zone.
+			builder.append(String.format("• <t:%d:f> %s %s", entry.timestampMillis() / 1000,
+					entry.action().getDefaultEmoji(), entry.action().getLabel()));
+			if (entry.durationMillis() > 0) {
+				builder.append(" after " + formatDuration(entry.durationMillis()));
+			}
+			builder.append("\n");
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * @return the count, or -1 if it is not a number between 1 and {@link #MAX_HISTORY_ENTRIES}
+	 */
+	private static int parseHistoryLimit(String value) {
+		try {
+			int limit = Integer.parseInt(value);
+			return limit >= 1 && limit <= MAX_HISTORY_ENTRIES ? limit : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Completes once Discord confirms or rejects the test announcement, so the caller never blocks on it.
+	 */
+	private CompletableFuture<String> handleTestCommand(Invocation invocation) {
+		if (invocation.guild() == null) {
+			return CompletableFuture.completedFuture("Test command only works in servers!");
+		}
+		
+		// Retries can take far longer; past this, tell the invoker it is still on its way.
+		return announcementService.sendTestAnnouncement(invocation.guild(), "Bot functionality check from " + invocation.userName())
+				.handle((result, error) -> {
+					if (error != null) {
+						return "Failed to send test announcement: " + error.getMessage();
+					}
+					return switch (result) {
+						case AnnouncementResult.Success success ->
+								"Test announcement sent successfully to #" + success.channelName() + "!";
+						case AnnouncementResult.Failure failure ->
+								"Failed to send test announcement: " + failure.errorMessage();
+					};
+				})
+				.completeOnTimeout("⏳ Test announcement queued; Discord hasn't confirmed it yet.",
+						TEST_CONFIRMATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+	}
+	
+	private String handleConfigCommand(Invocation invocation) {
+		if (invocation.guild() == null) {
+			return "Config command only works in servers!";
+		}
+		
+		long guildId = invocation.guild().getIdLong();
+		String[] args = invocation.arguments().isEmpty() ? new String[0] : invocation.arguments().split("\\s+", 3);
+		if (args.length == 0) {
+			return getConfigMessage(guildId, invocation.prefix());
+		}
+		
+		if (invocation.member() == null || !invocation.member().hasPermission(Permission.MANAGE_SERVER)) {
+			return "🔒 You need the Manage Server permission to change bot settings.";
+		}
+		
+		String subcommand = args[0].toLowerCase(Locale.ROOT);
+		String key = args.length > 1 ? args[1].toLowerCase(Locale.ROOT) : "";
+		try {
+			switch (subcommand) {
+				case "set" -> {
+					if (args.length < 3) return getConfigUsage(invocation.prefix());
+					String value = key.equals("channel") ? resolveChannelMention(invocation.guild(), args[2]) : args[2];
+					guildSettingsStore.update(guildId, overrides -> overrides.set(key, value));
+				}
+				case "template" -> {
+					if (args.length < 3) return getConfigUsage(invocation.prefix());
+					VoiceAction action = parseAction(key);
+					guildSettingsStore.update(guildId, overrides -> overrides.addTemplate(action, args[2]));
+				}
+				case "reset" -> {
+					if (key.isEmpty()) return getConfigUsage(invocation.prefix());
+					guildSettingsStore.update(guildId, overrides -> {
+						if (key.equals("all")) {
+							GuildOverrides.KEYS.forEach(overrides::reset);
+							overrides.reset("templates");
+						} else {
+							overrides.reset(key);
+						}
+					});
+				}
+				default -> {
+					return getConfigUsage(invocation.prefix());
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			return "❌ " + e.getMessage();
+		}
+		
+		log.info("{} changed settings for guild {}: {}", invocation.userName(), guildId, invocation.arguments());
+		return "✅ Settings updated, they apply to the next announcement.\n\n" + getConfigMessage(guildId, invocation.prefix());
+	}
+	
+	/**
+	 * A {@code #channel} picked from Discord's autocomplete arrives as a {@code <#id>} mention; settings store the name.
+	 */
+	private static String resolveChannelMention(Guild guild, String value) {
+		Matcher mention = CHANNEL_MENTION.matcher(value);
+		if (!mention.matches()) {
+			return value;
+		}
+		
+		TextChannel channel = guild.getTextChannelById(mention.group(1));
+		if (channel == null) {
+			throw new IllegalArgumentException("That channel is not a text channel in this server");
+		}
+		return channel.getName();
+	}
+	
+	private static VoiceAction parseAction(String name) {
+		try {
+			return VoiceAction.valueOf(name.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown action '" + name + "', expected one of " + ACTION_KEYS);
+		}
+	}
+	
+	private String getConfigMessage(long guildId, String prefix) {
+		GuildSettings guild = guildSettingsStore.forGuild(guildId);
+		// Marks what the server has set itself, even where it matches the default, since reset still applies to it.
+		GuildOverrides overrides = guildSettingsStore.getOverrides(guildId).orElseGet(GuildOverrides::new);
+		
+		MessageBuilder builder = new MessageBuilder()
+										.appendLine("⚙️ **Settings for this server** (✏️ = set for this server):")
+										.appendLine("📢 Announcement channel: #%s%s", guild.announcementChannel(),
+												overridden(overrides.getAnnouncementChannel()))
+										.appendLine("🔇 Mute announcements: %s%s", onOff(guild.announceMute()),
+												overridden(overrides.getAnnounceMute()))
+										.appendLine("👂 Deafen announcements: %s%s", onOff(guild.announceDeafen()),
+												overridden(overrides.getAnnounceDeafen()))
+										.appendLine("🤖 Include bots: %s%s", onOff(guild.includeBots()),
+												overridden(overrides.getIncludeBots()))
+										.appendLine("🏷️ Use nicknames: %s%s", onOff(guild.useNicknames()),
+												overridden(overrides.getUseNicknames()))
+										.appendLine("⏱️ Cooldown: %.1fs%s", guild.cooldownMillis() / 1000.0,
+												overridden(overrides.getCooldownMillis()))
+										.appendLine("👤 User rate: %s%s", formatRate(guild.userIntervalMillis()),
+												overridden(overrides.getMaxAnnouncementsPerMinute()))
+										.appendLine("🏰 Server rate: %s%s", formatRate(guild.guildIntervalMillis()),
+												overridden(overrides.getGuildAnnouncementsPerMinute()))
+										.appendSection("**Templates:**");
+		
+		for (VoiceAction action : VoiceAction.values()) {
+			List<String> templates = messageTemplateService.getTemplatesForAction(guild, action);
+			builder.appendLine("  • %s: %d templates%s", action.name().toLowerCase(), templates.size(),
+					overridden(overrides.getTemplates().get(action)));
+		}
+		
+		return builder.append("\n").append(getConfigUsage(prefix)).build();
+	}
+	
+	private static String getConfigUsage(String prefix) {
+		return new MessageBuilder()
+					   .appendLine("**Usage** (changes need Manage Server):")
+					   .appendLine("• `%sconfig set <key> <value>` - keys: %s", prefix, String.join(", ", GuildOverrides.KEYS))
+					   .appendLine("• `%sconfig template <%s> <text>` - add a server template", prefix, ACTION_KEYS)
+					   .appendLine("• `%sconfig reset <key|templates|all>` - go back to the bot default", prefix)
+					   .build();
+	}
+	
+	private static String overridden(Object override) {
+		return override == null ? "" : " ✏️";
+	}
+	
+	private static String onOff(boolean value) {
+		return value ? "on" : "off";
+	}
+	
+	private static String formatRate(long intervalMillis) {
+		return intervalMillis == 0 ? "unlimited" : Math.round(60_000.0 / intervalMillis) + "/min";
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		cooldownExpiry.close();
 	}
-}
\ No newline at end of file
+}
@@ -1,99 +1,227 @@
 package com.jakec.mutediscordbot.service;
 
 import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.guild.GuildSettings;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
 import com.jakec.mutediscordbot.metrics.BotMetrics;
-import lombok.RequiredArgsConstructor;
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
+import com.jakec.mutediscordbot.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+/**
+ * Hierarchical GCRA (token bucket) limiter for announcements: per user in a guild, per guild and global.
+ * <p>
+ * Each bucket is one packed {@code long} in a {@link ConcurrentLongPairMap}: the theoretical arrival time
+ * in the high bits and the distance back to the last admitted announcement in the low bits, so the
+ * cooldown and the rate limit are checked and updated together with a single CAS. Buckets are keyed
+ * {@code (guildId, userId)}, {@code (guildId, 0)} and {@code (0, 0)}; snowflakes are never zero.
+ * <p>
+ * Every write schedules the bucket's expiry on a {@link HashedTimingWheel} for the moment it has fully
+ * refilled, when it is removed if it has not changed since. An absent bucket behaves exactly like a full one.
+ * <p>
+ * The cooldown and the user and guild limits come from the guild's {@link GuildSettings}; the global limit
+ * and the on/off switch are bot-wide.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CooldownService {
 	
+	// Times are milliseconds since 2024-01-01T00:00:00Z, which leaves 40 bits of headroom for the arrival time.
+	private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+	private static final int TAT_SHIFT = 24;
+	private static final long DELTA_MASK = (1L << TAT_SHIFT) - 1;
+	
+	private static final long GLOBAL_KEY = 0L;
+	
+	private static final int ADMITTED = 0;
+	private static final int COOLDOWN = 1;
+	private static final int RATE_LIMITED = 2;
+	
 	private final BotProperties botProperties;
+	private final GuildSettingsStore guildSettingsStore;
 	private final BotMetrics botMetrics;
-	private final Map<Long, Instant> cooldowns = new ConcurrentHashMap<>();
-	private final Map<Long, AtomicInteger> rateLimitCounters = new ConcurrentHashMap<>();
+	private final ConcurrentLongPairMap buckets = new ConcurrentLongPairMap(1024, 64);
+	private final HashedTimingWheel expiryWheel;
+	private final LongSupplier clock;
+	
+	@Autowired
+	public CooldownService(BotProperties botProperties, GuildSettingsStore guildSettingsStore, BotMetrics botMetrics) {
+		this(botProperties, guildSettingsStore, botMetrics, System::currentTimeMillis);
+	}
 	
-	public boolean isUserOnCooldown(long userId) {
+	/**
+	 * @param clock epoch milliseconds; the expiry wheel still runs in real time
+	 */
+	CooldownService(BotProperties botProperties, GuildSettingsStore guildSettingsStore, BotMetrics botMetrics,
+					LongSupplier clock) {
+		this.botProperties = botProperties;
+		this.guildSettingsStore = guildSettingsStore;
+		this.botMetrics = botMetrics;
+		this.clock = clock;
+		this.expiryWheel = new HashedTimingWheel("cooldowns", 100, TimeUnit.MILLISECONDS, 512, buckets::remove);
+		
+		botMetrics.registerTimingWheel(expiryWheel);
+		botMetrics.registerCooldownBuckets(buckets);
+	}
+	
+	public boolean isUserOnCooldown(long guildId, long userId) {
 		if (!botProperties.getSpamPrevention().isEnableRateLimit()) {
 			return false;
 		}
 		
-		Instant cooldownTime = cooldowns.get(userId);
-		return cooldownTime != null && Duration.between(cooldownTime, Instant.now())
-											   .compareTo(botProperties.getSpamPrevention().getCooldown()) < 0;
+		long bucket = buckets.get(guildId, userId);
+		return bucket != ConcurrentLongPairMap.NO_VALUE
+					   && nowMillis() < lastAdmitted(bucket) + guildSettingsStore.forGuild(guildId).cooldownMillis();
 	}
 	
-	public boolean checkAndUpdate(long userId) {
-		if (!botProperties.getSpamPrevention().isEnableRateLimit()) {
+	/**
+	 * Admits an announcement only if the user, guild and global buckets all have capacity, consuming one
+	 * token from each. A bucket that admitted before a wider scope rejected is refunded.
+	 */
+	public boolean checkAndUpdate(long guildId, long userId) {
+		BotProperties.SpamPrevention settings = botProperties.getSpamPrevention();
+		if (!settings.isEnableRateLimit()) {
 			return true;
 		}
-		if (isUserOnCooldown(userId)) {
+		
+		GuildSettings guild = guildSettingsStore.forGuild(guildId);
+		long now = nowMillis();
+		long userInterval = guild.userIntervalMillis();
+		int outcome = acquire(guildId, userId, userInterval, guild.userBurst(), guild.cooldownMillis(), now);
+		
+		if (outcome == COOLDOWN) {
 			botMetrics.incrementCooldownBlocks();
-			log.debug("User {} blocked by cooldown", userId);
+			log.debug("User {} in guild {} blocked by cooldown", userId, guildId);
 			return false;
 		}
+		if (outcome == RATE_LIMITED) {
+			return rateLimited("user", userId, guildId);
+		}
 		
-		if (isRateLimited(userId)) {
-			botMetrics.incrementRateLimits();
-			log.warn("User {} is rate limited", userId);
-			return false;
+		long guildInterval = guild.guildIntervalMillis();
+		if (guildInterval > 0 && acquire(guildId, GLOBAL_KEY, guildInterval, guild.guildBurst(), 0, now) != ADMITTED) {
+			refund(guildId, userId, userInterval, now);
+			return rateLimited("guild", userId, guildId);
+		}
+		
+		int globalRate = settings.getGlobalAnnouncementsPerMinute();
+		if (globalRate > 0 && acquire(GLOBAL_KEY, GLOBAL_KEY, GuildSettings.intervalMillis(globalRate),
+				settings.getGlobalBurst(), 0, now) != ADMITTED) {
+			if (guildInterval > 0) {
+				refund(guildId, GLOBAL_KEY, guildInterval, now);
+			}
+			refund(guildId, userId, userInterval, now);
+			return rateLimited("global", userId, guildId);
 		}
 		
-		updateCooldown(userId);
-		incrementRateCounter(userId);
 		return true;
 	}
 	
-	private void updateCooldown(long userId) {
-		cooldowns.put(userId, Instant.now());
+	private boolean rateLimited(String scope, long userId, long guildId) {
+		botMetrics.incrementRateLimits();
+		log.warn("User {} in guild {} is rate limited ({} limit)", userId, guildId, scope);
+		return false;
 	}
 	
-	private boolean isRateLimited(long userId) {
-		AtomicInteger counter = rateLimitCounters.get(userId);
-		return counter != null && counter.get() >= botProperties.getSpamPrevention().getMaxAnnouncementsPerMinute();
+	private int acquire(long key1, long key2, long interval, int burst, long cooldownMillis, long now) {
+		long tolerance = (burst - 1) * interval;
+		
+		while (true) {
+			long bucket = buckets.get(key1, key2);
+			long tat = now;
+			
+			if (bucket != ConcurrentLongPairMap.NO_VALUE) {
+				tat = bucket >>> TAT_SHIFT;
+				if (cooldownMillis > 0 && now < lastAdmitted(bucket) + cooldownMillis) {
+					return COOLDOWN;
+				}
+				if (now < tat - tolerance) {
+					return RATE_LIMITED;
+				}
+			}
+			
+			long nextTat = Math.max(tat, now) + interval;
+			long update = pack(nextTat, nextTat - now);
+			
+			boolean stored = bucket == ConcurrentLongPairMap.NO_VALUE
+									 ? buckets.putIfAbsent(key1, key2, update) == ConcurrentLongPairMap.NO_VALUE
+									 : buckets.compareAndSet(key1, key2, bucket, update);
+			if (stored) {
+				expiryWheel.schedule(key1, key2, update, Math.max(nextTat - now, cooldownMillis));
+				return ADMITTED;
+			}
+		}
 	}
 	
-	private void incrementRateCounter(long userId) {
-		rateLimitCounters.computeIfAbsent(userId, k -> new AtomicInteger(0))
-				.incrementAndGet();
+	/**
+	 * Gives back one token. The cooldown had already elapsed when this token was taken, so it is cleared too.
+	 */
+	private void refund(long key1, long key2, long interval, long now) {
+		while (true) {
+			long bucket = buckets.get(key1, key2);
+			if (bucket == ConcurrentLongPairMap.NO_VALUE) {
+				return;
+			}
+			
+			long tat = (bucket >>> TAT_SHIFT) - interval;
+			long update = pack(tat, DELTA_MASK);
+			if (buckets.compareAndSet(key1, key2, bucket, update)) {
+				expiryWheel.schedule(key1, key2, update, tat - now);
+				return;
+			}
+		}
 	}
 	
-	@Scheduled(fixedRate = 60000) // Every minute
-	public void resetRateCounters() {
-		int clearedUsers = rateLimitCounters.size();
-		rateLimitCounters.clear();
-		log.debug("Reset rate counters for {} users", clearedUsers);
+	/**
+	 * Restores a bucket from a snapshot unless it has fully refilled since or a live update already replaced it.
+	 * Buckets hold absolute times, so one taken before a restart keeps limiting exactly as before.
+	 */
+	public boolean restoreBucket(long key1, long key2, long bucket) {
+		long now = nowMillis();
+		long expiresAt = Math.max(bucket >>> TAT_SHIFT,
+				lastAdmitted(bucket) + guildSettingsStore.forGuild(key1).cooldownMillis());
+		if (expiresAt <= now || buckets.putIfAbsent(key1, key2, bucket) != ConcurrentLongPairMap.NO_VALUE) {
+			return false;
+		}
+		
+		expiryWheel.schedule(key1, key2, bucket, expiresAt - now);
+		return true;
 	}
 	
-	@Scheduled(fixedRate = 300000) // Every 5 minutes
-	public void cleanupOldCooldowns() {
-		Instant cutoff = Instant.now().minus(botProperties.getSpamPrevention().getCooldown()
-																				.multipliedBy(2));
-		int initialSize = cooldowns.size();
-		
-		cooldowns.entrySet().removeIf(entry -> entry.getValue().isBefore(cutoff));
-		
-		int removed = initialSize - cooldowns.size();
-		if (removed > 0) {
-			log.debug("Cleaned up {} old cooldown entries", removed);
-		}
+	public void forEachBucket(ConcurrentLongPairMap.EntryConsumer consumer) {
+		buckets.forEach(consumer);
+	}
+	
+	private static long pack(long tat, long sinceLastAdmitted) {
+		return (tat << TAT_SHIFT) | Math.min(sinceLastAdmitted, DELTA_MASK);
+	}
+	
+	private static long lastAdmitted(long bucket) {
+		return (bucket >>> TAT_SHIFT) - (bucket & DELTA_MASK);
+	}
+	
+	private long nowMillis() {
+		return clock.getAsLong() - EPOCH_MILLIS;
 	}
 	
 	public Map<String, Object> getStats() {
 		return Map.of(
-				"activeCooldowns", cooldowns.size(),
-				"activeRateLimits", rateLimitCounters.size(),
+				"activeBuckets", buckets.size(),
+				"bucketMemoryBytes", buckets.estimatedBytes(),
+				"pendingExpirations", expiryWheel.pending(),
 				"cooldownDuration", botProperties.getSpamPrevention().getCooldown().toString()
 		);
 	}
+	
+	@PreDestroy
+	public void shutdown() {
+		expiryWheel.close();
+	}
 }
@@ -1,15 +1,21 @@
 package com.jakec.mutediscordbot.service;
 
 import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.guild.GuildSettings;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
 import com.jakec.mutediscordbot.model.VoiceAction;
 import com.jakec.mutediscordbot.model.VoiceStateChange;
+import com.jakec.mutediscordbot.template.CompiledTemplate;
+import com.jakec.mutediscordbot.template.Placeholder;
+import com.jakec.mutediscordbot.template.PlaceholderResolver;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.GuildVoiceState;
-import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -20,20 +26,28 @@ import java.util.function.Function;
 @Slf4j
 public class MessageTemplateService {
 	
+	private static final int MAX_RETAINED_BUILDER_CAPACITY = 4096;
+	
 	private final BotProperties botProperties;
-	private final Map<VoiceAction, List<String>> actionTemplates;
+	private final GuildSettingsStore guildSettingsStore;
+	private final Map<Long, List<CompiledTemplate>> compiledUserTemplates;
+	private final String[] actionNames;
 	private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+	private final PlaceholderResolver<VoiceStateChange> placeholderResolver = this::appendPlaceholder;
+	private final ThreadLocal<StringBuilder> renderBuffer = ThreadLocal.withInitial(() -> new StringBuilder(256));
 	
-	public MessageTemplateService(BotProperties botProperties) {
+	public MessageTemplateService(BotProperties botProperties, GuildSettingsStore guildSettingsStore) {
 		this.botProperties = botProperties;
-		this.actionTemplates = Map.of(
-				VoiceAction.MUTED, botProperties.getMessages().getMuteTemplates(),
-				VoiceAction.UNMUTED, botProperties.getMessages().getUnmuteTemplates(),
-				VoiceAction.DEAFENED, botProperties.getMessages().getDeafenTemplates(),
-				VoiceAction.UNDEAFENED, botProperties.getMessages().getUndeafenTemplates()
-		);
+		this.guildSettingsStore = guildSettingsStore;
+		this.compiledUserTemplates = compileUserTemplates(botProperties.getMessages().getCustomUserMessages());
+		
+		this.actionNames = new String[VoiceAction.values().length];
+		for (VoiceAction action : VoiceAction.values()) {
+			actionNames[action.ordinal()] = action.getLabel();
+		}
 		
-		log.info("Initialized message templates for {} voice actions", actionTemplates.size());
+		log.info("Initialized message templates for {} voice actions and {} custom users",
+				VoiceAction.values().length, compiledUserTemplates.size());
 	}
 	
 	public Optional<String> generateMessage(VoiceStateChange stateChange) {
@@ -42,81 +56,112 @@ public class MessageTemplateService {
 			return Optional.empty();
 		}
 		
-		Optional<String> customTemplate = getCustomUserTemplate(stateChange.getUserId(), stateChange.action());
-		if (customTemplate.isPresent()) {
-			return customTemplate.map(template -> formatTemplate(template, stateChange));
+		CompiledTemplate template = pickTemplate(stateChange.getUserId(), stateChange.action(),
+				guildSettingsStore.forGuild(stateChange.getGuildIdLong()));
+		if (template == null) {
+			log.warn("No templates configured for action: {}", stateChange.action());
+			return Optional.empty();
 		}
 		
-		return getRandomTemplate(stateChange.action())
-					   .map(template -> formatTemplate(template, stateChange));
+		return Optional.of(render(template, stateChange));
 	}
 	
 	public Optional<String> getRandomTemplate(VoiceAction action) {
-		List<String> templates = actionTemplates.get(action);
-		
-		if (templates == null || templates.isEmpty()) {
-			log.warn("No templates configured for action: {}", action);
-			return Optional.empty();
-		}
-		
-		int randomIndex = ThreadLocalRandom.current().nextInt(templates.size());
-		return Optional.of(templates.get(randomIndex));
+		return Optional.ofNullable(pickRandom(guildSettingsStore.defaults().templatesFor(action)))
+					   .map(CompiledTemplate::source);
 	}
 	
 	public List<String> getTemplatesForAction(VoiceAction action) {
-		return Optional.ofNullable(actionTemplates.get(action))
-						.orElse(List.of());
+		return getTemplatesForAction(guildSettingsStore.defaults(), action);
+	}
+	
+	public List<String> getTemplatesForAction(GuildSettings settings, VoiceAction action) {
+		return settings.templatesFor(action)
+					   .stream()
+					   .map(CompiledTemplate::source)
+					   .toList();
 	}
 	
 	public Function<VoiceStateChange, String> createCustomFormatter(String template) {
-		return stateChange -> formatTemplate(template, stateChange);
+		CompiledTemplate compiled = CompiledTemplate.compile(template);
+		return stateChange -> render(compiled, stateChange);
 	}
 	
-	private String formatTemplate(String template, VoiceStateChange stateChange) {
-		return template
-				.replace("{user}", getUserDisplayName(stateChange))
-				.replace("{action}", stateChange.action().name().toLowerCase())
-				.replace("{emoji}", stateChange.getActionEmoji())
-				.replace("{time}", LocalTime.now().format(timeFormatter))
-				.replace("{channel}", getChannelName(stateChange))
-				.replace("{guild}", getGuildId(stateChange));
+	private CompiledTemplate pickTemplate(long userId, VoiceAction action, GuildSettings settings) {
+		CompiledTemplate custom = pickRandom(compiledUserTemplates.get(userId));
+		return custom != null ? custom : pickRandom(settings.templatesFor(action));
+	}
+	
+	private static CompiledTemplate pickRandom(List<CompiledTemplate> templates) {
+		if (templates == null || templates.isEmpty()) {
+			return null;
+		}
+		
+		int randomIndex = ThreadLocalRandom.current().nextInt(templates.size());
+		return templates.get(randomIndex);
+	}
+	
+	private String render(CompiledTemplate template, VoiceStateChange stateChange) {
+		StringBuilder out = renderBuffer.get();
+		out.setLength(0);
+		
+		template.renderTo(out, placeholderResolver, stateChange);
+		String message = out.toString();
+		
+		if (out.capacity() > MAX_RETAINED_BUILDER_CAPACITY) {
+			renderBuffer.remove();
+		}
+		return message;
+	}
+	
+	private void appendPlaceholder(Placeholder placeholder, VoiceStateChange stateChange, StringBuilder out) {
+		switch (placeholder) {
+			case USER -> out.append(getUserDisplayName(stateChange));
+			case ACTION -> out.append(actionNames[stateChange.action().ordinal()]);
+			case EMOJI -> out.append(stateChange.getActionEmoji());
+			case TIME -> timeFormatter.formatTo(LocalTime.now(), out);
+			case CHANNEL -> out.append(getChannelName(stateChange));
+			case GUILD -> out.append(stateChange.guildId());
+		}
 	}
 	
 	private String getUserDisplayName(VoiceStateChange stateChange) {
-		return botProperties.getAnnouncements().isUseNicknames()
+		return guildSettingsStore.forGuild(stateChange.getGuildIdLong()).useNicknames()
 					   ? stateChange.getUserDisplayName()
 					   : stateChange.getUserName();
 	}
 	
 	private String getChannelName(VoiceStateChange stateChange) {
-		return Optional.ofNullable(stateChange.member().getVoiceState())
-									.map(GuildVoiceState::getChannel)
-									.map(Channel::getName)
-									.orElse("voice-channel");
+		GuildVoiceState voiceState = stateChange.member().getVoiceState();
+		AudioChannelUnion channel = voiceState != null ? voiceState.getChannel() : null;
+		return channel != null ? channel.getName() : "voice-channel";
 	}
 	
-	private String getGuildId(VoiceStateChange stateChange) {
-		return stateChange.guildId();
+	private static List<CompiledTemplate> compileAll(List<String> templates) {
+		return templates.stream()
+					   .map(CompiledTemplate::compile)
+					   .toList();
 	}
 	
-	private Optional<String> getCustomUserTemplate(long userId, VoiceAction action) {
-		String userIdStr = String.valueOf(userId);
-		List<String> customMessages = botProperties.getMessages()
-													.getCustomUserMessages()
-													.get(userIdStr);
+	private static Map<Long, List<CompiledTemplate>> compileUserTemplates(Map<String, List<String>> customUserMessages) {
+		Map<Long, List<CompiledTemplate>> compiled = new HashMap<>();
 		
-		if (customMessages == null || customMessages.isEmpty()) {
-			return Optional.empty();
-		}
+		customUserMessages.forEach((userId, templates) -> {
+			try {
+				compiled.put(Long.parseUnsignedLong(userId.trim()), compileAll(templates));
+			} catch (NumberFormatException e) {
+				log.warn("Ignoring custom messages for invalid user id '{}'", userId);
+			}
+		});
 		
-		int randomIndex = ThreadLocalRandom.current().nextInt(customMessages.size());
-		return Optional.of(customMessages.get(randomIndex));
+		return Map.copyOf(compiled);
 	}
 	
 	public Map<String, Object> getTemplateStats() {
-		int totalTemplates = actionTemplates.values().stream()
-														.mapToInt(List::size)
-														.sum();
+		GuildSettings defaults = guildSettingsStore.defaults();
+		int totalTemplates = defaults.templates().values().stream()
+												.mapToInt(List::size)
+												.sum();
 		
 		int customUserCount = botProperties.getMessages()
 											.getCustomUserMessages()
@@ -125,8 +170,9 @@ public class MessageTemplateService {
 		return Map.of(
 				"totalDefaultTemplates", totalTemplates,
 				"customUserCount", customUserCount,
-				"actionsConfigured", actionTemplates.size(),
-				"useNicknames", botProperties.getAnnouncements().isUseNicknames()
+				"actionsConfigured", defaults.templates().size(),
+				"guildsWithOverrides", guildSettingsStore.getGuildCount(),
+				"useNicknames", defaults.useNicknames()
 		);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.OutboundPriority;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends every outgoing message through a per-channel lane that mirrors Discord's per-channel send bucket,
+ * so messages wait here, where they can still be reordered or dropped, instead of inside JDA's requester.
+ * <p>
+ * Each lane keeps at most one message in flight, sends command responses before announcements, and
+ * tracks how many sends are left in the current bucket window. An announcement submitted with a
+ * {@link SupersedeKey} replaces any queued, unsent announcement with the same key, e.g. a mute followed
+ * by an unmute of the same user only sends the unmute. Replaced messages complete as cancelled.
+ * <p>
+ * Sends go through {@link RestRetryScheduler}, and a lane waits for a message's retries before moving on,
+ * so a retried message is never overtaken by a later one in the same channel.
+ * <p>
+ * A lane is removed once it is idle and its bucket window has run out, so only channels sent to recently
+ * have one; removing it earlier would let a new lane start with a fresh burst.
+ */
+@Service
+@Slf4j
+public class OutboundMessageScheduler {
+	
+	private final BotMetrics botMetrics;
+	private final RestRetryScheduler retryScheduler;
+	private final BotProperties.Outbound settings;
+	private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final ScheduledExecutorService wakeups;
+	private volatile boolean stopped;
+	
+	/**
+	 * Identifies announcements that make each other obsolete: the same user changing the same voice state.
+	 */
+	public record SupersedeKey(long userId, boolean deafen) {}
+	
+	public OutboundMessageScheduler(BotProperties botProperties, BotMetrics botMetrics, RestRetryScheduler retryScheduler,
+									BotExecutors botExecutors) {
+		this.botMetrics = botMetrics;
+		this.retryScheduler = retryScheduler;
+		this.settings = botProperties.getOutbound();
+		this.wakeups = botExecutors.getScheduler();
+		
+		botMetrics.registerOutboundQueue(queued);
+	}
+	
+	public CompletableFuture<Message> submit(MessageChannel channel, String content, OutboundPriority priority) {
+		return submit(channel, content, priority, null);
+	}
+	
+	public CompletableFuture<Message> submit(MessageChannel channel, String content, OutboundPriority priority,
+											 SupersedeKey supersedeKey) {
+		return submit(channel, content, priority, supersedeKey, System.nanoTime());
+	}
+	
+	/**
+	 * @param startNanos when the message's retry deadline starts counting, e.g. when its voice event arrived
+	 */
+	public CompletableFuture<Message> submit(MessageChannel channel, String content, OutboundPriority priority,
+											 SupersedeKey supersedeKey, long startNanos) {
+		long deadlineNanos = retryScheduler.deadlineAfter(startNanos);
+		if (!settings.isEnabled()) {
+			return retryScheduler.submit(() -> channel.sendMessage(content), deadlineNanos);
+		}
+		
+		Outbound message = new Outbound(content, priority, supersedeKey, deadlineNanos);
+		Lane lane;
+		Outbound superseded = null;
+		boolean rejected = false;
+		
+		while (true) {
+			lane = lanes.computeIfAbsent(channel.getIdLong(), id -> new Lane(channel));
+			synchronized (lane) {
+				if (lane.retired) {
+					continue;
+				}
+				
+				lane.channel = channel;
+				if (priority == OutboundPriority.ANNOUNCEMENT && lane.announcements.size() >= settings.getMaxQueuedPerChannel()) {
+					rejected = true;
+				} else {
+					if (supersedeKey != null) {
+						superseded = lane.latest.put(supersedeKey, message);
+						if (superseded != null) {
+							superseded.superseded = true;
+						}
+					}
+					lane.queueFor(priority).addLast(message);
+					queued.incrementAndGet();
+				}
+				break;
+			}
+		}
+		
+		if (rejected) {
+			botMetrics.incrementOutboundDropped();
+			log.warn("Outbound queue for #{} is full, dropping announcement", channel.getName());
+			message.result.completeExceptionally(new RejectedExecutionException("Outbound queue full"));
+			return message.result;
+		}
+		
+		if (superseded != null) {
+			botMetrics.incrementOutboundSuperseded();
+			log.debug("Announcement in #{} superseded before sending: {}", channel.getName(), superseded.content);
+			superseded.result.cancel(false);
+		}
+		
+		pump(lane);
+		return message.result;
+	}
+	
+	private void pump(Lane lane) {
+		Outbound next;
+		MessageChannel channel;
+		
+		synchronized (lane) {
+			if (lane.inFlight) {
+				return;
+			}
+			
+			long now = System.nanoTime();
+			long windowLeft = lane.windowStart + settings.getChannelWindow().toNanos() - now;
+			if (!lane.hasQueued()) {
+				retireWhenIdle(lane, windowLeft);
+				return;
+			}
+			
+			if (windowLeft <= 0) {
+				lane.windowStart = now;
+				lane.remaining = settings.getChannelBurst();
+				windowLeft = settings.getChannelWindow().toNanos();
+			}
+			
+			if (lane.remaining == 0) {
+				scheduleWakeup(lane, windowLeft);
+				return;
+			}
+			
+			next = lane.poll();
+			if (next == null) { // everything queued had been superseded
+				retireWhenIdle(lane, windowLeft);
+				return;
+			}
+			
+			lane.remaining--;
+			lane.inFlight = true;
+			channel = lane.channel;
+		}
+		
+		botMetrics.recordOutboundWait(next.priority, System.nanoTime() - next.enqueuedAt);
+		send(lane, channel, next);
+	}
+	
+	private void send(Lane lane, MessageChannel channel, Outbound message) {
+		retryScheduler.submit(() -> channel.sendMessage(message.content), message.deadlineNanos).whenComplete((sent, error) -> {
+			finish(lane);
+			if (error == null) {
+				message.result.complete(sent);
+			} else {
+				message.result.completeExceptionally(error);
+			}
+		});
+	}
+	
+	private void finish(Lane lane) {
+		synchronized (lane) {
+			lane.inFlight = false;
+		}
+		pump(lane);
+	}
+	
+	/**
+	 * Called with the lane locked, idle and empty; removes it, or checks again when its bucket window runs out.
+	 */
+	private void retireWhenIdle(Lane lane, long windowLeft) {
+		if (windowLeft > 0) {
+			scheduleWakeup(lane, windowLeft);
+			return;
+		}
+		lane.retired = true;
+		lanes.remove(lane.channel.getIdLong(), lane);
+	}
+	
+	/**
+	 * Called with the lane locked, which the wakeup needs too, so it can't clear {@code lane.wakeup} before it is set.
+	 */
+	private void scheduleWakeup(Lane lane, long delayNanos) {
+		if (lane.wakeup != null || stopped) {
+			return;
+		}
+		
+		lane.wakeup = wakeups.schedule(() -> {
+			synchronized (lane) {
+				lane.wakeup = null;
+			}
+			pump(lane);
+		}, delayNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	public int getQueuedCount() {
+		return queued.get();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		stopped = true;
+		for (Lane lane : lanes.values()) {
+			synchronized (lane) {
+				if (lane.wakeup != null) {
+					lane.wakeup.cancel(false);
+				}
+			}
+		}
+		if (queued.get() > 0) {
+			log.warn("Outbound scheduler stopped with {} messages still queued", queued.get());
+		}
+	}
+	
+	private static final class Outbound {
+		private final String content;
+		private final OutboundPriority priority;
+		private final SupersedeKey supersedeKey;
+		private final long deadlineNanos;
+		private final long enqueuedAt = System.nanoTime();
+		private final CompletableFuture<Message> result = new CompletableFuture<>();
+		private boolean superseded;
+		
+		Outbound(String content, OutboundPriority priority, SupersedeKey supersedeKey, long deadlineNanos) {
+			this.content = content;
+			this.priority = priority;
+			this.supersedeKey = supersedeKey;
+			this.deadlineNanos = deadlineNanos;
+		}
+	}
+	
+	private final class Lane {
+		private final ArrayDeque<Outbound> commands = new ArrayDeque<>();
+		private final ArrayDeque<Outbound> announcements = new ArrayDeque<>();
+		private final Map<SupersedeKey, Outbound> latest = new HashMap<>();
+		private MessageChannel channel;
+		private long windowStart = System.nanoTime() - settings.getChannelWindow().toNanos();
+		private int remaining;
+		private boolean inFlight;
+		private ScheduledFuture<?> wakeup;
+		private boolean retired;
+		
+		Lane(MessageChannel channel) {
+			this.channel = channel;
+		}
+		
+		boolean hasQueued() {
+			return !commands.isEmpty() || !announcements.isEmpty();
+		}
+		
+		ArrayDeque<Outbound> queueFor(OutboundPriority priority) {
+			return priority == OutboundPriority.COMMAND ? commands : announcements;
+		}
+		
+		/**
+		 * Next message to send, skipping announcements that were superseded while queued.
+		 */
+		Outbound poll() {
+			Outbound next;
+			while ((next = commands.isEmpty() ? announcements.pollFirst() : commands.pollFirst()) != null) {
+				queued.decrementAndGet();
+				if (next.superseded) {
+					continue;
+				}
+				if (next.supersedeKey != null) {
+					latest.remove(next.supersedeKey, next);
+				}
+				return next;
+			}
+			return null;
+		}
+	}
+}
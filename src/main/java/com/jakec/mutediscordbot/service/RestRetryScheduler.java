@@ -0,0 +1,158 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.Response;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Submits Discord REST actions and retries the ones that failed for a transient reason, without blocking the caller.
+ * <p>
+ * 5xx responses, timeouts and connection errors are retried after an exponential backoff with jitter: each delay is
+ * half the current backoff plus a random share of the other half, so sends that failed together don't retry
+ * together. Anything else, e.g. missing access or an unknown channel, is final at once, and so is a failure whose
+ * retry would start after the deadline. Retries carry the deadline to JDA, which abandons them if they are still
+ * waiting on a rate limit when it passes.
+ */
+@Service
+@Slf4j
+public class RestRetryScheduler {
+	
+	private final BotProperties.SendRetry settings;
+	private final BotMetrics botMetrics;
+	private final ScheduledExecutorService timer;
+	private volatile boolean stopped;
+	
+	public RestRetryScheduler(BotProperties botProperties, BotMetrics botMetrics, BotExecutors botExecutors) {
+		this.settings = botProperties.getSendRetry();
+		this.botMetrics = botMetrics;
+		this.timer = botExecutors.getScheduler();
+	}
+	
+	/**
+	 * @param action        creates the request for each attempt
+	 * @param deadlineNanos {@link System#nanoTime()} after which no retry starts
+	 * @return completes with the first successful result, or with the error that ended the retries
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<? extends RestAction<T>> action, long deadlineNanos) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		attempt(action, deadlineNanos, 1, result);
+		return result;
+	}
+	
+	/**
+	 * The deadline for a send whose time budget started at {@code startNanos}, e.g. when its voice event arrived.
+	 */
+	public long deadlineAfter(long startNanos) {
+		return startNanos + settings.getDeadline().toNanos();
+	}
+	
+	private <T> void attempt(Supplier<? extends RestAction<T>> action, long deadlineNanos, int attempt,
+							 CompletableFuture<T> result) {
+		CompletableFuture<T> sent;
+		try {
+			RestAction<T> request = action.get();
+			sent = (attempt == 1 ? request : request.deadline(epochMillis(deadlineNanos))).submit();
+		} catch (Exception e) {
+			sent = CompletableFuture.failedFuture(e);
+		}
+		
+		sent.whenComplete((value, error) -> {
+			if (error == null) {
+				result.complete(value);
+				return;
+			}
+			
+			Throwable cause = unwrap(error);
+			long delayNanos = retryDelayNanos(cause, attempt, deadlineNanos);
+			if (delayNanos < 0) {
+				if (attempt > 1) {
+					botMetrics.incrementSendRetriesExhausted();
+				}
+				result.completeExceptionally(cause);
+				return;
+			}
+			
+			botMetrics.incrementSendRetries();
+			log.debug("Send attempt {} failed ({}), retrying in {}ms", attempt, cause.getMessage(),
+					TimeUnit.NANOSECONDS.toMillis(delayNanos));
+			try {
+				timer.schedule(() -> {
+					if (stopped) {
+						result.completeExceptionally(cause);
+					} else {
+						attempt(action, deadlineNanos, attempt + 1, result);
+					}
+				}, delayNanos, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				result.completeExceptionally(cause); // shutting down
+			}
+		});
+	}
+	
+	/**
+	 * @return the delay before the next attempt, or -1 if the error is final, attempts are used up or the retry
+	 * would start after the deadline
+	 */
+	private long retryDelayNanos(Throwable error, int attempt, long deadlineNanos) {
+		if (attempt >= settings.getMaxAttempts() || !isRetryable(error)) {
+			return -1;
+		}
+		
+		long initial = settings.getInitialBackoff().toNanos();
+		long backoff = Math.min(settings.getMaxBackoff().toNanos(), initial << Math.min(attempt - 1, 30));
+		long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+		return System.nanoTime() + delay < deadlineNanos ? delay : -1;
+	}
+	
+	public boolean isRetryable(Throwable error) {
+		Throwable cause = unwrap(error);
+		if (cause instanceof ErrorResponseException response) {
+			if (response.isServerError()) {
+				return true;
+			}
+			// No HTTP response at all, e.g. a reset connection; the underlying exception is the cause.
+			return response.getErrorCode() == Response.ERROR_CODE && isTransient(response.getCause());
+		}
+		return isTransient(cause);
+	}
+	
+	private static boolean isTransient(Throwable error) {
+		return error instanceof TimeoutException || error instanceof IOException;
+	}
+	
+	private static Throwable unwrap(Throwable error) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error;
+	}
+	
+	private static long epochMillis(long nanos) {
+		return System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(nanos - System.nanoTime());
+	}
+	
+	/**
+	 * Retries still waiting on the shared scheduler fail with their last error when they come due.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		stopped = true;
+	}
+}
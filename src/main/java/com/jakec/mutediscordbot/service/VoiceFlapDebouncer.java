@@ -0,0 +1,119 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds each member's voice updates until they have been quiet for {@code quiet-period}, then hands on the net
+ * change from the flags before the burst to the flags after it. A burst that ends where it started hands on nothing.
+ * <p>
+ * Pending members are entries in one map and their flushes share one {@link HashedTimingWheel}, so thousands of
+ * members mid-burst need no scheduled task each. Every update schedules a fresh timeout tagged with a sequence
+ * number; a timeout that finds a newer sequence in the map was overtaken and does nothing. A member who never
+ * stops toggling is flushed {@code max-delay} after the burst began.
+ * <p>
+ * Settled changes go to the handler {@link VoiceStateService} registers. When debouncing is disabled there is
+ * no wheel and no meters.
+ */
+@Component
+public class VoiceFlapDebouncer implements AutoCloseable {
+	
+	private static final long TICK_MILLIS = 50;
+	
+	@FunctionalInterface
+	interface FlushHandler {
+		void flush(Member member, Guild guild, int wasFlags, int nowFlags, long receivedNanos);
+	}
+	
+	private record MemberKey(long guildId, long userId) {}
+	
+	/**
+	 * @param receivedNanos arrival of the latest update, which carries the settled state
+	 */
+	private record Pending(Member member, Guild guild, int baseFlags, int latestFlags, long startedNanos,
+						   long receivedNanos, long sequence, int updates) {}
+	
+	private final BotProperties.VoiceDebounce settings;
+	private final BotMetrics botMetrics;
+	private final Map<MemberKey, Pending> pending = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final HashedTimingWheel wheel;
+	private volatile FlushHandler handler;
+	
+	public VoiceFlapDebouncer(BotProperties botProperties, BotMetrics botMetrics) {
+		this.settings = botProperties.getVoiceDebounce();
+		this.botMetrics = botMetrics;
+		if (!settings.isEnabled()) {
+			this.wheel = null;
+			return;
+		}
+		
+		this.wheel = new HashedTimingWheel("voice-debounce", TICK_MILLIS, TimeUnit.MILLISECONDS, 128, this::expire);
+		botMetrics.registerTimingWheel(wheel);
+		botMetrics.registerVoiceDebounce(pending);
+	}
+	
+	void setFlushHandler(FlushHandler handler) {
+		this.handler = handler;
+	}
+	
+	boolean isEnabled() {
+		return wheel != null;
+	}
+	
+	void offer(Member member, Guild guild, int wasFlags, int nowFlags, long receivedNanos) {
+		long now = System.nanoTime();
+		long seq = sequence.incrementAndGet();
+		MemberKey key = new MemberKey(guild.getIdLong(), member.getIdLong());
+		
+		Pending updated = pending.compute(key, (k, current) -> current == null
+				? new Pending(member, guild, wasFlags, nowFlags, now, receivedNanos, seq, 1)
+				: new Pending(member, guild, current.baseFlags(), nowFlags, current.startedNanos(), receivedNanos, seq,
+						current.updates() + 1));
+		
+		long sinceStart = TimeUnit.NANOSECONDS.toMillis(now - updated.startedNanos());
+		long delay = Math.min(settings.getQuietPeriod().toMillis(), settings.getMaxDelay().toMillis() - sinceStart);
+		wheel.schedule(key.guildId(), key.userId(), seq, Math.max(0, delay));
+	}
+	
+	/**
+	 * Runs on the wheel thread; the handler only diffs flags and hands the result to the announcement pipeline.
+	 */
+	private void expire(long guildId, long userId, long seq) {
+		Pending[] settled = new Pending[1];
+		pending.computeIfPresent(new MemberKey(guildId, userId), (key, current) -> {
+			if (current.sequence() != seq) {
+				return current;
+			}
+			settled[0] = current;
+			return null;
+		});
+		
+		Pending burst = settled[0];
+		if (burst == null) {
+			return;
+		}
+		if (burst.updates() > 1) {
+			botMetrics.incrementVoiceUpdatesDebounced(burst.updates() - 1);
+		}
+		handler.flush(burst.member(), burst.guild(), burst.baseFlags(), burst.latestFlags(), burst.receivedNanos());
+	}
+	
+	@Override
+	@PreDestroy
+	public void close() {
+		if (wheel != null) {
+			wheel.close();
+		}
+	}
+}
@@ -1,68 +1,180 @@
 package com.jakec.mutediscordbot.service;
 
-import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.analytics.VoiceTimeAggregator;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.history.VoiceHistoryIndex;
 import com.jakec.mutediscordbot.metrics.BotMetrics;
-import com.jakec.mutediscordbot.model.AnnouncementResult;
+import com.jakec.mutediscordbot.metrics.LatencyStage;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
 import com.jakec.mutediscordbot.model.VoiceAction;
 import com.jakec.mutediscordbot.model.VoiceStateChange;
-import lombok.RequiredArgsConstructor;
+import com.jakec.mutediscordbot.state.VoiceStateTable;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.GuildVoiceState;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class VoiceStateService {
 	
-	private final AnnouncementService announcementService;
+	private final AnnouncementPipeline announcementPipeline;
 	private final CooldownService cooldownService;
-	private final BotProperties botProperties;
+	private final GuildSettingsStore guildSettingsStore;
 	private final BotMetrics botMetrics;
+	private final VoiceStateTable voiceStateTable;
+	private final VoiceTimeAggregator voiceTimeAggregator;
+	private final EventLogWriter eventLogWriter;
+	private final VoiceHistoryIndex voiceHistoryIndex;
+	private final VoiceFlapDebouncer debouncer;
+	private final VoiceUpdateAssembler updateAssembler;
 	
-	private final ConcurrentHashMap<String, Boolean> muteCache = new ConcurrentHashMap<>();
-	private final ConcurrentHashMap<String, Boolean> deafenCache = new ConcurrentHashMap<>();
+	public VoiceStateService(AnnouncementPipeline announcementPipeline, CooldownService cooldownService,
+							 GuildSettingsStore guildSettingsStore, BotMetrics botMetrics, VoiceStateTable voiceStateTable,
+							 VoiceTimeAggregator voiceTimeAggregator, EventLogWriter eventLogWriter,
+							 VoiceHistoryIndex voiceHistoryIndex, VoiceFlapDebouncer debouncer,
+							 VoiceUpdateAssembler updateAssembler) {
+		this.announcementPipeline = announcementPipeline;
+		this.cooldownService = cooldownService;
+		this.guildSettingsStore = guildSettingsStore;
+		this.botMetrics = botMetrics;
+		this.voiceStateTable = voiceStateTable;
+		this.voiceTimeAggregator = voiceTimeAggregator;
+		this.eventLogWriter = eventLogWriter;
+		this.voiceHistoryIndex = voiceHistoryIndex;
+		this.debouncer = debouncer;
+		this.updateAssembler = updateAssembler;
+		updateAssembler.setUpdateHandler(this::applyUpdate);
+		debouncer.setFlushHandler((member, guild, wasFlags, nowFlags, receivedNanos) ->
+				emitTransitions(member, guild, wasFlags, nowFlags, receivedNanos, false, true));
+	}
 	
 	public void handleVoiceStateUpdate(Member member, GuildVoiceState newState, Guild guild) {
-		if (shouldIgnoreUpdate(member, newState)) {
+		handleVoiceStateUpdate(member, newState, guild, System.nanoTime());
+	}
+	
+	/**
+	 * Diffs a complete voice state update at once, for callers that set every changed flag before calling.
+	 *
+	 * @param receivedNanos {@link System#nanoTime()} when the update arrived
+	 */
+	public void handleVoiceStateUpdate(Member member, GuildVoiceState newState, Guild guild, long receivedNanos) {
+		if (shouldIgnoreUpdate(member, newState, guild)) {
 			return;
 		}
 		
-		String userId = member.getId();
-		
-		boolean wasMuted = muteCache.getOrDefault(userId, false);
-		boolean wasDeafened = deafenCache.getOrDefault(userId, false);
-		
-		boolean nowMuted = newState.isSelfMuted();
-		boolean nowDeafened = newState.isSelfDeafened();
-		
-		Optional<VoiceAction> action = Optional.empty();
+		int nowFlags = VoiceStateTable.flagsOf(newState);
+		int wasFlags = voiceStateTable.swap(guild.getIdLong(), member.getIdLong(), nowFlags);
+		botMetrics.recordLatency(LatencyStage.STATE_DIFF, System.nanoTime() - receivedNanos);
+		applyUpdate(member, guild, wasFlags, nowFlags, receivedNanos);
+	}
+	
+	/**
+	 * Handles one of the mute or deafen events JDA fires for a gateway update. JDA changes and reports the flags
+	 * one at a time, so events sharing {@code responseNumber} are put back together and diffed as one update.
+	 *
+	 * @param receivedNanos {@link System#nanoTime()} when the gateway event arrived
+	 */
+	public void handleVoiceFlagEvent(Member member, GuildVoiceState newState, Guild guild, long responseNumber,
+									 long receivedNanos) {
+		if (shouldIgnoreUpdate(member, newState, guild)) {
+			return;
+		}
 		
-		if (!wasMuted && nowMuted) action = Optional.of(VoiceAction.MUTED);
-		else if (wasMuted && !nowMuted) action = Optional.of(VoiceAction.UNMUTED);
-		else if (!wasDeafened && nowDeafened) action = Optional.of(VoiceAction.DEAFENED);
-		else if (wasDeafened && !nowDeafened) action = Optional.of(VoiceAction.UNDEAFENED);
+		int nowFlags = VoiceStateTable.flagsOf(newState);
+		int wasFlags = voiceStateTable.swap(guild.getIdLong(), member.getIdLong(), nowFlags);
+		botMetrics.recordLatency(LatencyStage.STATE_DIFF, System.nanoTime() - receivedNanos);
+		updateAssembler.offer(member, guild, responseNumber, wasFlags, nowFlags, receivedNanos);
+	}
+	
+	/**
+	 * History records every transition; with debouncing, only the settled net change is announced.
+	 */
+	private void applyUpdate(Member member, Guild guild, int wasFlags, int nowFlags, long receivedNanos) {
+		if (wasFlags != nowFlags) {
+			voiceTimeAggregator.record(guild.getIdLong(), member.getIdLong(), nowFlags);
+		}
 		
-		action.map(a -> VoiceStateChange.of(member, a))
-				.filter(this::passesFilters)
-				.ifPresent(stateChange -> processStateChange(stateChange, guild));
+		boolean debounce = debouncer.isEnabled();
+		emitTransitions(member, guild, wasFlags, nowFlags, receivedNanos, true, !debounce);
+		if (debounce && wasFlags != nowFlags) {
+			debouncer.offer(member, guild, wasFlags, nowFlags, receivedNanos);
+		}
+	}
+	
+	private void emitTransitions(Member member, Guild guild, int wasFlags, int nowFlags, long receivedNanos,
+								 boolean record, boolean announce) {
+		VoiceAction deafenAction = transition(wasFlags, nowFlags, VoiceStateTable.ANY_DEAFENED,
+				VoiceAction.DEAFENED, VoiceAction.UNDEAFENED);
+		VoiceAction muteAction = transition(wasFlags, nowFlags, VoiceStateTable.ANY_MUTED,
+				VoiceAction.MUTED, VoiceAction.UNMUTED);
 		
-		muteCache.put(userId, nowMuted);
-		deafenCache.put(userId, nowDeafened);
+		if (deafenAction == VoiceAction.DEAFENED && muteAction == VoiceAction.MUTED) {
+			emit(member, guild, VoiceAction.DEAFENED_AND_MUTED, receivedNanos, record, announce);
+		} else if (deafenAction == VoiceAction.UNDEAFENED && muteAction == VoiceAction.UNMUTED) {
+			emit(member, guild, VoiceAction.UNDEAFENED_AND_UNMUTED, receivedNanos, record, announce);
+		} else {
+			// Opposite directions in one update only happen with moderator actions; report both.
+			if (deafenAction != null) emit(member, guild, deafenAction, receivedNanos, record, announce);
+			if (muteAction != null) emit(member, guild, muteAction, receivedNanos, record, announce);
+		}
+	}
+	
+	/**
+	 * @return {@code on} or {@code off} if any flag in {@code mask} went from all clear to set or back, else {@code null}
+	 */
+	private static VoiceAction transition(int wasFlags, int nowFlags, int mask, VoiceAction on, VoiceAction off) {
+		boolean was = VoiceStateTable.isSet(wasFlags, mask);
+		boolean now = VoiceStateTable.isSet(nowFlags, mask);
+		return was == now ? null : now ? on : off;
+	}
+	
+	private void emit(Member member, Guild guild, VoiceAction action, long receivedNanos, boolean record,
+					  boolean announce) {
+		VoiceStateChange stateChange = VoiceStateChange.of(member, action, receivedNanos);
+		if (record) {
+			recordHistory(stateChange);
+		}
+		if (announce && passesFilters(stateChange)) {
+			processStateChange(stateChange, guild);
+		}
+	}
+	
+	/**
+	 * Joining and leaving voice fire no mute or deafen event, so mute/deafen time is opened and closed here.
+	 * The joined member's flags become the baseline for their next update, but nothing is announced:
+	 * a member joining already muted did not just mute.
+	 *
+	 * @param responseNumber the gateway update the join arrived in, whose flag events are part of the join
+	 */
+	public void handleVoiceJoin(Member member, GuildVoiceState newState, Guild guild, long responseNumber) {
+		updateAssembler.complete(member, guild, responseNumber);
+		if (!shouldIgnoreUpdate(member, newState, guild)) {
+			int flags = VoiceStateTable.flagsOf(newState);
+			voiceStateTable.swap(guild.getIdLong(), member.getIdLong(), flags);
+			voiceTimeAggregator.record(guild.getIdLong(), member.getIdLong(), flags);
+		}
+	}
+	
+	/**
+	 * Flags recorded before leaving would be stale by the next join, so the member is dropped from the table.
+	 */
+	public void handleVoiceLeave(Member member, Guild guild, long responseNumber) {
+		updateAssembler.complete(member, guild, responseNumber);
+		voiceStateTable.remove(guild.getIdLong(), member.getIdLong());
+		voiceTimeAggregator.record(guild.getIdLong(), member.getIdLong(), 0);
 	}
 	
-	private boolean shouldIgnoreUpdate(Member member, GuildVoiceState newState) {
+	private boolean shouldIgnoreUpdate(Member member, GuildVoiceState newState, Guild guild) {
 		if (newState == null) {
 			log.debug("Ignoring update for {}: newState is null", member.getEffectiveName());
 			return true;
 		}
 		
-		if (member.getUser().isBot() && !botProperties.getAnnouncements().isIncludeBots()) {
+		if (member.getUser().isBot() && !guildSettingsStore.forGuild(guild.getIdLong()).includeBots()) {
 			log.debug("Ignoring bot update for {}", member.getEffectiveName());
 			return true;
 		}
@@ -70,12 +182,23 @@ public class VoiceStateService {
 		return false;
 	}
 	
+	/**
+	 * History keeps every transition, including those the cooldown keeps from being announced.
+	 */
+	private void recordHistory(VoiceStateChange stateChange) {
+		voiceHistoryIndex.record(stateChange.getGuildIdLong(), stateChange.getUserId(), stateChange.action(),
+				stateChange.timestamp().toEpochMilli());
+	}
+	
 	private boolean passesFilters(VoiceStateChange stateChange) {
-		boolean passes = cooldownService.checkAndUpdate(stateChange.getUserId());
+		long start = System.nanoTime();
+		boolean passes = cooldownService.checkAndUpdate(stateChange.getGuildIdLong(), stateChange.getUserId());
+		botMetrics.recordLatency(LatencyStage.COOLDOWN_CHECK, System.nanoTime() - start);
 		
 		if (!passes) {
 			log.debug("State change filtered out for {}: {} (cooldown/rate limit)",
 					stateChange.getUserName(), stateChange.action());
+			eventLogWriter.append(stateChange, AnnouncementOutcome.FILTERED);
 		}
 		
 		return passes;
@@ -88,25 +211,7 @@ public class VoiceStateService {
 				guild.getName());
 		
 		botMetrics.incrementVoiceStateChanges(stateChange.action());
-		
-		try {
-			AnnouncementResult result = announcementService.processAnnouncement(stateChange, guild);
-			
-			switch (result) {
-				case AnnouncementResult.Success success ->
-						log.debug("Successfully processed announcement for {} to {}",
-								stateChange.getUserName(), success.channelName());
-				
-				case AnnouncementResult.Failure failure ->
-						log.debug("Announcement not sent for {}: {}",
-								stateChange.getUserName(), failure.errorMessage());
-			}
-			
-		} catch (Exception e) {
-			log.error("Error processing announcement for {}: {}",
-					stateChange.getUserName(), e.getMessage(), e);
-			botMetrics.incrementErrors();
-		}
+		announcementPipeline.submit(stateChange, guild);
 	}
 	
 	public VoiceStateStats getStats() {
@@ -115,7 +220,9 @@ public class VoiceStateService {
 				botMetrics.getVoiceStateChanges(VoiceAction.MUTED),
 				botMetrics.getVoiceStateChanges(VoiceAction.UNMUTED),
 				botMetrics.getVoiceStateChanges(VoiceAction.DEAFENED),
-				botMetrics.getVoiceStateChanges(VoiceAction.UNDEAFENED)
+				botMetrics.getVoiceStateChanges(VoiceAction.UNDEAFENED),
+				botMetrics.getVoiceStateChanges(VoiceAction.DEAFENED_AND_MUTED),
+				botMetrics.getVoiceStateChanges(VoiceAction.UNDEAFENED_AND_UNMUTED)
 		);
 	}
 	
@@ -124,6 +231,8 @@ public class VoiceStateService {
 			long muteCount,
 			long unmuteCount,
 			long deafenCount,
-			long undeafenCount
+			long undeafenCount,
+			long deafenMuteCount,
+			long undeafenUnmuteCount
 	) {}
 }
@@ -0,0 +1,119 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts the flag events JDA fires for one gateway voice state update back together into that update.
+ * <p>
+ * JDA applies a VOICE_STATE_UPDATE one flag at a time: it sets self mute and fires its event, then sets self deafen
+ * and fires that one, and so on for the server flags. Each event only sees the flags changed before it, so diffing
+ * per event splits a deafen-and-mute into a mute and a deafen. All events of one update carry its response number;
+ * per member, the flags before the first and after the last of them are held until the update is complete. That is
+ * when the member's next update arrives, when the update turns out to be a join or leave, or one tick after its
+ * last event, since JDA dispatches an update's events back to back.
+ */
+@Component
+public class VoiceUpdateAssembler implements AutoCloseable {
+	
+	private static final long TICK_MILLIS = 10;
+	
+	@FunctionalInterface
+	interface UpdateHandler {
+		void update(Member member, Guild guild, int wasFlags, int nowFlags, long receivedNanos);
+	}
+	
+	private record MemberKey(long guildId, long userId) {}
+	
+	/**
+	 * @param receivedNanos arrival of the update's first event
+	 */
+	private record OpenUpdate(Member member, Guild guild, long responseNumber, int baseFlags, int latestFlags,
+							  long receivedNanos, long sequence) {}
+	
+	private final Map<MemberKey, OpenUpdate> open = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final HashedTimingWheel wheel;
+	private volatile UpdateHandler handler;
+	
+	public VoiceUpdateAssembler(BotMetrics botMetrics) {
+		this.wheel = new HashedTimingWheel("voice-update", TICK_MILLIS, TimeUnit.MILLISECONDS, 64, this::expire);
+		botMetrics.registerTimingWheel(wheel);
+	}
+	
+	void setUpdateHandler(UpdateHandler handler) {
+		this.handler = handler;
+	}
+	
+	/**
+	 * Adds one flag event to the member's open update, completing their previous update if it is a new one.
+	 */
+	void offer(Member member, Guild guild, long responseNumber, int wasFlags, int nowFlags, long receivedNanos) {
+		long seq = sequence.incrementAndGet();
+		MemberKey key = new MemberKey(guild.getIdLong(), member.getIdLong());
+		
+		OpenUpdate[] completed = new OpenUpdate[1];
+		open.compute(key, (k, current) -> {
+			if (current != null && current.responseNumber() == responseNumber) {
+				return new OpenUpdate(member, guild, responseNumber, current.baseFlags(), nowFlags,
+						current.receivedNanos(), seq);
+			}
+			completed[0] = current;
+			return new OpenUpdate(member, guild, responseNumber, wasFlags, nowFlags, receivedNanos, seq);
+		});
+		
+		if (completed[0] != null) {
+			handOn(completed[0]);
+		}
+		wheel.schedule(key.guildId(), key.userId(), seq, TICK_MILLIS);
+	}
+	
+	/**
+	 * Completes the member's open update ahead of a join or leave. Flag events from the join or leave itself,
+	 * which share its response number, describe the member arriving or going and are dropped.
+	 */
+	void complete(Member member, Guild guild, long responseNumber) {
+		OpenUpdate current = open.remove(new MemberKey(guild.getIdLong(), member.getIdLong()));
+		if (current != null && current.responseNumber() != responseNumber) {
+			handOn(current);
+		}
+	}
+	
+	/**
+	 * Runs on the wheel thread; a timeout that finds a newer sequence was overtaken by a later event.
+	 */
+	private void expire(long guildId, long userId, long seq) {
+		OpenUpdate[] settled = new OpenUpdate[1];
+		open.computeIfPresent(new MemberKey(guildId, userId), (key, current) -> {
+			if (current.sequence() != seq) {
+				return current;
+			}
+			settled[0] = current;
+			return null;
+		});
+		
+		if (settled[0] != null) {
+			handOn(settled[0]);
+		}
+	}
+	
+	private void handOn(OpenUpdate update) {
+		handler.update(update.member(), update.guild(), update.baseFlags(), update.latestFlags(),
+				update.receivedNanos());
+	}
+	
+	@Override
+	@PreDestroy
+	public void close() {
+		wheel.close();
+	}
+}
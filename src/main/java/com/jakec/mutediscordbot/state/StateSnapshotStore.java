@@ -0,0 +1,243 @@
+package com.jakec.mutediscordbot.state;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.service.CooldownService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoints the {@link VoiceStateTable} and the cooldown buckets to a memory-mapped file, and restores
+ * them at startup so the first event after a restart is diffed against the member's real previous state
+ * and users stay on cooldown across deploys.
+ * <p>
+ * Layout (big-endian): a header of magic, format version, write time and the two entry counts; voice
+ * entries as {@code guildId, userId, flags (1 byte)}; cooldown entries as {@code key1, key2, bucket};
+ * and a trailing CRC32 of everything before it. A checkpoint is written to a temporary file and moved
+ * over the previous one, so a crash mid-write never leaves a torn snapshot behind.
+ * <p>
+ * Restored entries never overwrite state recorded by live events, and snapshots older than
+ * {@code max-age} are ignored entirely.
+ */
+@Component
+@Lazy(false) // restores state before the first event, and nothing else depends on it to create it
+@Slf4j
+public class StateSnapshotStore {
+	
+	private static final int MAGIC = 0x4D445653; // "MDVS"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES + Integer.BYTES * 2;
+	private static final int VOICE_ENTRY_BYTES = Long.BYTES * 2 + 1;
+	private static final int COOLDOWN_ENTRY_BYTES = Long.BYTES * 3;
+	
+	private final VoiceStateTable voiceStateTable;
+	private final CooldownService cooldownService;
+	private final BotProperties.Snapshot settings;
+	private final Path path;
+	private final ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> checkpoints;
+	
+	// Reused between checkpoints; only touched under the instance lock.
+	private long[] voiceEntries = new long[3 * 256];
+	private long[] cooldownEntries = new long[3 * 256];
+	private int voiceCount;
+	private int cooldownCount;
+	
+	public StateSnapshotStore(VoiceStateTable voiceStateTable, CooldownService cooldownService,
+							  BotProperties botProperties, BotExecutors botExecutors) {
+		this.voiceStateTable = voiceStateTable;
+		this.cooldownService = cooldownService;
+		this.settings = botProperties.getSnapshot();
+		this.path = Path.of(settings.getPath()).toAbsolutePath();
+		this.scheduler = botExecutors.getScheduler();
+	}
+	
+	@PostConstruct
+	public void start() {
+		if (!settings.isEnabled()) {
+			log.info("State snapshots disabled, voice states and cooldowns start empty");
+			return;
+		}
+		
+		load();
+		
+		long interval = settings.getCheckpointInterval().toMillis();
+		checkpoints = scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	private void load() {
+		if (!Files.exists(path)) {
+			log.info("No state snapshot at {}, starting cold", path);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES + Integer.BYTES) {
+				log.warn("Ignoring state snapshot {}: truncated ({} bytes)", path, size);
+				return;
+			}
+			
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int magic = buffer.getInt();
+			int version = buffer.getInt();
+			long writtenAt = buffer.getLong();
+			int voices = buffer.getInt();
+			int cooldowns = buffer.getInt();
+			
+			if (magic != MAGIC || version != VERSION) {
+				log.warn("Ignoring state snapshot {}: unsupported format (magic {}, version {})",
+						path, Integer.toHexString(magic), version);
+				return;
+			}
+			if (voices < 0 || cooldowns < 0
+						|| size != HEADER_BYTES + (long) voices * VOICE_ENTRY_BYTES
+										   + (long) cooldowns * COOLDOWN_ENTRY_BYTES + Integer.BYTES) {
+				log.warn("Ignoring state snapshot {}: entry counts do not match file size", path);
+				return;
+			}
+			if (crc(buffer, (int) size - Integer.BYTES) != buffer.getInt((int) size - Integer.BYTES)) {
+				log.warn("Ignoring state snapshot {}: checksum mismatch", path);
+				return;
+			}
+			
+			Duration age = Duration.ofMillis(System.currentTimeMillis() - writtenAt);
+			if (age.isNegative() || age.compareTo(settings.getMaxAge()) > 0) {
+				log.info("Ignoring state snapshot {}: written {} ago, older than {}", path, age, settings.getMaxAge());
+				return;
+			}
+			
+			int restoredVoices = 0;
+			for (int i = 0; i < voices; i++) {
+				if (voiceStateTable.restore(buffer.getLong(), buffer.getLong(), buffer.get())) {
+					restoredVoices++;
+				}
+			}
+			
+			int restoredCooldowns = 0;
+			for (int i = 0; i < cooldowns; i++) {
+				if (cooldownService.restoreBucket(buffer.getLong(), buffer.getLong(), buffer.getLong())) {
+					restoredCooldowns++;
+				}
+			}
+			
+			log.info("Restored {} voice states and {} cooldown buckets from snapshot written {} ago ({} ms)",
+					restoredVoices, restoredCooldowns, age, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			
+		} catch (IOException | RuntimeException e) {
+			log.warn("Failed to read state snapshot {}, starting cold: {}", path, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Writes the current voice states and cooldown buckets to the snapshot file.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		voiceCount = 0;
+		cooldownCount = 0;
+		voiceStateTable.forEach((guildId, userId, flags) -> {
+			voiceEntries = append(voiceEntries, voiceCount++, guildId, userId, flags);
+		});
+		cooldownService.forEachBucket((key1, key2, bucket) -> {
+			cooldownEntries = append(cooldownEntries, cooldownCount++, key1, key2, bucket);
+		});
+		
+		if (voiceCount == 0 && cooldownCount == 0 && !Files.exists(path)) {
+			return;
+		}
+		
+		int size = HEADER_BYTES + voiceCount * VOICE_ENTRY_BYTES + cooldownCount * COOLDOWN_ENTRY_BYTES + Integer.BYTES;
+		Path directory = path.getParent();
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC)
+					.putInt(VERSION)
+					.putLong(System.currentTimeMillis())
+					.putInt(voiceCount)
+					.putInt(cooldownCount);
+			
+			for (int i = 0; i < voiceCount * 3; i += 3) {
+				buffer.putLong(voiceEntries[i]).putLong(voiceEntries[i + 1]).put((byte) voiceEntries[i + 2]);
+			}
+			for (int i = 0; i < cooldownCount * 3; i += 3) {
+				buffer.putLong(cooldownEntries[i]).putLong(cooldownEntries[i + 1]).putLong(cooldownEntries[i + 2]);
+			}
+			
+			buffer.putInt(crc(buffer, size - Integer.BYTES));
+			buffer.force();
+		}
+		
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private void checkpointQuietly() {
+		try {
+			checkpoint();
+		} catch (IOException | RuntimeException e) {
+			log.warn("Failed to write state snapshot {}: {}", path, e.getMessage());
+		}
+	}
+	
+	private static long[] append(long[] entries, int index, long key1, long key2, long value) {
+		int offset = index * 3;
+		if (offset + 3 > entries.length) {
+			long[] grown = new long[entries.length << 1];
+			System.arraycopy(entries, 0, grown, 0, entries.length);
+			entries = grown;
+		}
+		entries[offset] = key1;
+		entries[offset + 1] = key2;
+		entries[offset + 2] = value;
+		return entries;
+	}
+	
+	private static int crc(ByteBuffer buffer, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().position(0).limit(length));
+		return (int) crc.getValue();
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (!settings.isEnabled()) {
+			return;
+		}
+		
+		checkpoints.cancel(false);
+		try {
+			checkpoint();
+			log.info("Wrote state snapshot: {} voice states, {} cooldown buckets", voiceCount, cooldownCount);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Failed to write final state snapshot {}: {}", path, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.jakec.mutediscordbot.state;
+
+import com.jakec.mutediscordbot.util.ConcurrentLongPairMap;
+import net.dv8tion.jda.api.entities.GuildVoiceState;
+import org.springframework.stereotype.Component;
+
+/**
+ * Last known voice flags per (guild, user), bit-packed into a primitive concurrent table.
+ */
+@Component
+public class VoiceStateTable {
+	
+	public static final int SELF_MUTED = 1;
+	public static final int SELF_DEAFENED = 1 << 1;
+	public static final int GUILD_MUTED = 1 << 2;
+	public static final int GUILD_DEAFENED = 1 << 3;
+	
+	/** Muted or deafened by either the member or a moderator; what announcements are about. */
+	public static final int ANY_MUTED = SELF_MUTED | GUILD_MUTED;
+	public static final int ANY_DEAFENED = SELF_DEAFENED | GUILD_DEAFENED;
+	
+	/** Returned when no state has been recorded for the (guild, user) pair. */
+	public static final int UNKNOWN = -1;
+	
+	private static final int EXPECTED_USERS = 4096;
+	
+	private final ConcurrentLongPairMap states =
+			new ConcurrentLongPairMap(EXPECTED_USERS, Runtime.getRuntime().availableProcessors() * 4);
+	
+	public static int flagsOf(GuildVoiceState voiceState) {
+		int flags = 0;
+		if (voiceState.isSelfMuted()) flags |= SELF_MUTED;
+		if (voiceState.isSelfDeafened()) flags |= SELF_DEAFENED;
+		if (voiceState.isGuildMuted()) flags |= GUILD_MUTED;
+		if (voiceState.isGuildDeafened()) flags |= GUILD_DEAFENED;
+		return flags;
+	}
+	
+	public static boolean isSet(int flags, int flag) {
+		return flags != UNKNOWN && (flags & flag) != 0;
+	}
+	
+	public int get(long guildId, long userId) {
+		long flags = states.get(guildId, userId);
+		return flags == ConcurrentLongPairMap.NO_VALUE ? UNKNOWN : (int) flags;
+	}
+	
+	/**
+	 * Atomically records the new flags and returns the ones they replaced, so concurrent events
+	 * for the same member each observe a distinct previous state.
+	 *
+	 * @return the previous flags, or {@link #UNKNOWN} if this is the first state seen
+	 */
+	public int swap(long guildId, long userId, int flags) {
+		while (true) {
+			long previous = states.get(guildId, userId);
+			
+			if (previous == ConcurrentLongPairMap.NO_VALUE) {
+				previous = states.putIfAbsent(guildId, userId, flags);
+				if (previous == ConcurrentLongPairMap.NO_VALUE) {
+					return UNKNOWN;
+				}
+			}
+			
+			if (previous == flags || states.compareAndSet(guildId, userId, previous, flags)) {
+				return (int) previous;
+			}
+		}
+	}
+	
+	/**
+	 * Forgets the member's flags once they leave voice, so the table and its snapshots only hold members in voice.
+	 *
+	 * @return the removed flags, or {@link #UNKNOWN} if none were recorded
+	 */
+	public int remove(long guildId, long userId) {
+		while (true) {
+			long previous = states.get(guildId, userId);
+			if (previous == ConcurrentLongPairMap.NO_VALUE) {
+				return UNKNOWN;
+			}
+			if (states.remove(guildId, userId, previous)) {
+				return (int) previous;
+			}
+		}
+	}
+	
+	/**
+	 * Records flags restored from a snapshot unless a live event has already recorded newer ones.
+	 */
+	public boolean restore(long guildId, long userId, int flags) {
+		return states.putIfAbsent(guildId, userId, flags) == ConcurrentLongPairMap.NO_VALUE;
+	}
+	
+	public void forEach(ConcurrentLongPairMap.EntryConsumer consumer) {
+		states.forEach(consumer);
+	}
+	
+	public int size() {
+		return states.size();
+	}
+	
+	public long estimatedBytes() {
+		return states.estimatedBytes();
+	}
+}
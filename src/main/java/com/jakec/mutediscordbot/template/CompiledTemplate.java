@@ -0,0 +1,68 @@
+package com.jakec.mutediscordbot.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A message template parsed once into alternating literal segments and placeholders,
+ * so rendering is a single pass with no intermediate strings.
+ * Unknown {@code {tokens}} are kept as literal text, matching the old {@code String.replace} behaviour.
+ */
+public final class CompiledTemplate {
+	
+	private final String source;
+	private final String[] literals;
+	private final Placeholder[] placeholders;
+	
+	private CompiledTemplate(String source, List<String> literals, List<Placeholder> placeholders) {
+		this.source = source;
+		this.literals = literals.toArray(String[]::new);
+		this.placeholders = placeholders.toArray(Placeholder[]::new);
+	}
+	
+	public static CompiledTemplate compile(String source) {
+		Objects.requireNonNull(source, "Template cannot be null");
+		
+		List<String> literals = new ArrayList<>();
+		List<Placeholder> placeholders = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		
+		int i = 0;
+		while (i < source.length()) {
+			char c = source.charAt(i);
+			Placeholder placeholder = c == '{' ? Placeholder.match(source, i) : null;
+			
+			if (placeholder == null) {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			
+			literals.add(literal.toString());
+			placeholders.add(placeholder);
+			literal.setLength(0);
+			i += placeholder.getToken().length();
+		}
+		literals.add(literal.toString());
+		
+		return new CompiledTemplate(source, literals, placeholders);
+	}
+	
+	public <C> void renderTo(StringBuilder out, PlaceholderResolver<C> resolver, C context) {
+		for (int i = 0; i < placeholders.length; i++) {
+			out.append(literals[i]);
+			resolver.append(placeholders[i], context, out);
+		}
+		out.append(literals[placeholders.length]);
+	}
+	
+	public String source() {
+		return source;
+	}
+	
+	@Override
+	public String toString() {
+		return source;
+	}
+}
@@ -0,0 +1,28 @@
+package com.jakec.mutediscordbot.template;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum Placeholder {
+	USER("{user}"),
+	ACTION("{action}"),
+	EMOJI("{emoji}"),
+	TIME("{time}"),
+	CHANNEL("{channel}"),
+	GUILD("{guild}");
+	
+	private static final Placeholder[] VALUES = values();
+	
+	private final String token;
+	
+	static Placeholder match(String source, int start) {
+		for (Placeholder placeholder : VALUES) {
+			if (source.startsWith(placeholder.token, start)) {
+				return placeholder;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,11 @@
+package com.jakec.mutediscordbot.template;
+
+/**
+ * Appends the value of a single placeholder for the given render context.
+ * Only invoked for placeholders that actually occur in the template being rendered.
+ */
+@FunctionalInterface
+public interface PlaceholderResolver<C> {
+	
+	void append(Placeholder placeholder, C context, StringBuilder out);
+}
@@ -0,0 +1,332 @@
+package com.jakec.mutediscordbot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent open-addressing hash map from a pair of {@code long} keys to a {@code long} value,
+ * with no boxing and no per-entry objects.
+ * <p>
+ * Reads and value transitions are lock-free: {@link #compareAndSet} is a single CAS on the value slot.
+ * Inserts and resizes take a per-segment lock. During a resize every old slot is swapped to a
+ * forwarding marker, so a CAS racing the copy fails and is retried against the new table rather than lost.
+ * <p>
+ * Three values are reserved and cannot be stored: {@link #NO_VALUE}, {@code NO_VALUE + 1} and {@code NO_VALUE + 2}.
+ */
+public final class ConcurrentLongPairMap {
+	
+	public static final long NO_VALUE = Long.MIN_VALUE;
+	
+	// Slot values are stored with the sign bit flipped so a freshly allocated (zeroed) array reads as empty.
+	private static final long EMPTY = 0L;
+	private static final long MOVED = 1L;
+	private static final long REMOVED = 2L;
+	
+	private static final int MAX_SEGMENTS = 256;
+	private static final int MIN_SEGMENT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	
+	private final Segment[] segments;
+	private final int segmentMask;
+	
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long key1, long key2, long value);
+	}
+	
+	public ConcurrentLongPairMap(int expectedSize, int concurrency) {
+		int segmentCount = tableSizeFor(Math.min(Math.max(1, concurrency), MAX_SEGMENTS));
+		int perSegment = Math.max(MIN_SEGMENT_CAPACITY, tableSizeFor((int) (expectedSize / LOAD_FACTOR / segmentCount) + 1));
+		
+		this.segments = new Segment[segmentCount];
+		this.segmentMask = segmentCount - 1;
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(perSegment);
+		}
+	}
+	
+	public long get(long key1, long key2) {
+		int hash = hash(key1, key2);
+		Segment segment = segmentFor(hash);
+		
+		while (true) {
+			Table table = segment.table;
+			int slot = table.find(key1, key2, hash);
+			if (slot == Table.RETRY) {
+				Thread.onSpinWait();
+				continue;
+			}
+			if (slot == Table.ABSENT) {
+				return NO_VALUE;
+			}
+			
+			long stored = table.values.get(slot);
+			if (stored == MOVED) {
+				Thread.onSpinWait();
+				continue;
+			}
+			return stored == REMOVED ? NO_VALUE : decode(stored);
+		}
+	}
+	
+	/**
+	 * Atomically replaces the value for the key pair if it currently equals {@code expected}.
+	 *
+	 * @return {@code false} if the key is absent or holds a different value
+	 */
+	public boolean compareAndSet(long key1, long key2, long expected, long update) {
+		checkValue(update);
+		int hash = hash(key1, key2);
+		Segment segment = segmentFor(hash);
+		
+		while (true) {
+			Table table = segment.table;
+			int slot = table.find(key1, key2, hash);
+			if (slot == Table.RETRY) {
+				Thread.onSpinWait();
+				continue;
+			}
+			if (slot == Table.ABSENT) {
+				return false;
+			}
+			
+			if (table.values.compareAndSet(slot, encode(expected), encode(update))) {
+				return true;
+			}
+			if (table.values.get(slot) != MOVED) {
+				return false;
+			}
+			Thread.onSpinWait();
+		}
+	}
+	
+	/**
+	 * Inserts the value if the key pair is absent.
+	 *
+	 * @return the existing value, or {@link #NO_VALUE} if this call inserted it
+	 */
+	public long putIfAbsent(long key1, long key2, long value) {
+		checkValue(value);
+		long existing = get(key1, key2);
+		if (existing != NO_VALUE) {
+			return existing;
+		}
+		
+		int hash = hash(key1, key2);
+		Segment segment = segmentFor(hash);
+		synchronized (segment) {
+			Table table = segment.table;
+			int slot = table.find(key1, key2, hash);
+			if (slot >= 0) {
+				long stored = table.values.get(slot);
+				if (stored != REMOVED) {
+					return decode(stored);
+				}
+			}
+			
+			if (segment.used + 1 > table.threshold) {
+				table = segment.rehash();
+			}
+			table.insert(key1, key2, hash, encode(value));
+			segment.used++;
+			segment.size.incrementAndGet();
+			return NO_VALUE;
+		}
+	}
+	
+	/**
+	 * Removes the key pair only if it still maps to {@code expected}.
+	 */
+	public boolean remove(long key1, long key2, long expected) {
+		int hash = hash(key1, key2);
+		Segment segment = segmentFor(hash);
+		
+		while (true) {
+			Table table = segment.table;
+			int slot = table.find(key1, key2, hash);
+			if (slot == Table.RETRY) {
+				Thread.onSpinWait();
+				continue;
+			}
+			if (slot == Table.ABSENT) {
+				return false;
+			}
+			
+			if (table.values.compareAndSet(slot, encode(expected), REMOVED)) {
+				segment.size.decrementAndGet();
+				return true;
+			}
+			if (table.values.get(slot) != MOVED) {
+				return false;
+			}
+			Thread.onSpinWait();
+		}
+	}
+	
+	/**
+	 * Visits every live entry. Each segment is locked while it is walked, so entries are never
+	 * reported twice, but values may change concurrently.
+	 */
+	public void forEach(EntryConsumer consumer) {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.table.forEach(consumer);
+			}
+		}
+	}
+	
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size.get();
+		}
+		return size;
+	}
+	
+	public long capacity() {
+		long capacity = 0;
+		for (Segment segment : segments) {
+			capacity += segment.table.capacity();
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Approximate heap footprint of the slot arrays: two keys and one value per slot.
+	 */
+	public long estimatedBytes() {
+		return capacity() * 3 * Long.BYTES;
+	}
+	
+	private Segment segmentFor(int hash) {
+		return segments[(hash >>> 24) & segmentMask];
+	}
+	
+	private static int hash(long key1, long key2) {
+		long h = key1 * 0x9E3779B97F4A7C15L + key2;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+	
+	private static long encode(long value) {
+		return value ^ Long.MIN_VALUE;
+	}
+	
+	private static long decode(long stored) {
+		return stored ^ Long.MIN_VALUE;
+	}
+	
+	private static void checkValue(long value) {
+		long stored = encode(value);
+		if (stored == EMPTY || stored == MOVED || stored == REMOVED) {
+			throw new IllegalArgumentException("Reserved value cannot be stored: " + value);
+		}
+	}
+	
+	private static int tableSizeFor(int capacity) {
+		return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+	}
+	
+	private static final class Segment {
+		
+		private final AtomicInteger size = new AtomicInteger();
+		private volatile Table table;
+		private int used; // live entries plus tombstones, guarded by this
+		
+		Segment(int capacity) {
+			this.table = new Table(capacity);
+		}
+		
+		/**
+		 * Copies live entries into a fresh table, dropping tombstones and growing if needed. Caller holds the lock.
+		 */
+		Table rehash() {
+			Table old = table;
+			int live = size.get();
+			int capacity = Math.max(MIN_SEGMENT_CAPACITY, tableSizeFor((int) ((live + 1) / LOAD_FACTOR) * 2));
+			Table fresh = new Table(capacity);
+			
+			int copied = 0;
+			for (int slot = 0; slot < old.capacity(); slot++) {
+				long stored = old.values.getAndSet(slot, MOVED);
+				if (stored != EMPTY && stored != REMOVED) {
+					long key1 = old.keys[slot << 1];
+					long key2 = old.keys[(slot << 1) + 1];
+					fresh.insert(key1, key2, hash(key1, key2), stored);
+					copied++;
+				}
+			}
+			
+			used = copied;
+			table = fresh;
+			return fresh;
+		}
+	}
+	
+	private static final class Table {
+		
+		static final int ABSENT = -1;
+		static final int RETRY = -2;
+		
+		final long[] keys;
+		final AtomicLongArray values;
+		final int mask;
+		final int threshold;
+		
+		Table(int capacity) {
+			this.keys = new long[capacity << 1];
+			this.values = new AtomicLongArray(capacity);
+			this.mask = capacity - 1;
+			this.threshold = (int) (capacity * LOAD_FACTOR);
+		}
+		
+		int capacity() {
+			return mask + 1;
+		}
+		
+		/**
+		 * Linear probe for the key pair. Keys are written before the slot's value is published,
+		 * so a non-empty value read guarantees the keys are visible.
+		 */
+		int find(long key1, long key2, int hash) {
+			int slot = hash & mask;
+			for (int probes = 0; probes <= mask; probes++) {
+				long stored = values.get(slot);
+				if (stored == EMPTY) {
+					return ABSENT;
+				}
+				if (stored == MOVED) {
+					return RETRY;
+				}
+				if (stored != REMOVED && keys[slot << 1] == key1 && keys[(slot << 1) + 1] == key2) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return ABSENT;
+		}
+		
+		void insert(long key1, long key2, int hash, long stored) {
+			int slot = hash & mask;
+			while (values.get(slot) != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot << 1] = key1;
+			keys[(slot << 1) + 1] = key2;
+			values.set(slot, stored);
+		}
+		
+		void forEach(EntryConsumer consumer) {
+			for (int slot = 0; slot <= mask; slot++) {
+				long stored = values.get(slot);
+				if (stored != EMPTY && stored != MOVED && stored != REMOVED) {
+					consumer.accept(keys[slot << 1], keys[(slot << 1) + 1], decode(stored));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package com.jakec.mutediscordbot.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for primitive {@code (key1, key2, value)} timeouts, in the same shape as
+ * {@link ConcurrentLongPairMap} entries.
+ * <p>
+ * Scheduling is O(1): the entry is appended to the slot for its deadline tick. A single worker thread
+ * advances one slot per tick and hands every entry whose deadline has passed to the expiry handler;
+ * entries more than one rotation away simply stay in their slot until their round comes up.
+ * Entries are packed into per-slot {@code long[]} arrays, so scheduling allocates nothing in steady state.
+ * <p>
+ * Timeouts cannot be cancelled. Handlers are expected to check whether the entry is still current,
+ * e.g. with {@link ConcurrentLongPairMap#remove(long, long, long)}, and ignore stale ones.
+ * The handler runs on the wheel thread and must be cheap.
+ * <p>
+ * The worker thread starts with the first {@link #schedule}, so a wheel whose feature never uses it costs no thread.
+ */
+@Slf4j
+public final class HashedTimingWheel implements AutoCloseable {
+	
+	private static final int ENTRY_WIDTH = 4; // key1, key2, value, deadline tick
+	private static final int INITIAL_SLOT_ENTRIES = 4;
+	private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
+	private final String name;
+	private final ConcurrentLongPairMap.EntryConsumer handler;
+	private final long tickNanos;
+	private final Slot[] wheel;
+	private final int mask;
+	private final long startNanos;
+	private volatile Thread worker;
+	
+	private final AtomicInteger pending = new AtomicInteger();
+	private final LongAdder expired = new LongAdder();
+	private volatile long currentTick;
+	private volatile long tickLagMillis;
+	private volatile long expirationsPerSecond;
+	private volatile boolean running = true;
+	
+	// Worker-owned scratch space for entries collected under a slot lock and expired after releasing it.
+	private long[] expiring = new long[ENTRY_WIDTH * 64];
+	
+	public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int slots,
+							 ConcurrentLongPairMap.EntryConsumer handler) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive");
+		}
+		
+		int size = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+		this.name = name;
+		this.handler = handler;
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Slot[size];
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Slot();
+		}
+		
+		this.startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Schedules {@code handler.accept(key1, key2, value)} after at least {@code delayMillis}, rounded up to the next tick.
+	 */
+	public void schedule(long key1, long key2, long value, long delayMillis) {
+		if (worker == null) {
+			start();
+		}
+		
+		long elapsed = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+		long deadlineTick = Math.max(currentTick + 1, (elapsed + tickNanos - 1) / tickNanos);
+		
+		// The worker publishes a tick before draining its slot. If it reached the deadline since it was computed,
+		// the slot may already be drained and the entry would wait a full rotation, so move it to the next tick.
+		while (true) {
+			Slot slot = wheel[(int) (deadlineTick & mask)];
+			synchronized (slot) {
+				long current = currentTick;
+				if (deadlineTick > current) {
+					// Counted under the slot lock so the worker can never drain it before it is counted.
+					pending.incrementAndGet();
+					slot.add(key1, key2, value, deadlineTick);
+					break;
+				}
+				deadlineTick = current + 1;
+			}
+		}
+	}
+	
+	private synchronized void start() {
+		if (worker != null || !running) {
+			return;
+		}
+		// Skip the ticks that passed while the wheel was idle instead of replaying them.
+		currentTick = (System.nanoTime() - startNanos) / tickNanos;
+		worker = Thread.ofPlatform()
+						 .name("timing-wheel-" + name)
+						 .daemon(true)
+						 .start(this::run);
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	public int pending() {
+		return pending.get();
+	}
+	
+	public long expiredCount() {
+		return expired.sum();
+	}
+	
+	public long expirationsPerSecond() {
+		return expirationsPerSecond;
+	}
+	
+	/**
+	 * How late the most recent tick started relative to its scheduled time.
+	 */
+	public long tickLagMillis() {
+		return tickLagMillis;
+	}
+	
+	@Override
+	public void close() {
+		Thread worker;
+		synchronized (this) {
+			running = false;
+			worker = this.worker;
+		}
+		if (worker == null) {
+			return;
+		}
+		worker.interrupt();
+		try {
+			worker.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void run() {
+		long windowStart = System.nanoTime();
+		long windowExpired = 0;
+		
+		while (running) {
+			long tick = currentTick + 1;
+			long tickStart = startNanos + tick * tickNanos;
+			
+			long now;
+			while ((now = System.nanoTime()) < tickStart) {
+				LockSupport.parkNanos(this, tickStart - now);
+				if (!running) {
+					return;
+				}
+			}
+			
+			tickLagMillis = TimeUnit.NANOSECONDS.toMillis(now - tickStart);
+			currentTick = tick;
+			windowExpired += expire(wheel[(int) (tick & mask)], tick);
+			
+			if (now - windowStart >= RATE_WINDOW_NANOS) {
+				expirationsPerSecond = windowExpired * RATE_WINDOW_NANOS / (now - windowStart);
+				windowStart = now;
+				windowExpired = 0;
+			}
+		}
+	}
+	
+	private int expire(Slot slot, long tick) {
+		int count;
+		synchronized (slot) {
+			if (slot.count == 0) {
+				return 0;
+			}
+			if (expiring.length < slot.count * ENTRY_WIDTH) {
+				expiring = new long[slot.count * ENTRY_WIDTH];
+			}
+			count = slot.drainExpired(tick, expiring);
+		}
+		// Settle the counters before the handlers run, so anything a handler wakes up sees them current.
+		pending.addAndGet(-count);
+		expired.add(count);
+		
+		for (int i = 0; i < count; i++) {
+			int offset = i * ENTRY_WIDTH;
+			try {
+				handler.accept(expiring[offset], expiring[offset + 1], expiring[offset + 2]);
+			} catch (RuntimeException e) {
+				log.error("Timing wheel '{}' expiry handler failed: {}", name, e.getMessage(), e);
+			}
+		}
+		return count;
+	}
+	
+	private static final class Slot {
+		
+		private long[] entries = new long[INITIAL_SLOT_ENTRIES * ENTRY_WIDTH];
+		private int count;
+		
+		void add(long key1, long key2, long value, long deadlineTick) {
+			int offset = count * ENTRY_WIDTH;
+			if (offset == entries.length) {
+				long[] grown = new long[entries.length << 1];
+				System.arraycopy(entries, 0, grown, 0, entries.length);
+				entries = grown;
+			}
+			entries[offset] = key1;
+			entries[offset + 1] = key2;
+			entries[offset + 2] = value;
+			entries[offset + 3] = deadlineTick;
+			count++;
+		}
+		
+		/**
+		 * Moves entries due at or before {@code tick} into {@code out} and compacts the rest in place.
+		 */
+		int drainExpired(long tick, long[] out) {
+			int drained = 0;
+			int kept = 0;
+			
+			for (int i = 0; i < count; i++) {
+				int offset = i * ENTRY_WIDTH;
+				if (entries[offset + 3] <= tick) {
+					System.arraycopy(entries, offset, out, drained++ * ENTRY_WIDTH, ENTRY_WIDTH);
+				} else {
+					if (kept != i) {
+						System.arraycopy(entries, offset, entries, kept * ENTRY_WIDTH, ENTRY_WIDTH);
+					}
+					kept++;
+				}
+			}
+			
+			count = kept;
+			// Let a slot that absorbed a burst shrink back once it empties out.
+			if (kept == 0 && entries.length > INITIAL_SLOT_ENTRIES * ENTRY_WIDTH * 16) {
+				entries = new long[INITIAL_SLOT_ENTRIES * ENTRY_WIDTH];
+			}
+			return drained;
+		}
+	}
+}
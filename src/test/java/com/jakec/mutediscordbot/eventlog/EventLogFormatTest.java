@@ -0,0 +1,141 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogFormatTest {
+	
+	private static final long CREATED_AT = 1_800_000_000_000L;
+	
+	@TempDir
+	Path directory;
+	
+	private static List<EventRecord> records(int count) {
+		List<EventRecord> records = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			records.add(new EventRecord(1_000L + i, 123_456_789_012_345_678L + i, CREATED_AT + i,
+					VoiceAction.values()[i % VoiceAction.values().length],
+					AnnouncementOutcome.values()[i % AnnouncementOutcome.values().length]));
+		}
+		return records;
+	}
+	
+	/**
+	 * Header and records exactly as the writer lays them out.
+	 */
+	static byte[] segmentBytes(short flags, long createdAt, List<EventRecord> records) {
+		ByteBuffer buffer = ByteBuffer.allocate(EventLogFormat.HEADER_BYTES + records.size() * EventLogFormat.RECORD_BYTES);
+		EventLogFormat.writeHeader(buffer, flags, createdAt);
+		CRC32C crc = new CRC32C();
+		records.forEach(record -> EventLogFormat.encode(buffer, record, crc));
+		return buffer.array();
+	}
+	
+	private static List<EventRecord> readAll(Path segment, long[] count) throws IOException {
+		List<EventRecord> read = new ArrayList<>();
+		count[0] = EventLogFormat.read(segment, read::add);
+		return read;
+	}
+	
+	@Test
+	void encodedRecordsDecodeToTheSameValues() {
+		ByteBuffer buffer = ByteBuffer.allocate(EventLogFormat.RECORD_BYTES * VoiceAction.values().length);
+		CRC32C crc = new CRC32C();
+		List<EventRecord> written = records(VoiceAction.values().length);
+		written.forEach(record -> EventLogFormat.encode(buffer, record, crc));
+		assertFalse(buffer.hasRemaining(), "records are fixed width");
+		
+		buffer.flip();
+		for (EventRecord record : written) {
+			assertEquals(record, EventLogFormat.decode(buffer, crc));
+		}
+		assertFalse(buffer.hasRemaining());
+	}
+	
+	@Test
+	void decodeRejectsAnyFlippedByte() {
+		CRC32C crc = new CRC32C();
+		EventRecord record = records(1).getFirst();
+		
+		for (int i = 0; i < EventLogFormat.RECORD_BYTES; i++) {
+			ByteBuffer buffer = ByteBuffer.allocate(EventLogFormat.RECORD_BYTES);
+			EventLogFormat.encode(buffer, record, crc);
+			buffer.put(i, (byte) (buffer.get(i) ^ 0x10));
+			
+			assertNull(EventLogFormat.decode(buffer.flip(), crc), "byte " + i + " corrupted");
+		}
+	}
+	
+	@Test
+	void readStopsAtATruncatedRecord() throws IOException {
+		List<EventRecord> written = records(3);
+		byte[] full = segmentBytes((short) 0, CREATED_AT, written);
+		Path segment = Files.write(directory.resolve(EventLogFormat.segmentName(CREATED_AT)),
+				Arrays.copyOf(full, full.length - EventLogFormat.RECORD_BYTES / 2));
+		
+		long[] count = new long[1];
+		assertEquals(written.subList(0, 2), readAll(segment, count));
+		assertEquals(2, count[0]);
+		assertEquals(2, EventLogFormat.recordSlots(Files.size(segment)));
+	}
+	
+	@Test
+	void readStopsAtACorruptedRecord() throws IOException {
+		List<EventRecord> written = records(4);
+		byte[] bytes = segmentBytes((short) 0, CREATED_AT, written);
+		bytes[EventLogFormat.HEADER_BYTES + EventLogFormat.RECORD_BYTES + 3] ^= 0x01;
+		Path segment = Files.write(directory.resolve(EventLogFormat.segmentName(CREATED_AT)), bytes);
+		
+		long[] count = new long[1];
+		assertEquals(written.subList(0, 1), readAll(segment, count));
+		assertTrue(count[0] < EventLogFormat.recordSlots(Files.size(segment)), "damage is detectable from the count");
+	}
+	
+	@Test
+	void headerRoundTripsAndForeignFilesAreRejected() throws IOException {
+		Path segment = Files.write(directory.resolve(EventLogFormat.segmentName(CREATED_AT)),
+				segmentBytes(EventLogFormat.FLAG_COMPACTED, CREATED_AT, List.of()));
+		EventLogFormat.Header header = EventLogFormat.readHeader(segment);
+		assertEquals(CREATED_AT, header.createdAtMillis());
+		assertTrue(header.isCompacted());
+		
+		Path foreign = Files.write(directory.resolve("foreign.log"), new byte[EventLogFormat.HEADER_BYTES]);
+		assertThrows(IOException.class, () -> EventLogFormat.readHeader(foreign));
+		Path truncated = Files.write(directory.resolve("truncated.log"), new byte[EventLogFormat.HEADER_BYTES - 1]);
+		assertThrows(IOException.class, () -> EventLogFormat.readHeader(truncated));
+	}
+	
+	@Test
+	void segmentsAreNamedAndListedInCreationOrder() throws IOException {
+		// Zero padding keeps lexical order equal to numeric order across a change in digit count.
+		for (long createdAt : new long[]{10_000L, CREATED_AT, 999L}) {
+			Files.createFile(directory.resolve(EventLogFormat.segmentName(createdAt)));
+		}
+		Files.createFile(directory.resolve(EventLogFormat.segmentName(CREATED_AT) + ".tmp"));
+		Files.createFile(directory.resolve("events-latest.log"));
+		Files.createFile(directory.resolve("notes.txt"));
+		
+		List<Long> listed = EventLogFormat.listSegments(directory).stream().map(EventLogFormat::createdAt).toList();
+		assertEquals(List.of(999L, 10_000L, CREATED_AT), listed);
+		
+		Path single = directory.resolve(EventLogFormat.segmentName(999L));
+		assertEquals(List.of(single), EventLogFormat.listSegments(single));
+	}
+}
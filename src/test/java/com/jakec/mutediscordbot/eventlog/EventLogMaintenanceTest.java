@@ -0,0 +1,125 @@
+package com.jakec.mutediscordbot.eventlog;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.execution.BotExecutors;
+import com.jakec.mutediscordbot.model.AnnouncementOutcome;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventLogMaintenanceTest {
+	
+	private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+	
+	@TempDir
+	Path directory;
+	
+	private final EventLogWriter writer = mock(EventLogWriter.class);
+	private BotProperties.EventLog settings;
+	private EventLogMaintenance maintenance;
+	private long now;
+	
+	@BeforeEach
+	void setUp() {
+		BotProperties properties = new BotProperties();
+		settings = properties.getEventLog();
+		settings.setRetention(Duration.ofDays(30));
+		settings.setCompactAfter(Duration.ofDays(1));
+		settings.setCompactDiscard(EnumSet.of(AnnouncementOutcome.FILTERED, AnnouncementOutcome.SUPERSEDED));
+		settings.setMaxTotalSize(DataSize.ofMegabytes(1));
+		
+		when(writer.getDirectory()).thenReturn(directory);
+		maintenance = new EventLogMaintenance(properties, writer, mock(BotExecutors.class));
+		now = System.currentTimeMillis();
+	}
+	
+	private static List<EventRecord> mixedOutcomes(long timestampMillis) {
+		List<EventRecord> records = new ArrayList<>();
+		for (AnnouncementOutcome outcome : AnnouncementOutcome.values()) {
+			records.add(new EventRecord(1L, 2L, timestampMillis, VoiceAction.MUTED, outcome));
+		}
+		return records;
+	}
+	
+	private Path segment(long ageMillis, List<EventRecord> records) throws IOException {
+		long createdAt = now - ageMillis;
+		return Files.write(directory.resolve(EventLogFormat.segmentName(createdAt)),
+				EventLogFormatTest.segmentBytes((short) 0, createdAt, records));
+	}
+	
+	private static List<EventRecord> read(Path segment) throws IOException {
+		List<EventRecord> records = new ArrayList<>();
+		EventLogFormat.read(segment, records::add);
+		return records;
+	}
+	
+	@Test
+	void compactionKeepsOnlyRetainedOutcomesOnceAndFlagsTheSegment() throws IOException {
+		List<EventRecord> written = mixedOutcomes(now - 2 * DAY_MILLIS);
+		Path old = segment(2 * DAY_MILLIS, written);
+		Path recent = segment(DAY_MILLIS / 2, written);
+		
+		maintenance.run();
+		
+		List<EventRecord> kept = written.stream()
+				.filter(record -> !settings.getCompactDiscard().contains(record.outcome()))
+				.toList();
+		assertEquals(kept, read(old));
+		EventLogFormat.Header header = EventLogFormat.readHeader(old);
+		assertTrue(header.isCompacted());
+		assertEquals(now - 2 * DAY_MILLIS, header.createdAtMillis());
+		assertFalse(Files.exists(old.resolveSibling(old.getFileName() + ".tmp")));
+		
+		assertEquals(written, read(recent), "segments younger than compact-after are left alone");
+		assertFalse(EventLogFormat.readHeader(recent).isCompacted());
+		
+		byte[] compacted = Files.readAllBytes(old);
+		settings.setCompactDiscard(EnumSet.of(AnnouncementOutcome.SENT));
+		maintenance.run();
+		assertArrayEquals(compacted, Files.readAllBytes(old), "a segment is compacted only once");
+	}
+	
+	@Test
+	void retentionAndSizeLimitNeverTouchTheActiveSegment() throws IOException {
+		Path expired = segment(40 * DAY_MILLIS, mixedOutcomes(now));
+		Path oldest = segment(3 * DAY_MILLIS, mixedOutcomes(now));
+		Path newer = segment(2 * DAY_MILLIS, mixedOutcomes(now));
+		// Older than retention and compact-after, with discardable records: only being active keeps it as is.
+		Path active = segment(35 * DAY_MILLIS + 1, mixedOutcomes(now));
+		byte[] activeBytes = Files.readAllBytes(active);
+		when(writer.getActiveSegment()).thenReturn(active);
+		settings.setCompactDiscard(EnumSet.noneOf(AnnouncementOutcome.class));
+		settings.setMaxTotalSize(DataSize.ofBytes(Files.size(active) + Files.size(newer)));
+		
+		maintenance.run();
+		
+		assertFalse(Files.exists(expired), "closed segments past retention are deleted");
+		assertFalse(Files.exists(oldest), "the oldest closed segment goes first over the size limit");
+		assertTrue(Files.exists(newer));
+		assertArrayEquals(activeBytes, Files.readAllBytes(active));
+		
+		settings.setMaxTotalSize(DataSize.ofBytes(1));
+		settings.setCompactDiscard(EnumSet.of(AnnouncementOutcome.FILTERED));
+		maintenance.run();
+		
+		assertFalse(Files.exists(newer));
+		assertArrayEquals(activeBytes, Files.readAllBytes(active), "the active segment is never deleted or compacted");
+	}
+}
@@ -0,0 +1,187 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CooldownServiceTest {
+	
+	private static final long GUILD = 1_000L;
+	private static final long OTHER_GUILD = 2_000L;
+	private static final long USER = 10L;
+	private static final long OTHER_USER = 11L;
+	private static final long T0 = 1_800_000_000_000L;
+	
+	private final AtomicLong clock = new AtomicLong(T0);
+	private final List<CooldownService> services = new ArrayList<>();
+	private BotProperties properties;
+	private BotMetrics metrics;
+	
+	@BeforeEach
+	void setUp() {
+		properties = new BotProperties();
+		BotProperties.SpamPrevention limits = properties.getSpamPrevention();
+		limits.setCooldown(Duration.ofMillis(100));
+		limits.setMaxAnnouncementsPerMinute(60);
+		limits.setUserBurst(3);
+		limits.setGuildAnnouncementsPerMinute(0);
+		limits.setGlobalAnnouncementsPerMinute(0);
+		metrics = new BotMetrics(new SimpleMeterRegistry());
+	}
+	
+	@AfterEach
+	void tearDown() {
+		services.forEach(CooldownService::shutdown);
+	}
+	
+	private CooldownService service() {
+		CooldownService service = new CooldownService(properties, new GuildSettingsStore(properties), metrics, clock::get);
+		services.add(service);
+		return service;
+	}
+	
+	private void at(long offsetMillis) {
+		clock.set(T0 + offsetMillis);
+	}
+	
+	@Test
+	void cooldownBlocksUntilItHasFullyElapsed() {
+		CooldownService cooldowns = service();
+		
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		at(99);
+		assertTrue(cooldowns.isUserOnCooldown(GUILD, USER));
+		assertFalse(cooldowns.checkAndUpdate(GUILD, USER));
+		at(100);
+		assertFalse(cooldowns.isUserOnCooldown(GUILD, USER));
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		
+		assertEquals(1, metrics.getSnapshot().cooldownBlocks());
+		assertEquals(0, metrics.getSnapshot().rateLimits());
+	}
+	
+	@Test
+	void admitsTheBurstThenOneAnnouncementPerInterval() {
+		CooldownService cooldowns = service();
+		
+		// Burst of 3 at 60 per minute: the fourth has to wait until the first token has refilled at 1000ms.
+		for (long offset : new long[]{0, 100, 200}) {
+			at(offset);
+			assertTrue(cooldowns.checkAndUpdate(GUILD, USER), "admitted at " + offset);
+		}
+		at(300);
+		assertFalse(cooldowns.checkAndUpdate(GUILD, USER));
+		at(999);
+		assertFalse(cooldowns.checkAndUpdate(GUILD, USER));
+		at(1_000);
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		at(1_100);
+		assertFalse(cooldowns.checkAndUpdate(GUILD, USER));
+		
+		assertEquals(3, metrics.getSnapshot().rateLimits());
+		assertTrue(cooldowns.checkAndUpdate(GUILD, OTHER_USER), "users are limited separately");
+	}
+	
+	@Test
+	void guildLimitRefundsTheUserToken() {
+		BotProperties.SpamPrevention limits = properties.getSpamPrevention();
+		limits.setMaxAnnouncementsPerMinute(6);
+		limits.setUserBurst(1);
+		limits.setGuildAnnouncementsPerMinute(60);
+		limits.setGuildBurst(1);
+		CooldownService cooldowns = service();
+		
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		assertFalse(cooldowns.checkAndUpdate(GUILD, OTHER_USER));
+		assertFalse(cooldowns.isUserOnCooldown(GUILD, OTHER_USER), "refund clears the cooldown");
+		
+		// Without the refund the user's own bucket would hold them back for 10s.
+		at(1_000);
+		assertTrue(cooldowns.checkAndUpdate(GUILD, OTHER_USER));
+	}
+	
+	@Test
+	void globalLimitRefundsTheGuildAndUserTokens() {
+		BotProperties.SpamPrevention limits = properties.getSpamPrevention();
+		limits.setMaxAnnouncementsPerMinute(6);
+		limits.setUserBurst(1);
+		limits.setGuildAnnouncementsPerMinute(6);
+		limits.setGuildBurst(1);
+		limits.setGlobalAnnouncementsPerMinute(60);
+		limits.setGlobalBurst(1);
+		CooldownService cooldowns = service();
+		
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		assertFalse(cooldowns.checkAndUpdate(OTHER_GUILD, USER));
+		
+		at(1_000);
+		assertTrue(cooldowns.checkAndUpdate(OTHER_GUILD, USER));
+		at(2_000);
+		assertFalse(cooldowns.checkAndUpdate(OTHER_GUILD, OTHER_USER), "guild token was consumed at 1000ms");
+	}
+	
+	@Test
+	void restoredBucketKeepsLimitingUntilItHasRefilled() {
+		CooldownService before = service();
+		assertTrue(before.checkAndUpdate(GUILD, USER));
+		long bucket = bucketOf(before, GUILD, USER);
+		
+		at(50);
+		CooldownService restored = service();
+		assertTrue(restored.restoreBucket(GUILD, USER, bucket));
+		assertFalse(restored.restoreBucket(GUILD, USER, bucket), "a live bucket is not overwritten");
+		assertTrue(restored.isUserOnCooldown(GUILD, USER));
+		assertFalse(restored.checkAndUpdate(GUILD, USER));
+		
+		// One token at 60 per minute refills 1000ms after it was taken.
+		at(1_000);
+		assertFalse(service().restoreBucket(GUILD, USER, bucket));
+	}
+	
+	@Test
+	void bucketsAreRemovedOnceTheyHaveRefilled() throws InterruptedException {
+		properties.getSpamPrevention().setMaxAnnouncementsPerMinute(600);
+		CooldownService cooldowns = service();
+		assertTrue(cooldowns.checkAndUpdate(GUILD, USER));
+		long bucket = bucketOf(cooldowns, GUILD, USER);
+		
+		CooldownService restored = service();
+		assertTrue(restored.restoreBucket(GUILD, USER, bucket));
+		
+		// 100ms to refill, a 100ms wheel tick, and slack for a loaded machine, but far less than a wheel rotation.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while ((activeBuckets(cooldowns) > 0 || activeBuckets(restored) > 0) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, activeBuckets(cooldowns));
+		assertEquals(0, activeBuckets(restored));
+	}
+	
+	private static long bucketOf(CooldownService cooldowns, long guildId, long userId) {
+		AtomicLong found = new AtomicLong();
+		cooldowns.forEachBucket((key1, key2, value) -> {
+			if (key1 == guildId && key2 == userId) {
+				found.set(value);
+			}
+		});
+		return found.get();
+	}
+	
+	private static int activeBuckets(CooldownService cooldowns) {
+		return (int) cooldowns.getStats().get("activeBuckets");
+	}
+}
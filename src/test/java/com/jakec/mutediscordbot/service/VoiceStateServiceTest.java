@@ -0,0 +1,165 @@
+package com.jakec.mutediscordbot.service;
+
+import com.jakec.mutediscordbot.analytics.VoiceTimeAggregator;
+import com.jakec.mutediscordbot.config.BotProperties;
+import com.jakec.mutediscordbot.eventlog.EventLogWriter;
+import com.jakec.mutediscordbot.fixture.FakeGuild;
+import com.jakec.mutediscordbot.fixture.FakeMember;
+import com.jakec.mutediscordbot.guild.GuildSettingsStore;
+import com.jakec.mutediscordbot.history.VoiceHistoryIndex;
+import com.jakec.mutediscordbot.metrics.BotMetrics;
+import com.jakec.mutediscordbot.model.VoiceAction;
+import com.jakec.mutediscordbot.model.VoiceStateChange;
+import com.jakec.mutediscordbot.state.VoiceStateTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays voice updates the way JDA dispatches them: within one gateway update it sets self mute and fires its
+ * event, then sets self deafen and fires that one, all under the update's response number.
+ */
+class VoiceStateServiceTest {
+	
+	private static final long WAIT_MILLIS = 1_000;
+	private static final long QUIET_MILLIS = 150;
+	
+	private final AnnouncementPipeline pipeline = mock(AnnouncementPipeline.class);
+	private final VoiceHistoryIndex history = mock(VoiceHistoryIndex.class);
+	private final VoiceStateTable table = new VoiceStateTable();
+	private final FakeGuild guild = new FakeGuild(1L, "guild");
+	private final FakeMember member = new FakeMember(guild, 10L, "member", "General");
+	private VoiceFlapDebouncer debouncer;
+	private VoiceUpdateAssembler assembler;
+	private VoiceStateService service;
+	private long responseNumber;
+	
+	@BeforeEach
+	void setUp() {
+		BotProperties properties = new BotProperties();
+		properties.getVoiceDebounce().setEnabled(false);
+		BotMetrics metrics = new BotMetrics(new SimpleMeterRegistry());
+		
+		CooldownService cooldownService = mock(CooldownService.class);
+		when(cooldownService.checkAndUpdate(anyLong(), anyLong())).thenReturn(true);
+		
+		debouncer = new VoiceFlapDebouncer(properties, metrics);
+		assembler = new VoiceUpdateAssembler(metrics);
+		service = new VoiceStateService(pipeline, cooldownService, new GuildSettingsStore(properties), metrics, table,
+				mock(VoiceTimeAggregator.class), mock(EventLogWriter.class), history, debouncer, assembler);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		assembler.close();
+		debouncer.close();
+	}
+	
+	/**
+	 * One gateway update, fired as JDA does: each changed flag is set and its event fired before the next one.
+	 */
+	private long update(boolean selfMuted, boolean selfDeafened) {
+		long response = ++responseNumber;
+		if (member.isSelfMuted() != selfMuted) {
+			member.selfMuted(selfMuted);
+			flagEvent(response);
+		}
+		if (member.isSelfDeafened() != selfDeafened) {
+			member.selfDeafened(selfDeafened);
+			flagEvent(response);
+		}
+		return response;
+	}
+	
+	private void flagEvent(long response) {
+		service.handleVoiceFlagEvent(member.member(), member.voiceState(), guild.guild(), response, System.nanoTime());
+	}
+	
+	private void join(boolean selfMuted, boolean selfDeafened) {
+		long response = update(selfMuted, selfDeafened);
+		service.handleVoiceJoin(member.member(), member.voiceState(), guild.guild(), response);
+	}
+	
+	private void leave() {
+		service.handleVoiceLeave(member.member(), guild.guild(), ++responseNumber);
+	}
+	
+	private List<VoiceAction> announced(int expected) {
+		ArgumentCaptor<VoiceStateChange> changes = ArgumentCaptor.forClass(VoiceStateChange.class);
+		verify(pipeline, timeout(WAIT_MILLIS).times(expected)).submit(changes.capture(), any());
+		verify(pipeline, after(QUIET_MILLIS).times(expected)).submit(any(), any());
+		return changes.getAllValues().stream().map(VoiceStateChange::action).toList();
+	}
+	
+	private List<VoiceAction> recorded(int expected) {
+		ArgumentCaptor<VoiceAction> actions = ArgumentCaptor.forClass(VoiceAction.class);
+		verify(history, timeout(WAIT_MILLIS).times(expected)).record(anyLong(), anyLong(), actions.capture(), anyLong());
+		return actions.getAllValues();
+	}
+	
+	@Test
+	void deafeningWhileUnmutedIsOneCombinedChange() {
+		join(false, false);
+		
+		update(true, true);
+		
+		assertEquals(List.of(VoiceAction.DEAFENED_AND_MUTED), announced(1));
+		assertEquals(List.of(VoiceAction.DEAFENED_AND_MUTED), recorded(1));
+	}
+	
+	@Test
+	void undeafeningIsOneCombinedChange() {
+		join(true, true);
+		
+		update(false, false);
+		
+		assertEquals(List.of(VoiceAction.UNDEAFENED_AND_UNMUTED), announced(1));
+		assertEquals(List.of(VoiceAction.UNDEAFENED_AND_UNMUTED), recorded(1));
+	}
+	
+	@Test
+	void separateUpdatesStaySeparateAndInOrder() {
+		join(false, false);
+		
+		update(true, false);
+		update(true, true);
+		update(false, false);
+		
+		assertEquals(List.of(VoiceAction.MUTED, VoiceAction.DEAFENED, VoiceAction.UNDEAFENED_AND_UNMUTED),
+				announced(3));
+	}
+	
+	@Test
+	void flagsChangedByAJoinAreNotAnnounced() {
+		join(true, false);
+		
+		verify(pipeline, after(QUIET_MILLIS).never()).submit(any(), any());
+		assertEquals(VoiceStateTable.SELF_MUTED, table.get(guild.id(), member.userId()));
+	}
+	
+	@Test
+	void rejoiningUnmutedAfterLeavingMutedAnnouncesTheNextMute() {
+		join(true, false);
+		leave();
+		assertEquals(VoiceStateTable.UNKNOWN, table.get(guild.id(), member.userId()));
+		
+		join(false, false);
+		update(true, false);
+		
+		assertEquals(List.of(VoiceAction.MUTED), announced(1));
+	}
+}
@@ -0,0 +1,155 @@
+package com.jakec.mutediscordbot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.jakec.mutediscordbot.util.ConcurrentLongPairMap.NO_VALUE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentLongPairMapTest {
+	
+	private static final int THREADS = 8;
+	
+	@Test
+	void putIfAbsentKeepsTheExistingValue() {
+		ConcurrentLongPairMap map = new ConcurrentLongPairMap(16, 1);
+		
+		assertEquals(NO_VALUE, map.putIfAbsent(1, 2, 10));
+		assertEquals(10, map.putIfAbsent(1, 2, 20));
+		assertEquals(10, map.get(1, 2));
+		assertEquals(NO_VALUE, map.get(2, 1));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	void compareAndSetAndRemoveOnlyApplyToTheExpectedValue() {
+		ConcurrentLongPairMap map = new ConcurrentLongPairMap(16, 1);
+		map.putIfAbsent(1, 2, 10);
+		
+		assertFalse(map.compareAndSet(1, 2, 11, 12));
+		assertFalse(map.compareAndSet(3, 4, 10, 12));
+		assertTrue(map.compareAndSet(1, 2, 10, 12));
+		assertFalse(map.remove(1, 2, 10));
+		assertTrue(map.remove(1, 2, 12));
+		
+		assertEquals(NO_VALUE, map.get(1, 2));
+		assertEquals(0, map.size());
+		assertEquals(NO_VALUE, map.putIfAbsent(1, 2, 13));
+		assertEquals(13, map.get(1, 2));
+	}
+	
+	@Test
+	void rejectsReservedValues() {
+		ConcurrentLongPairMap map = new ConcurrentLongPairMap(16, 1);
+		
+		for (long reserved : new long[]{NO_VALUE, NO_VALUE + 1, NO_VALUE + 2}) {
+			assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(1, 1, reserved));
+		}
+		map.putIfAbsent(1, 1, 0);
+		assertThrows(IllegalArgumentException.class, () -> map.compareAndSet(1, 1, 0, NO_VALUE + 1));
+		assertEquals(0, map.get(1, 1));
+	}
+	
+	@Test
+	void growsAndDropsTombstonesOnResize() {
+		ConcurrentLongPairMap map = new ConcurrentLongPairMap(16, 1);
+		long initialCapacity = map.capacity();
+		
+		for (long i = 0; i < 10_000; i++) {
+			assertEquals(NO_VALUE, map.putIfAbsent(i, -i, i * 3));
+		}
+		for (long i = 0; i < 10_000; i += 2) {
+			assertTrue(map.remove(i, -i, i * 3));
+		}
+		// Churn through removed keys so the tombstones force further rehashes.
+		for (long i = 0; i < 10_000; i += 2) {
+			assertEquals(NO_VALUE, map.putIfAbsent(i, -i, i * 5));
+		}
+		
+		assertTrue(map.capacity() > initialCapacity);
+		assertEquals(10_000, map.size());
+		for (long i = 0; i < 10_000; i++) {
+			assertEquals(i % 2 == 0 ? i * 5 : i * 3, map.get(i, -i));
+		}
+		
+		AtomicLong visited = new AtomicLong();
+		map.forEach((key1, key2, value) -> {
+			assertEquals(-key1, key2);
+			visited.incrementAndGet();
+		});
+		assertEquals(10_000, visited.get());
+	}
+	
+	@Test
+	void keepsEveryWriteUnderConcurrentInsertsRemovesAndUpdates() throws Exception {
+		// Few segments and a tiny initial size, so inserts rehash repeatedly underneath the CAS loops.
+		ConcurrentLongPairMap map = new ConcurrentLongPairMap(16, 2);
+		int keysPerThread = 20_000;
+		int incrementsPerThread = 50_000;
+		long counters = 4;
+		for (long c = 0; c < counters; c++) {
+			map.putIfAbsent(-1, c, 0);
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS * 2);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> tasks = new ArrayList<>();
+		try {
+			for (int t = 0; t < THREADS; t++) {
+				long owner = t;
+				tasks.add(pool.submit(() -> {
+					start.await();
+					for (long i = 0; i < keysPerThread; i++) {
+						assertEquals(NO_VALUE, map.putIfAbsent(owner, i, i));
+					}
+					for (long i = 0; i < keysPerThread; i += 2) {
+						assertTrue(map.remove(owner, i, i));
+					}
+					return null;
+				}));
+				tasks.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < incrementsPerThread; i++) {
+						long counter = i % counters;
+						long value;
+						do {
+							value = map.get(-1, counter);
+						} while (!map.compareAndSet(-1, counter, value, value + 1));
+					}
+					return null;
+				}));
+			}
+			
+			start.countDown();
+			for (Future<?> task : tasks) {
+				task.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		
+		long total = 0;
+		for (long c = 0; c < counters; c++) {
+			total += map.get(-1, c);
+		}
+		assertEquals((long) THREADS * incrementsPerThread, total);
+		
+		for (long owner = 0; owner < THREADS; owner++) {
+			for (long i = 0; i < keysPerThread; i++) {
+				assertEquals(i % 2 == 0 ? NO_VALUE : i, map.get(owner, i));
+			}
+		}
+		assertEquals(THREADS * keysPerThread / 2 + counters, map.size());
+	}
+}
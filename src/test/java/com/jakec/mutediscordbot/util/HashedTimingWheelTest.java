@@ -0,0 +1,139 @@
+package com.jakec.mutediscordbot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+	
+	private final List<HashedTimingWheel> wheels = new ArrayList<>();
+	
+	@AfterEach
+	void tearDown() {
+		wheels.forEach(HashedTimingWheel::close);
+	}
+	
+	private HashedTimingWheel wheel(String name, long tickMillis, int slots, ConcurrentLongPairMap.EntryConsumer handler) {
+		HashedTimingWheel wheel = new HashedTimingWheel(name, tickMillis, TimeUnit.MILLISECONDS, slots, handler);
+		wheels.add(wheel);
+		return wheel;
+	}
+	
+	@Test
+	void expiresNoEarlierThanTheDelayAndAboutOneTickLater() throws InterruptedException {
+		ConcurrentLinkedQueue<Long> elapsedMillis = new ConcurrentLinkedQueue<>();
+		CountDownLatch expired = new CountDownLatch(3);
+		HashedTimingWheel wheel = wheel("timing", 10, 64, (key1, key2, scheduledNanos) -> {
+			elapsedMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledNanos));
+			expired.countDown();
+		});
+		
+		for (long delay : new long[]{0, 50, 200}) {
+			wheel.schedule(delay, 0, System.nanoTime(), delay);
+		}
+		assertTrue(expired.await(2, TimeUnit.SECONDS));
+		
+		List<Long> elapsed = new ArrayList<>(elapsedMillis);
+		assertEquals(3, elapsed.size());
+		assertTrue(elapsed.get(1) >= 50 && elapsed.get(1) < 50 + 200, "50ms timeout took " + elapsed.get(1) + "ms");
+		assertTrue(elapsed.get(2) >= 200 && elapsed.get(2) < 200 + 200, "200ms timeout took " + elapsed.get(2) + "ms");
+		assertEquals(0, wheel.pending());
+		assertEquals(3, wheel.expiredCount());
+	}
+	
+	@Test
+	void timeoutsBeyondOneRotationWaitForTheirRound() throws InterruptedException {
+		AtomicLong elapsedMillis = new AtomicLong(-1);
+		CountDownLatch expired = new CountDownLatch(1);
+		// 8 slots of 10ms: a 250ms timeout passes its slot three times before it is due.
+		HashedTimingWheel wheel = wheel("rotation", 10, 8, (key1, key2, scheduledNanos) -> {
+			elapsedMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledNanos));
+			expired.countDown();
+		});
+		
+		wheel.schedule(1, 2, System.nanoTime(), 250);
+		assertTrue(expired.await(2, TimeUnit.SECONDS));
+		assertTrue(elapsedMillis.get() >= 250, "expired after " + elapsedMillis.get() + "ms");
+	}
+	
+	@Test
+	void timeoutsScheduledWhileTheWorkerTicksNeverWaitARotation() throws InterruptedException {
+		// 512 slots of 10ms is a 5.12s rotation; an entry added to a slot just after it was drained would wait that long.
+		int threads = 4;
+		long runNanos = TimeUnit.MILLISECONDS.toNanos(800);
+		AtomicLong scheduled = new AtomicLong();
+		AtomicLong handled = new AtomicLong();
+		LongAccumulator worstMillis = new LongAccumulator(Math::max, 0);
+		HashedTimingWheel wheel = wheel("race", 10, 512, (key1, key2, scheduledNanos) -> {
+			worstMillis.accumulate(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledNanos));
+			handled.incrementAndGet();
+		});
+		
+		List<Thread> schedulers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			long key = t;
+			schedulers.add(Thread.ofPlatform().start(() -> {
+				long end = System.nanoTime() + runNanos;
+				long i = 0;
+				while (System.nanoTime() < end) {
+					wheel.schedule(key, i++ & 0xFF, System.nanoTime(), 0);
+					scheduled.incrementAndGet();
+				}
+			}));
+		}
+		for (Thread scheduler : schedulers) {
+			scheduler.join();
+		}
+		
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (handled.get() < scheduled.get() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(scheduled.get(), handled.get(), "timeouts still pending after 2s");
+		assertTrue(worstMillis.get() < 1_000, "worst expiry was " + worstMillis.get() + "ms late");
+	}
+	
+	@Test
+	void handlerFailuresDoNotStopTheWheel() throws InterruptedException {
+		CountDownLatch expired = new CountDownLatch(1);
+		HashedTimingWheel wheel = wheel("failing", 10, 16, (key1, key2, value) -> {
+			if (value == 0) {
+				throw new IllegalStateException("expected");
+			}
+			expired.countDown();
+		});
+		
+		wheel.schedule(1, 1, 0, 0);
+		wheel.schedule(1, 1, 1, 50);
+		assertTrue(expired.await(2, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	void startsItsThreadOnFirstScheduleAndStopsItOnClose() throws InterruptedException {
+		CountDownLatch expired = new CountDownLatch(1);
+		HashedTimingWheel wheel = wheel("lazy", 10, 16, (key1, key2, value) -> expired.countDown());
+		assertFalse(threadRunning("timing-wheel-lazy"));
+		
+		wheel.schedule(1, 1, 1, 0);
+		assertTrue(threadRunning("timing-wheel-lazy"));
+		assertTrue(expired.await(2, TimeUnit.SECONDS));
+		
+		wheel.close();
+		assertFalse(threadRunning("timing-wheel-lazy"));
+	}
+	
+	private static boolean threadRunning(String name) {
+		return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals(name) && thread.isAlive());
+	}
+}
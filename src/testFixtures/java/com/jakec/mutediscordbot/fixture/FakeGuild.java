@@ -0,0 +1,85 @@
+package com.jakec.mutediscordbot.fixture;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory guild with a fixed set of text channels. The bot's own member has every permission.
+ */
+public final class FakeGuild {
+	
+	private final long id;
+	private final String name;
+	private final List<FakeTextChannel> channels = new ArrayList<>();
+	private volatile List<TextChannel> channelView = List.of();
+	private final Guild guild;
+	private final Member selfMember;
+	
+	public FakeGuild(long id, String name) {
+		this.id = id;
+		this.name = name;
+		this.guild = Stubs.stub(Guild.class, this::answer);
+		this.selfMember = Stubs.stub(Member.class, (method, args) -> switch (method) {
+			case "hasPermission", "canInteract" -> true;
+			case "getGuild" -> guild;
+			default -> Stubs.UNHANDLED;
+		});
+	}
+	
+	public synchronized FakeTextChannel addTextChannel(long channelId, String channelName) {
+		FakeTextChannel channel = new FakeTextChannel(channelId, channelName, this);
+		channels.add(channel);
+		channelView = channels.stream().map(FakeTextChannel::channel).toList();
+		return channel;
+	}
+	
+	public Guild guild() {
+		return guild;
+	}
+	
+	public long id() {
+		return id;
+	}
+	
+	public List<FakeTextChannel> channels() {
+		return List.copyOf(channels);
+	}
+	
+	private Object answer(String method, Object[] args) {
+		return switch (method) {
+			case "getIdLong" -> id;
+			case "getId" -> Long.toUnsignedString(id);
+			case "getName", "toString" -> name;
+			case "getSelfMember" -> selfMember;
+			case "getTextChannels" -> channelView;
+			case "getTextChannelsByName" -> textChannelsByName((String) args[0], (Boolean) args[1]);
+			case "getTextChannelById" -> textChannelById(args[0]);
+			default -> Stubs.UNHANDLED;
+		};
+	}
+	
+	private List<TextChannel> textChannelsByName(String channelName, boolean ignoreCase) {
+		List<TextChannel> matches = new ArrayList<>();
+		for (TextChannel channel : channelView) {
+			String candidate = channel.getName();
+			if (ignoreCase ? candidate.equalsIgnoreCase(channelName) : candidate.equals(channelName)) {
+				matches.add(channel);
+			}
+		}
+		return matches;
+	}
+	
+	private TextChannel textChannelById(Object channelId) {
+		long target = channelId instanceof Long value ? value : Long.parseUnsignedLong(channelId.toString());
+		for (TextChannel channel : channelView) {
+			if (channel.getIdLong() == target) {
+				return channel;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,77 @@
+package com.jakec.mutediscordbot.fixture;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceSelfDeafenEvent;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceSelfMuteEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Connected JDA instance over a set of {@link FakeGuild}s, used to build gateway events
+ * the way JDA would dispatch them to listeners.
+ */
+public final class FakeJda {
+	
+	private final Map<Long, FakeGuild> guilds = new ConcurrentHashMap<>();
+	private final AtomicLong responseNumber = new AtomicLong();
+	private final JDA jda;
+	
+	public FakeJda() {
+		this.jda = Stubs.stub(JDA.class, this::answer);
+	}
+	
+	public JDA jda() {
+		return jda;
+	}
+	
+	public FakeGuild addGuild(FakeGuild guild) {
+		guilds.put(guild.id(), guild);
+		return guild;
+	}
+	
+	/**
+	 * Applies one VOICE_STATE_UPDATE the way JDA's handler does. Every event gets the update's response number, and
+	 * each changed flag is set and its event dispatched before the next flag: self mute first, then self deafen.
+	 *
+	 * @return the number of events dispatched
+	 */
+	public int updateVoiceState(FakeMember member, boolean selfMuted, boolean selfDeafened,
+								Consumer<GenericEvent> dispatcher) {
+		long response = responseNumber.incrementAndGet();
+		int fired = 0;
+		if (member.isSelfMuted() != selfMuted) {
+			member.selfMuted(selfMuted);
+			dispatcher.accept(new GuildVoiceSelfMuteEvent(jda, response, member.member()));
+			fired++;
+		}
+		if (member.isSelfDeafened() != selfDeafened) {
+			member.selfDeafened(selfDeafened);
+			dispatcher.accept(new GuildVoiceSelfDeafenEvent(jda, response, member.member()));
+			fired++;
+		}
+		return fired;
+	}
+	
+	private Object answer(String method, Object[] args) {
+		return switch (method) {
+			case "getStatus" -> JDA.Status.CONNECTED;
+			case "getResponseTotal" -> responseNumber.get();
+			case "getGuilds" -> guilds.values().stream().map(FakeGuild::guild).toList();
+			case "getGuildById" -> guildById(args[0]);
+			case "toString" -> "FakeJda";
+			default -> Stubs.UNHANDLED;
+		};
+	}
+	
+	private Guild guildById(Object guildId) {
+		long id = guildId instanceof Long value ? value : Long.parseUnsignedLong(guildId.toString());
+		FakeGuild guild = guilds.get(id);
+		return guild != null ? guild.guild() : null;
+	}
+}
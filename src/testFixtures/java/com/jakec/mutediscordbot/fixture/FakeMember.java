@@ -0,0 +1,126 @@
+package com.jakec.mutediscordbot.fixture;
+
+import net.dv8tion.jda.api.entities.GuildVoiceState;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.AudioChannelUnion;
+
+/**
+ * Voice-connected guild member with mutable self/server mute and deafen flags.
+ */
+public final class FakeMember {
+	
+	private final long userId;
+	private final String name;
+	private final boolean bot;
+	private final FakeGuild guild;
+	private final User user;
+	private final Member member;
+	private final GuildVoiceState voiceState;
+	private final AudioChannelUnion voiceChannel;
+	
+	private volatile boolean selfMuted;
+	private volatile boolean selfDeafened;
+	private volatile boolean guildMuted;
+	private volatile boolean guildDeafened;
+	
+	public FakeMember(FakeGuild guild, long userId, String name, String voiceChannelName) {
+		this(guild, userId, name, voiceChannelName, false);
+	}
+	
+	public FakeMember(FakeGuild guild, long userId, String name, String voiceChannelName, boolean bot) {
+		this.guild = guild;
+		this.userId = userId;
+		this.name = name;
+		this.bot = bot;
+		this.voiceChannel = Stubs.stub(AudioChannelUnion.class, (method, args) -> switch (method) {
+			case "getName", "toString" -> voiceChannelName;
+			default -> Stubs.UNHANDLED;
+		});
+		this.user = Stubs.stub(User.class, this::answerUser);
+		this.member = Stubs.stub(Member.class, this::answerMember);
+		this.voiceState = Stubs.stub(GuildVoiceState.class, this::answerVoiceState);
+	}
+	
+	public Member member() {
+		return member;
+	}
+	
+	public GuildVoiceState voiceState() {
+		return voiceState;
+	}
+	
+	public FakeGuild guild() {
+		return guild;
+	}
+	
+	public long userId() {
+		return userId;
+	}
+	
+	public FakeMember selfMuted(boolean selfMuted) {
+		this.selfMuted = selfMuted;
+		return this;
+	}
+	
+	public FakeMember selfDeafened(boolean selfDeafened) {
+		this.selfDeafened = selfDeafened;
+		return this;
+	}
+	
+	public FakeMember guildMuted(boolean guildMuted) {
+		this.guildMuted = guildMuted;
+		return this;
+	}
+	
+	public FakeMember guildDeafened(boolean guildDeafened) {
+		this.guildDeafened = guildDeafened;
+		return this;
+	}
+	
+	public boolean isSelfMuted() {
+		return selfMuted;
+	}
+	
+	public boolean isSelfDeafened() {
+		return selfDeafened;
+	}
+	
+	private Object answerUser(String method, Object[] args) {
+		return switch (method) {
+			case "getIdLong" -> userId;
+			case "getId" -> Long.toUnsignedString(userId);
+			case "getName", "getEffectiveName", "getGlobalName", "toString" -> name;
+			case "isBot" -> bot;
+			default -> Stubs.UNHANDLED;
+		};
+	}
+	
+	private Object answerMember(String method, Object[] args) {
+		return switch (method) {
+			case "getIdLong" -> userId;
+			case "getId" -> Long.toUnsignedString(userId);
+			case "getEffectiveName", "getNickname", "toString" -> name;
+			case "getUser" -> user;
+			case "getGuild" -> guild.guild();
+			case "getVoiceState" -> voiceState;
+			default -> Stubs.UNHANDLED;
+		};
+	}
+	
+	private Object answerVoiceState(String method, Object[] args) {
+		return switch (method) {
+			case "isSelfMuted" -> selfMuted;
+			case "isSelfDeafened" -> selfDeafened;
+			case "isGuildMuted" -> guildMuted;
+			case "isGuildDeafened" -> guildDeafened;
+			case "isMuted" -> selfMuted || guildMuted;
+			case "isDeafened" -> selfDeafened || guildDeafened;
+			case "inAudioChannel" -> true;
+			case "getChannel" -> voiceChannel;
+			case "getMember" -> member;
+			case "getGuild" -> guild.guild();
+			default -> Stubs.UNHANDLED;
+		};
+	}
+}
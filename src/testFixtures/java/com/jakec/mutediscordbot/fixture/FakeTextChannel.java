@@ -0,0 +1,67 @@
+package com.jakec.mutediscordbot.fixture;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Text channel whose {@code sendMessage(...).queue(...)} and {@code submit()} complete immediately without any REST call.
+ */
+public final class FakeTextChannel {
+	
+	private final long id;
+	private final String name;
+	private final FakeGuild guild;
+	private final LongAdder sentMessages = new LongAdder();
+	private final TextChannel channel;
+	private final MessageCreateAction sendAction;
+	
+	FakeTextChannel(long id, String name, FakeGuild guild) {
+		this.id = id;
+		this.name = name;
+		this.guild = guild;
+		this.sendAction = Stubs.stub(MessageCreateAction.class, this::answerSend);
+		this.channel = Stubs.stub(TextChannel.class, this::answer);
+	}
+	
+	public TextChannel channel() {
+		return channel;
+	}
+	
+	public long sentMessages() {
+		return sentMessages.sum();
+	}
+	
+	private Object answer(String method, Object[] args) {
+		return switch (method) {
+			case "getIdLong" -> id;
+			case "getId" -> Long.toUnsignedString(id);
+			case "getName", "toString" -> name;
+			case "getGuild" -> guild.guild();
+			case "canTalk" -> true;
+			case "sendMessage" -> sendAction;
+			default -> Stubs.UNHANDLED;
+		};
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Object answerSend(String method, Object[] args) {
+		if ("submit".equals(method)) {
+			sentMessages.increment();
+			return CompletableFuture.completedFuture(null);
+		}
+		if (!"queue".equals(method)) {
+			return Stubs.UNHANDLED;
+		}
+		
+		sentMessages.increment();
+		if (args.length > 0 && args[0] != null) {
+			((Consumer<Message>) args[0]).accept(null);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,67 @@
+package com.jakec.mutediscordbot.fixture;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Minimal dynamic-proxy stand-ins for JDA interfaces. Each stub answers the handful of
+ * methods the bot actually calls by name and falls back to a zero value for everything else,
+ * so benchmarks and the load generator can run without a gateway connection.
+ */
+final class Stubs {
+
+	private static final Map<Class<?>, Object> ZERO_VALUES = Map.of(
+			boolean.class, false,
+			byte.class, (byte) 0,
+			short.class, (short) 0,
+			char.class, (char) 0,
+			int.class, 0,
+			long.class, 0L,
+			float.class, 0f,
+			double.class, 0d
+	);
+
+	@FunctionalInterface
+	interface Answer {
+		/**
+		 * @return the stubbed result, or {@link #UNHANDLED} to fall back to the default value
+		 */
+		Object answer(String methodName, Object[] args);
+	}
+
+	static final Object UNHANDLED = new Object();
+
+	private Stubs() {}
+
+	static <T> T stub(Class<T> type, Answer answer) {
+		InvocationHandler handler = (proxy, method, args) -> invoke(proxy, method, args, answer);
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+	}
+
+	private static Object invoke(Object proxy, Method method, Object[] args, Answer answer) {
+		Object[] safeArgs = args == null ? new Object[0] : args;
+
+		switch (method.getName()) {
+			case "hashCode" -> {
+				if (safeArgs.length == 0) return System.identityHashCode(proxy);
+			}
+			case "equals" -> {
+				if (safeArgs.length == 1) return proxy == safeArgs[0];
+			}
+			default -> {}
+		}
+
+		Object result = answer.answer(method.getName(), safeArgs);
+		if (result != UNHANDLED) {
+			return result;
+		}
+
+		if ("toString".equals(method.getName()) && safeArgs.length == 0) {
+			return method.getDeclaringClass().getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+		}
+
+		return ZERO_VALUES.get(method.getReturnType());
+	}
+}